@@ -0,0 +1,214 @@
+package com.yammer.dropwizard.assets;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jetty.http.MimeTypes;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Resources;
+import com.yammer.dropwizard.util.Size;
+
+/**
+ * An immutable index of the static assets under a resource path, built by scanning it once, so
+ * that requests can be resolved without looking up resources in the classloader.
+ */
+public class AssetIndex {
+    /**
+     * An indexed asset.
+     */
+    public static class Entry {
+        private final URL url;
+        private final long length;
+        private final long lastModifiedTime;
+        private final String eTag;
+        private final String mimeType;
+        private final URL gzippedURL;
+
+        private Entry(URL url,
+                      long length,
+                      long lastModifiedTime,
+                      String eTag,
+                      @Nullable String mimeType,
+                      @Nullable URL gzippedURL) {
+            this.url = url;
+            this.length = length;
+            this.lastModifiedTime = lastModifiedTime;
+            this.eTag = eTag;
+            this.mimeType = mimeType;
+            this.gzippedURL = gzippedURL;
+        }
+
+        public URL getURL() {
+            return url;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public long getLastModifiedTime() {
+            return lastModifiedTime;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Returns the MIME type of the asset's extension, or {@code null} if it isn't known.
+         */
+        @Nullable
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * Returns the URL of a precompressed copy of the asset (the asset's path with a
+         * {@code .gz} suffix), or {@code null} if there isn't one.
+         */
+        @Nullable
+        public URL getGzippedURL() {
+            return gzippedURL;
+        }
+    }
+
+    private static final String GZIP_SUFFIX = ".gz";
+
+    /**
+     * Scans the assets under {@code resourcePath}, which may be a directory or a directory in a
+     * jar. Assets larger than {@code streamingThreshold} aren't read, so they're given the same
+     * entity tags as {@link AssetServlet} gives streamed assets.
+     *
+     * @param resourcePath          the resource path (in the classpath) of the static asset files
+     * @param indexFile             the filename to use when directories are requested, or null to
+     *                              serve no indexes
+     * @param streamingThreshold    the size above which assets are streamed
+     * @return the index of the assets
+     */
+    public static AssetIndex scan(String resourcePath,
+                                  @Nullable String indexFile,
+                                  Size streamingThreshold) throws IOException, URISyntaxException {
+        final String trimmedPath = CharMatcher.is('/').trimFrom(resourcePath);
+        final URL root = ResourceURL.appendTrailingSlash(Resources.getResource(trimmedPath));
+
+        final Map<String, URL> files = Maps.newTreeMap();
+        final Set<String> directories = Sets.newHashSet("");
+        if ("jar".equals(root.getProtocol())) {
+            scanJar(root, files, directories);
+        } else if ("file".equals(root.getProtocol())) {
+            scanDirectory(new File(root.toURI()), "", files, directories);
+        } else {
+            throw new IllegalArgumentException("Unsupported protocol " + root.getProtocol() + " for resource " + root);
+        }
+
+        final MimeTypes mimeTypes = new MimeTypes();
+        final ImmutableMap.Builder<String, Entry> entries = ImmutableMap.builder();
+        for (Map.Entry<String, URL> file : files.entrySet()) {
+            final URL url = file.getValue();
+            final long length = ResourceURL.getContentLength(url);
+            final long lastModified = AssetServlet.getLastModifiedTime(url);
+            final String eTag = (length > streamingThreshold.toBytes()) ?
+                    AssetServlet.computeETag(lastModified, length) :
+                    AssetServlet.computeETag(Resources.toByteArray(url));
+            entries.put(file.getKey(), new Entry(url,
+                                                 length,
+                                                 lastModified,
+                                                 eTag,
+                                                 mimeTypes.getMimeByExtension(file.getKey()),
+                                                 files.get(file.getKey() + GZIP_SUFFIX)));
+        }
+        return new AssetIndex(entries.build(), ImmutableSet.copyOf(directories), indexFile);
+    }
+
+    private static void scanDirectory(File directory,
+                                      String prefix,
+                                      Map<String, URL> files,
+                                      Set<String> directories) throws IOException {
+        final File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            final String path = prefix + child.getName();
+            if (child.isDirectory()) {
+                directories.add(path);
+                scanDirectory(child, path + '/', files, directories);
+            } else {
+                files.put(path, child.toURI().toURL());
+            }
+        }
+    }
+
+    private static void scanJar(URL root, Map<String, URL> files, Set<String> directories) throws IOException {
+        final JarURLConnection connection = (JarURLConnection) root.openConnection();
+        final String prefix = connection.getEntryName();
+        final JarFile jarFile = connection.getJarFile();
+        final Enumeration<JarEntry> jarEntries = jarFile.entries();
+        while (jarEntries.hasMoreElements()) {
+            final String name = jarEntries.nextElement().getName();
+            if (!name.startsWith(prefix) || name.length() == prefix.length()) {
+                continue;
+            }
+            final String path = name.substring(prefix.length());
+            // jars don't always have entries for their directories, so add every parent
+            int slash = path.indexOf('/');
+            while (slash >= 0) {
+                directories.add(path.substring(0, slash));
+                slash = path.indexOf('/', slash + 1);
+            }
+            if (!path.endsWith("/")) {
+                files.put(path, new URL(root, path));
+            }
+        }
+    }
+
+    private final ImmutableMap<String, Entry> entries;
+    private final ImmutableSet<String> directories;
+    private final String indexFile;
+
+    private AssetIndex(ImmutableMap<String, Entry> entries,
+                       ImmutableSet<String> directories,
+                       @Nullable String indexFile) {
+        this.entries = entries;
+        this.directories = directories;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Returns the asset at {@code path}, relative to the resource path. If {@code path} is a
+     * directory, its index file is returned.
+     *
+     * @param path    the path of the asset, without leading or trailing slashes
+     * @return the asset, or {@code null} if it doesn't exist, or it's a directory without an index
+     *         file
+     */
+    @Nullable
+    public Entry get(String path) {
+        if (directories.contains(path)) {
+            if (indexFile == null) {
+                return null;
+            }
+            return entries.get(path.isEmpty() ? indexFile : path + '/' + indexFile);
+        }
+        return entries.get(path);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
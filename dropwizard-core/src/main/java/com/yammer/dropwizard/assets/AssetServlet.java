@@ -1,10 +1,23 @@
 package com.yammer.dropwizard.assets;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
+import javax.annotation.Nullable;
+
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
@@ -12,52 +25,217 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.util.Callback;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Maps;
 import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Resources;
 import com.google.common.net.HttpHeaders;
 import com.google.common.net.MediaType;
+import com.yammer.dropwizard.util.Size;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.util.RatioGauge;
 
 public class AssetServlet extends HttpServlet {
     private static final long serialVersionUID = 6393345594784987908L;
 
     private static class CachedAsset {
+        private final URL url;
+        private final File file;
         private final byte[] resource;
+        private final byte[] gzippedResource;
+        private final long length;
         private final String eTag;
         private final long lastModifiedTime;
 
-        private CachedAsset(byte[] resource, long lastModifiedTime) {
+        private CachedAsset(URL url, byte[] resource, long lastModifiedTime) throws IOException {
+            this(url, resource, gzip(resource), computeETag(resource), lastModifiedTime);
+        }
+
+        private CachedAsset(URL url,
+                            byte[] resource,
+                            @Nullable byte[] gzippedResource,
+                            String eTag,
+                            long lastModifiedTime) {
+            this.url = url;
+            this.file = null;
             this.resource = resource;
-            this.eTag = Hashing.murmur3_128().hashBytes(resource).toString();
+            this.gzippedResource = gzippedResource;
+            this.length = resource.length;
+            this.eTag = eTag;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+
+        /**
+         * Creates an asset which is too large to keep in memory, so it's streamed from {@code url}
+         * or, if it's a file, from {@code file}.
+         */
+        private CachedAsset(URL url, @Nullable File file, long length, long lastModifiedTime) {
+            this.url = url;
+            this.file = file;
+            this.resource = null;
+            this.gzippedResource = null;
+            this.length = length;
+            this.eTag = computeETag(lastModifiedTime, length);
             this.lastModifiedTime = lastModifiedTime;
         }
 
+        public URL getURL() {
+            return url;
+        }
+
+        /**
+         * Returns the file the asset is streamed from, or {@code null} if it isn't a streamed
+         * file.
+         */
+        @Nullable
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the resource, or {@code null} if it's streamed.
+         */
+        @Nullable
         public byte[] getResource() {
             return resource;
         }
 
+        public boolean isStreamed() {
+            return resource == null;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the gzipped resource, or {@code null} if gzipping doesn't make it smaller.
+         */
+        @Nullable
+        public byte[] getGzippedResource() {
+            return gzippedResource;
+        }
+
         public String getETag() {
             return eTag;
         }
 
+        public String getGzippedETag() {
+            // a different representation, so it needs a different entity tag
+            return eTag + GZIP_ETAG_SUFFIX;
+        }
+
         public long getLastModifiedTime() {
             return lastModifiedTime;
         }
+
+        public int getWeight() {
+            if (resource == null) {
+                return 1;
+            }
+            return resource.length + ((gzippedResource == null) ? 0 : gzippedResource.length);
+        }
+
+        @Nullable
+        private static byte[] gzip(byte[] resource) throws IOException {
+            if (resource.length < MIN_GZIP_SIZE) {
+                return null;
+            }
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(resource.length / 2);
+            final GZIPOutputStream gzip = new GZIPOutputStream(output);
+            try {
+                gzip.write(resource);
+            } finally {
+                gzip.close();
+            }
+            return (output.size() < resource.length) ? output.toByteArray() : null;
+        }
+    }
+
+    private static class CachedAssetWeigher implements Weigher<String, CachedAsset> {
+        @Override
+        public int weigh(String key, CachedAsset asset) {
+            return asset.getWeight();
+        }
     }
 
+    /**
+     * A range of bytes of an asset, from {@code start} to {@code end} inclusive.
+     */
+    private static class ByteRange {
+        private final long start;
+        private final long end;
+
+        private ByteRange(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getLength() {
+            return end - start + 1;
+        }
+    }
+
+    private class AssetLoader extends CacheLoader<String, CachedAsset> {
+        @Override
+        public CachedAsset load(String key) throws Exception {
+            return loadAsset(key);
+        }
+    }
+
+    /**
+     * The default specification of the cache of assets, which is only bounded by its size.
+     */
+    public static final CacheBuilderSpec DEFAULT_CACHE_SPEC = CacheBuilderSpec.parse("");
+
+    /**
+     * The default maximum size of the raw and gzipped assets in the cache.
+     */
+    public static final Size DEFAULT_MAX_CACHE_SIZE = Size.megabytes(10);
+
     private static final MediaType DEFAULT_MEDIA_TYPE = MediaType.HTML_UTF_8;
 
+    private static final String GZIP = "gzip";
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+    private static final Pattern ZERO_QUALITY = Pattern.compile("\\s*q\\s*=\\s*0(\\.0*)?\\s*");
+
+    // smaller assets fit in a packet either way
+    private static final int MIN_GZIP_SIZE = 256;
+
+    private static final String BYTES_UNIT = "bytes";
+    private static final ByteRange UNSATISFIABLE_RANGE = new ByteRange(-1, -1);
+
+    /**
+     * The default size above which assets are streamed instead of being kept in memory.
+     */
+    public static final Size DEFAULT_STREAMING_THRESHOLD = Size.megabytes(4);
+
     private final String resourcePath;
     private final String uriPath;
     private final String indexFile;
 
     private final transient MimeTypes mimeTypes;
-    
+    private final transient LoadingCache<String, CachedAsset> cache;
+    private final transient MetricsRegistry metrics;
+    private final transient Map<MetricName, Gauge<?>> gauges = Maps.newLinkedHashMap();
+
     private Charset defaultCharset = Charsets.UTF_8;
+    private Size streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+    private transient AssetIndex index;
 
     /**
      * Creates a new {@code AssetServlet} that serves static assets loaded from {@code resourceURL} (typically a file:
@@ -70,17 +248,110 @@ public class AssetServlet extends HttpServlet {
      * @param resourcePath      the base URL from which assets are loaded
      * @param uriPath          the URI path fragment in which all requests are rooted
      * @param indexFile        the filename to use when directories are requested, or null to serve no indexes
-     * @see CacheBuilderSpec
+     * @see #AssetServlet(String, CacheBuilderSpec, Size, String, String, MetricsRegistry)
      */
     public AssetServlet(String resourcePath,
                         String uriPath,
                         String indexFile) {
+        this(resourcePath, DEFAULT_CACHE_SPEC, DEFAULT_MAX_CACHE_SIZE, uriPath, indexFile, Metrics.defaultRegistry());
+    }
+
+    /**
+     * Creates a new {@code AssetServlet} like {@link #AssetServlet(String, String, String)}, which caches the
+     * assets it serves, along with gzipped copies of them, as described by {@code cacheSpec}. If
+     * {@code maxCacheSize} is given, each asset weighs its size in bytes and the cache holds at most that many
+     * bytes, so the spec mustn't also have a {@code maximumSize} or {@code maximumWeight}. The cache's hits and
+     * misses are reported to {@code metrics} while the servlet is in service.
+     *
+     * @param resourcePath     the base URL from which assets are loaded
+     * @param cacheSpec        the specification of the asset cache
+     * @param maxCacheSize     the maximum size of the cached assets, or null to leave the cache's bounds to
+     *                         {@code cacheSpec}
+     * @param uriPath          the URI path fragment in which all requests are rooted
+     * @param indexFile        the filename to use when directories are requested, or null to serve no indexes
+     * @param metrics          the registry of the cache's metrics
+     * @see CacheBuilderSpec
+     */
+    public AssetServlet(String resourcePath,
+                        CacheBuilderSpec cacheSpec,
+                        @Nullable Size maxCacheSize,
+                        String uriPath,
+                        String indexFile,
+                        MetricsRegistry metrics) {
         final String trimmedPath = CharMatcher.is('/').trimFrom(resourcePath);
 	this.resourcePath = trimmedPath.isEmpty() ? trimmedPath : trimmedPath + "/";
         final String trimmedUri = CharMatcher.is('/').trimTrailingFrom(uriPath);
         this.uriPath = trimmedUri.length() == 0 ? "/" : trimmedUri;
         this.indexFile = indexFile;
         this.mimeTypes = new MimeTypes();
+        this.cache = buildCache(cacheSpec, maxCacheSize);
+        this.metrics = metrics;
+    }
+
+    private LoadingCache<String, CachedAsset> buildCache(CacheBuilderSpec cacheSpec, @Nullable Size maxCacheSize) {
+        final CacheBuilder<Object, Object> builder = CacheBuilder.from(cacheSpec).recordStats();
+        if (maxCacheSize != null) {
+            return builder.maximumWeight(maxCacheSize.toBytes())
+                          .weigher(new CachedAssetWeigher())
+                          .build(new AssetLoader());
+        }
+        return builder.build(new AssetLoader());
+    }
+
+    /**
+     * Registers the cache's gauges, replacing those of any servlet previously registered with the same URI
+     * path.
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        gauges.put(new MetricName(AssetServlet.class, "cache-hits", uriPath), new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return cache.stats().hitCount();
+            }
+        });
+        gauges.put(new MetricName(AssetServlet.class, "cache-misses", uriPath), new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return cache.stats().missCount();
+            }
+        });
+        gauges.put(new MetricName(AssetServlet.class, "cache-hit-ratio", uriPath), new RatioGauge() {
+            @Override
+            protected double getNumerator() {
+                return cache.stats().hitCount();
+            }
+
+            @Override
+            protected double getDenominator() {
+                return cache.stats().requestCount();
+            }
+        });
+        gauges.put(new MetricName(AssetServlet.class, "cache-size", uriPath), new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return cache.size();
+            }
+        });
+        for (Map.Entry<MetricName, Gauge<?>> entry : gauges.entrySet()) {
+            metrics.removeMetric(entry.getKey());
+            metrics.newGauge(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Removes the cache's gauges, unless another servlet with the same URI path has since replaced them.
+     */
+    @Override
+    public void destroy() {
+        for (Map.Entry<MetricName, Gauge<?>> entry : gauges.entrySet()) {
+            if (metrics.allMetrics().get(entry.getKey()) == entry.getValue()) {
+                metrics.removeMetric(entry.getKey());
+            }
+        }
+        gauges.clear();
+        super.destroy();
     }
 
     public URL getResourceURL() {
@@ -103,25 +374,75 @@ public class AssetServlet extends HttpServlet {
         return indexFile;
     }
 
+    /**
+     * Sets the size above which assets aren't read into memory or cached, but streamed to the
+     * client. Files are memory-mapped, so they're sent without being copied onto the heap.
+     *
+     * @param streamingThreshold the size above which assets are streamed
+     */
+    public void setStreamingThreshold(Size streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    public Size getStreamingThreshold() {
+        return streamingThreshold;
+    }
+
+    /**
+     * Sets an index of the assets, from which requests are resolved instead of the classloader.
+     * Requests for assets which aren't in the index are answered with a 404, and conditional
+     * requests are answered without loading the asset.
+     *
+     * @param index the index of the assets under this servlet's resource path
+     * @see AssetIndex#scan(String, String, Size)
+     */
+    public void setIndex(AssetIndex index) {
+        this.index = index;
+    }
+
     @Override
     protected void doGet(HttpServletRequest req,
                          HttpServletResponse resp) throws ServletException, IOException {
         try {
-            final CachedAsset cachedAsset = loadAsset(req.getRequestURI());
-            if (cachedAsset == null) {
-                resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-                return;
+            final AssetIndex.Entry entry;
+            if (index != null) {
+                entry = index.get(getRequestedPath(req.getRequestURI()));
+                if (entry == null) {
+                    resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+                    return;
+                }
+                if (isCachedClientSide(req, entry.getETag(), entry.getLastModifiedTime())) {
+                    resp.sendError(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            } else {
+                entry = null;
             }
 
-            if (isCachedClientSide(req, cachedAsset)) {
+            // throws if the asset doesn't exist, so missing assets aren't cached
+            final CachedAsset cachedAsset = cache.getUnchecked(req.getRequestURI());
+
+            if (isCachedClientSide(req, cachedAsset.getETag(), cachedAsset.getLastModifiedTime())) {
                 resp.sendError(HttpServletResponse.SC_NOT_MODIFIED);
                 return;
             }
 
+            final ByteRange range = getRange(req, cachedAsset);
+            resp.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+            if (range == UNSATISFIABLE_RANGE) {
+                resp.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + cachedAsset.getLength());
+                resp.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+
+            // ranges are of the identity representation
+            final boolean gzipped = (range == null) && (cachedAsset.getGzippedResource() != null) && acceptsGzip(req);
+
             resp.setDateHeader(HttpHeaders.LAST_MODIFIED, cachedAsset.getLastModifiedTime());
-            resp.setHeader(HttpHeaders.ETAG, cachedAsset.getETag());
+            resp.setHeader(HttpHeaders.ETAG, gzipped ? cachedAsset.getGzippedETag() : cachedAsset.getETag());
 
-            final String mimeTypeOfExtension = mimeTypes.getMimeByExtension(req.getRequestURI());
+            final String mimeTypeOfExtension = (entry != null && entry.getMimeType() != null) ?
+                    entry.getMimeType() : mimeTypes.getMimeByExtension(req.getRequestURI());
             MediaType mediaType = DEFAULT_MEDIA_TYPE;
             
             if (mimeTypeOfExtension != null) {
@@ -140,22 +461,184 @@ public class AssetServlet extends HttpServlet {
                 resp.setCharacterEncoding(mediaType.charset().get().toString());
             }
 
+            if (cachedAsset.getGzippedResource() != null) {
+                resp.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            }
+            if (gzipped) {
+                resp.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+
+            final long start = (range == null) ? 0 : range.start;
+            final long length = (range == null) ? cachedAsset.getLength() : range.getLength();
+            if (range != null) {
+                resp.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                resp.setHeader(HttpHeaders.CONTENT_RANGE,
+                               BYTES_UNIT + ' ' + range.start + '-' + range.end + '/' + cachedAsset.getLength());
+            }
+
+            if (cachedAsset.isStreamed()) {
+                resp.setContentLengthLong(length);
+                sendStreamed(req, resp, cachedAsset, start, length);
+                return;
+            }
+
+            final byte[] entity = gzipped ? cachedAsset.getGzippedResource() : cachedAsset.getResource();
             final ServletOutputStream output = resp.getOutputStream();
             try {
-                output.write(cachedAsset.getResource());
+                if (gzipped) {
+                    output.write(entity);
+                } else {
+                    output.write(entity, (int) start, (int) length);
+                }
             } finally {
                 output.close();
             }
         } catch (RuntimeException ignored) {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
-        } catch (URISyntaxException ignored) {
-            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
     }
 
-    private CachedAsset loadAsset(String key) throws URISyntaxException, IOException {
+    private void sendStreamed(HttpServletRequest req,
+                              HttpServletResponse resp,
+                              CachedAsset asset,
+                              long start,
+                              long length) throws IOException {
+        final ServletOutputStream output = resp.getOutputStream();
+        if (asset.getFile() != null && length <= Integer.MAX_VALUE) {
+            final ByteBuffer buffer;
+            final RandomAccessFile file = new RandomAccessFile(asset.getFile(), "r");
+            try {
+                // the mapping stays valid once the file is closed
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, start, length);
+            } finally {
+                file.close();
+            }
+
+            if (!(output instanceof HttpOutput)) {
+                // the response has been wrapped, so it has to be copied
+                try {
+                    Channels.newChannel(output).write(buffer);
+                } finally {
+                    output.close();
+                }
+            } else if (req.isAsyncSupported()) {
+                // don't hold on to a thread while a slow client downloads the file
+                final AsyncContext context = req.startAsync();
+                ((HttpOutput) output).sendContent(buffer, new Callback() {
+                    @Override
+                    public void succeeded() {
+                        context.complete();
+                    }
+
+                    @Override
+                    public void failed(Throwable x) {
+                        context.complete();
+                    }
+                });
+            } else {
+                ((HttpOutput) output).sendContent(buffer);
+            }
+        } else {
+            final InputStream input = asset.getURL().openStream();
+            try {
+                ByteStreams.skipFully(input, start);
+                ByteStreams.copy(ByteStreams.limit(input, length), output);
+            } finally {
+                input.close();
+                output.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the range of the asset requested by the {@code Range} header, or {@code null} if the
+     * whole asset should be sent. Only single ranges are supported; the whole asset is sent for
+     * requests for several.
+     */
+    @Nullable
+    private static ByteRange getRange(HttpServletRequest req, CachedAsset asset) {
+        final String header = req.getHeader(HttpHeaders.RANGE);
+        if (header == null || !header.startsWith(BYTES_UNIT + '=') || header.indexOf(',') >= 0) {
+            return null;
+        }
+        if (!isRangeCurrent(req, asset)) {
+            return null;
+        }
+
+        final String spec = header.substring(BYTES_UNIT.length() + 1).trim();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        final long length = asset.getLength();
+        try {
+            if (dash == 0) {
+                // the last n bytes
+                final long suffix = Long.parseLong(spec.substring(1));
+                if (suffix == 0 || length == 0) {
+                    return UNSATISFIABLE_RANGE;
+                }
+                return new ByteRange(Math.max(0, length - suffix), length - 1);
+            }
+            final long start = Long.parseLong(spec.substring(0, dash));
+            final long end = (dash == spec.length() - 1) ? length - 1 :
+                    Math.min(length - 1, Long.parseLong(spec.substring(dash + 1)));
+            if (end < start) {
+                return (start >= length) ? UNSATISFIABLE_RANGE : null;
+            }
+            return new ByteRange(start, end);
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns {@code true} unless an {@code If-Range} header shows the client's copy of the asset
+     * is out of date, in which case the whole asset is sent instead of the range.
+     */
+    private static boolean isRangeCurrent(HttpServletRequest req, CachedAsset asset) {
+        final String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || asset.getETag().equals(ifRange)) {
+            return true;
+        }
+        try {
+            return req.getDateHeader(HttpHeaders.IF_RANGE) == asset.getLastModifiedTime();
+        } catch (IllegalArgumentException ignored) {
+            // a different entity tag
+            return false;
+        }
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest req) {
+        final String acceptEncoding = req.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            final String[] params = coding.split(";");
+            if (GZIP.equalsIgnoreCase(params[0].trim())) {
+                for (int i = 1; i < params.length; i++) {
+                    if (ZERO_QUALITY.matcher(params[i]).matches()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getRequestedPath(String key) {
         Preconditions.checkArgument(key.startsWith(uriPath));
-        final String requestedResourcePath = CharMatcher.is('/').trimFrom(key.substring(uriPath.length()));
+        return CharMatcher.is('/').trimFrom(key.substring(uriPath.length()));
+    }
+
+    private CachedAsset loadAsset(String key) throws URISyntaxException, IOException {
+        final String requestedResourcePath = getRequestedPath(key);
+        if (index != null) {
+            return loadIndexedAsset(index.get(requestedResourcePath));
+        }
+
         final String absoluteRequestedResourcePath = CharMatcher.is('/').trimFrom(
         		this.resourcePath + requestedResourcePath);
         
@@ -170,19 +653,57 @@ public class AssetServlet extends HttpServlet {
             }
         }
 
-        long lastModified = ResourceURL.getLastModified(requestedResourceURL);
+        final long lastModified = getLastModifiedTime(requestedResourceURL);
+        final long length = ResourceURL.getContentLength(requestedResourceURL);
+        if (length > streamingThreshold.toBytes()) {
+            final File file = "file".equals(requestedResourceURL.getProtocol()) ?
+                    new File(requestedResourceURL.toURI()) : null;
+            return new CachedAsset(requestedResourceURL, file, length, lastModified);
+        }
+        return new CachedAsset(requestedResourceURL, Resources.toByteArray(requestedResourceURL), lastModified);
+    }
+
+    @Nullable
+    private CachedAsset loadIndexedAsset(@Nullable AssetIndex.Entry entry) throws URISyntaxException, IOException {
+        if (entry == null) {
+            return null;
+        }
+        final URL url = entry.getURL();
+        if (entry.getLength() > streamingThreshold.toBytes()) {
+            final File file = "file".equals(url.getProtocol()) ? new File(url.toURI()) : null;
+            return new CachedAsset(url, file, entry.getLength(), entry.getLastModifiedTime());
+        }
+        final byte[] resource = Resources.toByteArray(url);
+        // use the precompressed copy, if there is one
+        final byte[] gzippedResource = (entry.getGzippedURL() == null) ?
+                CachedAsset.gzip(resource) : Resources.toByteArray(entry.getGzippedURL());
+        return new CachedAsset(url, resource, gzippedResource, entry.getETag(), entry.getLastModifiedTime());
+    }
+
+    private boolean isCachedClientSide(HttpServletRequest req, String eTag, long lastModifiedTime) {
+        final String ifNoneMatch = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+        return eTag.equals(ifNoneMatch) ||
+                (eTag + GZIP_ETAG_SUFFIX).equals(ifNoneMatch) ||
+                (req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE) >= lastModifiedTime);
+    }
+
+    static long getLastModifiedTime(URL url) {
+        long lastModified = ResourceURL.getLastModified(url);
         if (lastModified < 1) {
             // Something went wrong trying to get the last modified time: just use the current time
             lastModified = System.currentTimeMillis();
         }
 
         // zero out the millis since the date we get back from If-Modified-Since will not have them
-        lastModified = (lastModified / 1000) * 1000;
-        return new CachedAsset(Resources.toByteArray(requestedResourceURL), lastModified);
+        return (lastModified / 1000) * 1000;
+    }
+
+    static String computeETag(byte[] resource) {
+        return Hashing.murmur3_128().hashBytes(resource).toString();
     }
 
-    private boolean isCachedClientSide(HttpServletRequest req, CachedAsset cachedAsset) {
-        return cachedAsset.getETag().equals(req.getHeader(HttpHeaders.IF_NONE_MATCH)) ||
-                (req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE) >= cachedAsset.getLastModifiedTime());
+    static String computeETag(long lastModifiedTime, long length) {
+        // hashing the whole asset would mean reading it, so use its size and age instead
+        return Long.toHexString(lastModifiedTime) + '-' + Long.toHexString(length);
     }
 }
@@ -1,8 +1,16 @@
 package com.yammer.dropwizard.assets;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.CacheBuilderSpec;
 import com.yammer.dropwizard.Bundle;
 import com.yammer.dropwizard.config.Bootstrap;
 import com.yammer.dropwizard.config.Environment;
+import com.yammer.dropwizard.util.Size;
+import com.yammer.metrics.Metrics;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -16,6 +24,10 @@ public class AssetsBundle implements Bundle {
     private final String resourcePath;
     private final String uriPath;
     private final String indexFile;
+    private final CacheBuilderSpec cacheSpec;
+    private Size streamingThreshold = AssetServlet.DEFAULT_STREAMING_THRESHOLD;
+    private Size maxCacheSize = AssetServlet.DEFAULT_MAX_CACHE_SIZE;
+    private boolean indexed = false;
 
     /**
      * Creates a new AssetsBundle which serves up static assets from
@@ -66,11 +78,59 @@ public class AssetsBundle implements Bundle {
      * @param indexFile           the name of the index file to use
      */
     public AssetsBundle(String resourcePath, String uriPath, String indexFile) {
+        this(resourcePath, AssetServlet.DEFAULT_CACHE_SPEC, uriPath, indexFile);
+    }
+
+    /**
+     * Creates a new AssetsBundle like {@link AssetsBundle#AssetsBundle(String, String, String)},
+     * which caches the static files it serves as described by {@code cacheSpec}, e.g.
+     * {@code "expireAfterAccess=10m"}. The cache is bounded by {@link #setMaxCacheSize(Size)}.
+     *
+     * @param resourcePath        the resource path (in the classpath) of the static asset files
+     * @param cacheSpec           the specification of the cache of static asset files
+     * @param uriPath             the uri path for the static asset files
+     * @param indexFile           the name of the index file to use
+     * @see CacheBuilderSpec
+     */
+    public AssetsBundle(String resourcePath, CacheBuilderSpec cacheSpec, String uriPath, String indexFile) {
         checkArgument(resourcePath.startsWith("/"), "%s is not an absolute path", resourcePath);
         checkArgument(!"/".equals(resourcePath), "%s is the classpath root", resourcePath);
         this.resourcePath = resourcePath.endsWith("/") ? resourcePath : (resourcePath + '/');
         this.uriPath = uriPath.endsWith("/") ? uriPath : (uriPath + '/');
         this.indexFile = indexFile;
+        this.cacheSpec = cacheSpec;
+    }
+
+    /**
+     * Sets the size above which static files are streamed instead of being cached.
+     *
+     * @param streamingThreshold the size above which static files are streamed
+     * @see AssetServlet#setStreamingThreshold(Size)
+     */
+    public void setStreamingThreshold(Size streamingThreshold) {
+        this.streamingThreshold = streamingThreshold;
+    }
+
+    /**
+     * Sets the maximum size of the cached static files and their gzipped copies. If it's
+     * {@code null}, the cache is only bounded by its spec, e.g. by a {@code maximumSize}.
+     *
+     * @param maxCacheSize the maximum size of the cached static files, or {@code null}
+     */
+    public void setMaxCacheSize(@Nullable Size maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Sets whether the static files are scanned when the service starts, so requests are resolved
+     * from an index of them instead of the classpath. Files added to the resource path after
+     * startup aren't served.
+     *
+     * @param indexed whether to index the static files at startup
+     * @see AssetIndex
+     */
+    public void setIndexed(boolean indexed) {
+        this.indexed = indexed;
     }
 
     @Override
@@ -84,6 +144,22 @@ public class AssetsBundle implements Bundle {
     }
 
     private AssetServlet createServlet() {
-        return new AssetServlet(resourcePath, uriPath, indexFile);
+        final AssetServlet servlet = new AssetServlet(resourcePath,
+                                                      cacheSpec,
+                                                      maxCacheSize,
+                                                      uriPath,
+                                                      indexFile,
+                                                      Metrics.defaultRegistry());
+        servlet.setStreamingThreshold(streamingThreshold);
+        if (indexed) {
+            try {
+                servlet.setIndex(AssetIndex.scan(resourcePath, indexFile, streamingThreshold));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } catch (URISyntaxException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return servlet;
     }
 }
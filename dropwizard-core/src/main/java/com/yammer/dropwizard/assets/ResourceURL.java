@@ -113,4 +113,27 @@ public class ResourceURL {
             throw new IllegalArgumentException("Unsupported protocol " + resourceURL.getProtocol() + " for resource " + resourceURL);
         }
     }
+
+    /**
+     * Returns the size of file:// and jar:// URLs, without reading them.
+     *
+     * @param resourceURL the URL to return the size of
+     * @return the size of the resource in bytes, or -1 if it isn't known
+     */
+    public static long getContentLength(URL resourceURL) throws URISyntaxException {
+        final String protocol = resourceURL.getProtocol();
+        if ("jar".equals(protocol)) {
+            try {
+                final JarURLConnection jarConnection = (JarURLConnection) resourceURL.openConnection();
+                final JarEntry entry = jarConnection.getJarEntry();
+                return entry.getSize();
+            } catch (IOException ignored) {
+                return -1;
+            }
+        } else if ("file".equals(protocol)) {
+            return new File(resourceURL.toURI()).length();
+        } else {
+            throw new IllegalArgumentException("Unsupported protocol " + resourceURL.getProtocol() + " for resource " + resourceURL);
+        }
+    }
 }
@@ -0,0 +1,180 @@
+package com.yammer.dropwizard.config;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import javax.annotation.Nullable;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.yammer.dropwizard.jetty.CachedByteBufferPool;
+import com.yammer.dropwizard.util.Size;
+import com.yammer.dropwizard.validation.ValidationMethod;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * An object representation of the {@code http.bufferPool} section of the YAML configuration file.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class BufferPoolConfiguration {
+    public enum PoolType {
+        /**
+         * Jetty's unbounded {@link ArrayByteBufferPool}, which can't limit the number of buffers it
+         * retains.
+         */
+        ARRAY,
+
+        /**
+         * A bounded, instrumented {@link CachedByteBufferPool}.
+         */
+        CACHED;
+
+        @Override
+        @JsonValue
+        public String toString() {
+            return super.toString().toLowerCase(Locale.ENGLISH);
+        }
+
+        @JsonCreator
+        public static PoolType parse(String type) {
+            return valueOf(type.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    @NotNull
+    @JsonProperty
+    private PoolType type = PoolType.ARRAY;
+
+    @NotNull
+    @JsonProperty
+    private Size minBufferSize = Size.bytes(64);
+
+    @NotNull
+    @JsonProperty
+    private Size bufferSizeIncrement = Size.kilobytes(1);
+
+    @NotNull
+    @JsonProperty
+    private Size maxBufferSize = Size.kilobytes(64);
+
+    @NotNull
+    @JsonProperty
+    private Size maxRetainedPerBucket = Size.megabytes(1);
+
+    @Min(0)
+    @JsonProperty
+    private int threadCacheSize = 4;
+
+    @ValidationMethod(message = "must have a maxBufferSize which is a multiple of bufferSizeIncrement")
+    public boolean isBucketSizeValid() {
+        final long increment = bufferSizeIncrement.toBytes();
+        return increment > 0 && maxBufferSize.toBytes() % increment == 0;
+    }
+
+    public PoolType getType() {
+        return type;
+    }
+
+    public void setType(PoolType type) {
+        this.type = type;
+    }
+
+    public Size getMinBufferSize() {
+        return minBufferSize;
+    }
+
+    public void setMinBufferSize(Size size) {
+        this.minBufferSize = size;
+    }
+
+    public Size getBufferSizeIncrement() {
+        return bufferSizeIncrement;
+    }
+
+    public void setBufferSizeIncrement(Size size) {
+        this.bufferSizeIncrement = size;
+    }
+
+    public Size getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    public void setMaxBufferSize(Size size) {
+        this.maxBufferSize = size;
+    }
+
+    public Size getMaxRetainedPerBucket() {
+        return maxRetainedPerBucket;
+    }
+
+    public void setMaxRetainedPerBucket(Size size) {
+        this.maxRetainedPerBucket = size;
+    }
+
+    public int getThreadCacheSize() {
+        return threadCacheSize;
+    }
+
+    public void setThreadCacheSize(int size) {
+        this.threadCacheSize = size;
+    }
+
+    /**
+     * Builds the buffer pool for a connector.
+     *
+     * @param maxBufferCount   the maximum number of buffers each bucket retains, ignored by the
+     *                         {@link PoolType#ARRAY array} pool
+     * @param useDirectBuffers whether direct buffers may be used
+     * @param metrics          the registry for the pool's metrics
+     * @param name             the name of the connector, used as the scope of its metrics
+     * @return a new buffer pool
+     */
+    public ByteBufferPool build(int maxBufferCount,
+                                boolean useDirectBuffers,
+                                MetricsRegistry metrics,
+                                @Nullable String name) {
+        if (type == PoolType.ARRAY) {
+            final ByteBufferPool pool = new ArrayByteBufferPool((int) minBufferSize.toBytes(),
+                                                                (int) bufferSizeIncrement.toBytes(),
+                                                                (int) maxBufferSize.toBytes());
+            return useDirectBuffers ? pool : new HeapByteBufferPool(pool);
+        }
+
+        final CachedByteBufferPool pool = new CachedByteBufferPool((int) minBufferSize.toBytes(),
+                                                                   (int) bufferSizeIncrement.toBytes(),
+                                                                   (int) maxBufferSize.toBytes(),
+                                                                   maxBufferCount,
+                                                                   maxRetainedPerBucket.toBytes(),
+                                                                   threadCacheSize,
+                                                                   useDirectBuffers);
+        pool.instrument(metrics, name);
+        return pool;
+    }
+
+    /**
+     * Acquires heap buffers from a pool even when direct buffers are requested.
+     */
+    private static class HeapByteBufferPool implements ByteBufferPool {
+        private final ByteBufferPool pool;
+
+        private HeapByteBufferPool(ByteBufferPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public ByteBuffer acquire(int size, boolean direct) {
+            return pool.acquire(size, false);
+        }
+
+        @Override
+        public void release(ByteBuffer buffer) {
+            pool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.yammer.dropwizard.config;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+
+import org.eclipse.jetty.server.Handler;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.yammer.dropwizard.jetty.ConcurrencyLimitHandler;
+import com.yammer.dropwizard.validation.ValidationMethod;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * An object representation of the {@code http.concurrencyLimit} section of the YAML configuration
+ * file.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class ConcurrencyLimitConfiguration {
+    @JsonProperty
+    private boolean enabled = false;
+
+    @Min(1)
+    @JsonProperty
+    private int initialLimit = 20;
+
+    @Min(1)
+    @JsonProperty
+    private int minLimit = 8;
+
+    @Min(1)
+    @JsonProperty
+    private int maxLimit = 1000;
+
+    @DecimalMin("1.0")
+    @JsonProperty
+    private double rttTolerance = 2.0;
+
+    @JsonProperty
+    private double smoothing = 0.2;
+
+    @ValidationMethod(message = "must have minLimit <= initialLimit <= maxLimit")
+    public boolean isLimitRangeValid() {
+        return minLimit <= initialLimit && initialLimit <= maxLimit;
+    }
+
+    @ValidationMethod(message = "must have a smoothing greater than 0 and at most 1")
+    public boolean isSmoothingValid() {
+        return smoothing > 0 && smoothing <= 1;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int limit) {
+        this.initialLimit = limit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int limit) {
+        this.minLimit = limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int limit) {
+        this.maxLimit = limit;
+    }
+
+    public double getRttTolerance() {
+        return rttTolerance;
+    }
+
+    public void setRttTolerance(double tolerance) {
+        this.rttTolerance = tolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public Handler build(Handler handler, MetricsRegistry metrics) {
+        if (!isEnabled()) {
+            return handler;
+        } else {
+            final ConcurrencyLimitHandler limitHandler = new ConcurrencyLimitHandler(metrics,
+                                                                                     initialLimit,
+                                                                                     minLimit,
+                                                                                     maxLimit,
+                                                                                     rttTolerance,
+                                                                                     smoothing);
+            limitHandler.setHandler(handler);
+            return limitHandler;
+        }
+    }
+}
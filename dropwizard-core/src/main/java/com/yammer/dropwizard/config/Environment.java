@@ -49,6 +49,7 @@ import com.yammer.dropwizard.lifecycle.Managed;
 import com.yammer.dropwizard.lifecycle.ServerLifecycleListener;
 import com.yammer.dropwizard.tasks.GarbageCollectionTask;
 import com.yammer.dropwizard.tasks.Task;
+import com.yammer.dropwizard.util.Duration;
 import com.yammer.dropwizard.validation.Validator;
 import com.yammer.metrics.core.HealthCheck;
 
@@ -82,6 +83,7 @@ public class Environment extends AbstractLifeCycle {
     private SessionHandler sessionHandler;
     private ServletContainer jerseyServletContainer;
     private Validator validator;
+    private Duration managedStopTimeout = Duration.seconds(0);
 
     /**
      * Creates a new environment.
@@ -130,6 +132,10 @@ public class Environment extends AbstractLifeCycle {
 
     @Override
     protected void doStop() throws Exception {
+        // managed objects are stopped in the reverse of the order they were added
+        for (JettyManaged managed : lifeCycle.getBeans(JettyManaged.class)) {
+            managed.setStopTimeout(managedStopTimeout);
+        }
         lifeCycle.stop();
     }
 
@@ -206,6 +212,16 @@ public class Environment extends AbstractLifeCycle {
         lifeCycle.addBean(new JettyManaged(checkNotNull(managed)));
     }
 
+    /**
+     * Sets how long stopping each {@link Managed} object may take before it's abandoned and the
+     * next one is stopped. If zero, each is waited for indefinitely.
+     *
+     * @param timeout the stop timeout for each managed object
+     */
+    public void setManagedStopTimeout(Duration timeout) {
+        this.managedStopTimeout = checkNotNull(timeout);
+    }
+
     /**
      * Adds the given Jetty {@link LifeCycle} instances to the server's lifecycle.
      *
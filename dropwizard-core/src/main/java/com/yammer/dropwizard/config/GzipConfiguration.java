@@ -3,7 +3,10 @@ package com.yammer.dropwizard.config;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Set;
+import java.util.zip.Deflater;
 
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import org.eclipse.jetty.server.Handler;
@@ -13,6 +16,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.yammer.dropwizard.jetty.BiDiGzipHandler;
 import com.yammer.dropwizard.util.Size;
+import com.yammer.dropwizard.validation.ValidationMethod;
 
 @SuppressWarnings("UnusedDeclaration")
 public class GzipConfiguration {
@@ -26,12 +30,53 @@ public class GzipConfiguration {
     @JsonProperty
     private Size bufferSize = Size.kilobytes(8);
 
+    @Min(1)
+    @JsonProperty
+    private int inflaterPoolSize = 32;
+
+    @NotNull
+    @JsonProperty
+    private Size maxInflatedEntitySize = Size.megabytes(64);
+
+    @JsonProperty
+    private double maxInflationRatio = 100;
+
+    @Min(-1)
+    @Max(9)
+    @JsonProperty
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    @JsonProperty
+    private boolean adaptiveCompression = false;
+
+    @JsonProperty
+    private double adaptiveThreshold = 0.75;
+
+    @Min(1)
+    @Max(9)
+    @JsonProperty
+    private int minimumCompressionLevel = Deflater.BEST_SPEED;
+
+    @NotNull
+    @JsonProperty
+    private ImmutableSet<String> excludedPaths = ImmutableSet.of();
+
     @JsonProperty
     private ImmutableSet<String> excludedUserAgents = ImmutableSet.of();
 
     @JsonProperty
     private ImmutableSet<String> compressedMimeTypes = ImmutableSet.of();
 
+    @ValidationMethod(message = "must have an adaptiveThreshold between 0 and 1")
+    public boolean isAdaptiveThresholdValid() {
+        return adaptiveThreshold >= 0 && adaptiveThreshold <= 1;
+    }
+
+    @ValidationMethod(message = "must have a maxInflationRatio of at least 0")
+    public boolean isMaxInflationRatioValid() {
+        return maxInflationRatio >= 0;
+    }
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -56,6 +101,70 @@ public class GzipConfiguration {
         this.bufferSize = checkNotNull(size);
     }
 
+    public int getInflaterPoolSize() {
+        return inflaterPoolSize;
+    }
+
+    public void setInflaterPoolSize(int inflaterPoolSize) {
+        this.inflaterPoolSize = inflaterPoolSize;
+    }
+
+    public Size getMaxInflatedEntitySize() {
+        return maxInflatedEntitySize;
+    }
+
+    public void setMaxInflatedEntitySize(Size size) {
+        this.maxInflatedEntitySize = checkNotNull(size);
+    }
+
+    public double getMaxInflationRatio() {
+        return maxInflationRatio;
+    }
+
+    public void setMaxInflationRatio(double maxInflationRatio) {
+        this.maxInflationRatio = maxInflationRatio;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isAdaptiveCompression() {
+        return adaptiveCompression;
+    }
+
+    public void setAdaptiveCompression(boolean adaptiveCompression) {
+        this.adaptiveCompression = adaptiveCompression;
+    }
+
+    public double getAdaptiveThreshold() {
+        return adaptiveThreshold;
+    }
+
+    public void setAdaptiveThreshold(double adaptiveThreshold) {
+        this.adaptiveThreshold = adaptiveThreshold;
+    }
+
+    public int getMinimumCompressionLevel() {
+        return minimumCompressionLevel;
+    }
+
+    public void setMinimumCompressionLevel(int minimumCompressionLevel) {
+        this.minimumCompressionLevel = minimumCompressionLevel;
+    }
+
+    public ImmutableSet<String> getExcludedPaths() {
+        return excludedPaths;
+    }
+
+    public void setExcludedPaths(Set<String> paths) {
+        this.excludedPaths = ImmutableSet.copyOf(paths);
+    }
+
     public ImmutableSet<String> getExcludedUserAgents() {
         return excludedUserAgents;
     }
@@ -85,6 +194,19 @@ public class GzipConfiguration {
 
             final Size bufferSize = getBufferSize();
             gzipHandler.setInputBufferSize((int) bufferSize.toBytes());
+            gzipHandler.setInflaterPoolSize(getInflaterPoolSize());
+            gzipHandler.setMaxInflatedEntitySize(getMaxInflatedEntitySize().toBytes());
+            gzipHandler.setMaxInflationRatio(getMaxInflationRatio());
+
+            gzipHandler.setCompressionLevel(getCompressionLevel());
+            gzipHandler.setAdaptiveCompression(isAdaptiveCompression());
+            gzipHandler.setAdaptiveThreshold(getAdaptiveThreshold());
+            gzipHandler.setMinimumCompressionLevel(getMinimumCompressionLevel());
+
+            final ImmutableSet<String> paths = getExcludedPaths();
+            if (!paths.isEmpty()) {
+                gzipHandler.setExcludedPaths(Iterables.toArray(paths, String.class));
+            }
 
             final ImmutableSet<String> userAgents = getExcludedUserAgents();
             if (!userAgents.isEmpty()) {
@@ -0,0 +1,131 @@
+package com.yammer.dropwizard.config;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.dropwizard.validation.ValidationMethod;
+
+/**
+ * An object representation of the {@code http.healthChecks} section of the YAML configuration
+ * file.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class HealthCheckConfiguration {
+    /**
+     * The schedule of a single health check, overriding the defaults.
+     */
+    public static class Schedule {
+        @JsonProperty
+        private Duration interval;
+
+        @JsonProperty
+        private Duration timeout;
+
+        @Nullable
+        public Duration getInterval() {
+            return interval;
+        }
+
+        public void setInterval(Duration interval) {
+            this.interval = interval;
+        }
+
+        @Nullable
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+
+    @JsonProperty
+    private boolean background = false;
+
+    @NotNull
+    @JsonProperty
+    private Duration interval = Duration.seconds(10);
+
+    @NotNull
+    @JsonProperty
+    private Duration timeout = Duration.seconds(5);
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ImmutableMap<String, Schedule> checks = ImmutableMap.of();
+
+    @ValidationMethod(message = "must have positive health check intervals")
+    public boolean isIntervalValid() {
+        if (interval.toNanoseconds() <= 0) {
+            return false;
+        }
+        for (Schedule schedule : checks.values()) {
+            if (schedule.getInterval() != null && schedule.getInterval().toNanoseconds() <= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isBackground() {
+        return background;
+    }
+
+    public void setBackground(boolean background) {
+        this.background = background;
+    }
+
+    public Duration getInterval() {
+        return interval;
+    }
+
+    public void setInterval(Duration interval) {
+        this.interval = interval;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public ImmutableMap<String, Schedule> getChecks() {
+        return checks;
+    }
+
+    public void setChecks(Map<String, Schedule> checks) {
+        this.checks = ImmutableMap.copyOf(checks);
+    }
+
+    /**
+     * Returns how often the named health check is run.
+     */
+    public Duration getInterval(String name) {
+        final Schedule schedule = checks.get(name);
+        if (schedule == null || schedule.getInterval() == null) {
+            return interval;
+        }
+        return schedule.getInterval();
+    }
+
+    /**
+     * Returns how long a run of the named health check may take before it's reported as unhealthy.
+     */
+    public Duration getTimeout(String name) {
+        final Schedule schedule = checks.get(name);
+        if (schedule == null || schedule.getTimeout() == null) {
+            return timeout;
+        }
+        return schedule.getTimeout();
+    }
+}
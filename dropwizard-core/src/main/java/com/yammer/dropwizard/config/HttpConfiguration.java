@@ -2,7 +2,7 @@ package com.yammer.dropwizard.config;
 
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 import javax.validation.Valid;
@@ -10,8 +10,11 @@ import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpVersion;
-import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.server.ConnectionFactory;
 import org.eclipse.jetty.server.Connector;
@@ -21,7 +24,6 @@ import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.SslConnectionFactory;
-import org.eclipse.jetty.util.BlockingArrayQueue;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -32,8 +34,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
-import com.yammer.dropwizard.jetty.InstrumentedQueuedThreadPool;
+import com.google.common.collect.Sets;
+import com.yammer.dropwizard.jetty.InstrumentedHTTP2ServerConnectionFactory;
 import com.yammer.dropwizard.jetty.Jetty93InstrumentedConnectionFactory;
+import com.yammer.dropwizard.jetty.RoutedServerConnector;
+import com.yammer.dropwizard.jetty.VirtualThreadPool;
 import com.yammer.dropwizard.util.Duration;
 import com.yammer.dropwizard.util.Size;
 import com.yammer.dropwizard.validation.PortRange;
@@ -46,12 +51,16 @@ import com.yammer.metrics.core.MetricsRegistry;
  */
 @SuppressWarnings("UnusedDeclaration")
 public class HttpConfiguration {
+    private static final String H2_PROTOCOL = "h2";
+
     public enum ConnectorType {
         BLOCKING,
         LEGACY,
         LEGACY_SSL,
         NONBLOCKING,
-        NONBLOCKING_SSL;
+        NONBLOCKING_SSL,
+        H2C,
+        H2;
 
         @Override
         @JsonValue
@@ -68,6 +77,7 @@ public class HttpConfiguration {
             switch (this) {
                 case LEGACY_SSL:
                 case NONBLOCKING_SSL:
+                case H2:
                     return true;
                 default:
                     return false;
@@ -85,6 +95,26 @@ public class HttpConfiguration {
     @JsonProperty
     private GzipConfiguration gzip = new GzipConfiguration();
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private BufferPoolConfiguration bufferPool = new BufferPoolConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ThreadPoolConfiguration threadPool = new ThreadPoolConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ConcurrencyLimitConfiguration concurrencyLimit = new ConcurrencyLimitConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private HealthCheckConfiguration healthChecks = new HealthCheckConfiguration();
+
     @Valid
     @JsonProperty
     private SslConfiguration ssl = null;
@@ -101,6 +131,10 @@ public class HttpConfiguration {
     @JsonProperty
     private int adminPort = 8081;
 
+    @NotNull
+    @JsonProperty
+    private ImmutableMap<String, Integer> applicationConnectors = ImmutableMap.of();
+
     @Min(2)
     @Max(1000000)
     @JsonProperty
@@ -133,10 +167,27 @@ public class HttpConfiguration {
     @JsonProperty
     private int acceptorThreadPriorityOffset = 0;
 
+    @Min(-1)
+    @Max(256)
+    @JsonProperty
+    private int selectorThreads = 0;
+
     @Min(-1)
     @JsonProperty
     private int acceptQueueSize = 128;
 
+    @Min(0)
+    @JsonProperty
+    private int reservedAdminThreads = 0;
+
+    @Min(0)
+    @JsonProperty
+    private int maxQueuedAppRequests = 0;
+
+    @NotNull
+    @JsonProperty
+    private Duration appQueueTimeout = Duration.seconds(1);
+
     @Min(1)
     @JsonProperty
     private int maxBufferCount = 1024;
@@ -174,6 +225,14 @@ public class HttpConfiguration {
     @JsonProperty
     private Duration shutdownGracePeriod = Duration.seconds(2);
 
+    @NotNull
+    @JsonProperty
+    private Duration shutdownDelay = Duration.seconds(0);
+
+    @NotNull
+    @JsonProperty
+    private Duration managedStopTimeout = Duration.seconds(0);
+
     @JsonProperty
     private boolean useServerHeader = false;
 
@@ -186,6 +245,14 @@ public class HttpConfiguration {
     @JsonProperty
     private boolean useDirectBuffers = true;
 
+    @NotNull
+    @JsonProperty
+    private Duration latencyHistogramInterval = Duration.seconds(0);
+
+    @Min(0)
+    @JsonProperty
+    private int maxInstrumentedRoutes = 1000;
+
     @JsonProperty
     private String bindHost = null;
 
@@ -197,16 +264,40 @@ public class HttpConfiguration {
 
     @ValidationMethod(message = "must have an SSL configuration when using SSL connection")
     public boolean isSslConfigured() {
-        final ConnectorType type = getConnectorType();
-        return !((ssl == null) && ((type == ConnectorType.LEGACY_SSL) ||
-                                   (type == ConnectorType.NONBLOCKING_SSL)));
+        return !((ssl == null) && getConnectorType().isSsl());
+    }
+
+    @ValidationMethod(message = "must not use the h2 connector on Java 9 or later, which Jetty 9.3's ALPN " +
+            "implementation doesn't support")
+    public boolean isH2Supported() {
+        // Jetty 9.3 negotiates ALPN through the alpn-boot jar, which only exists for Java 8
+        return getConnectorType() != ConnectorType.H2 ||
+                System.getProperty("java.specification.version", "").startsWith("1.");
     }
 
     @ValidationMethod(message = "must have a smaller minThreads than maxThreads")
     public boolean isThreadPoolSizedCorrectly() {
         return minThreads <= maxThreads;
     }
+
+    @ValidationMethod(message = "must leave threads for application requests after reservedAdminThreads, " +
+            "maxQueuedAppRequests and the connectors' acceptor and selector threads")
+    public boolean isReservedAdminThreadCountValid() {
+        return reservedAdminThreads == 0 || getMaxAppDispatches() > 0;
+    }
     
+    @ValidationMethod(message = "must have applicationConnectors on unique ports other than port and adminPort")
+    public boolean isApplicationConnectorPortsValid() {
+        final Set<Integer> ports = Sets.newHashSet(port, adminPort);
+        for (int connectorPort : applicationConnectors.values()) {
+            // 0 picks a free port, so it can't clash
+            if (connectorPort != 0 && (connectorPort < 1025 || connectorPort > 65535 || !ports.add(connectorPort))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @ValidationMethod(message = "must have adminUsername if adminPassword is defined")
     public boolean isAdminUsernameDefined() {
         return (adminPassword == null) || (adminUsername != null);
@@ -228,6 +319,38 @@ public class HttpConfiguration {
         this.gzip = config;
     }
 
+    public BufferPoolConfiguration getBufferPoolConfiguration() {
+        return bufferPool;
+    }
+
+    public void setBufferPoolConfiguration(BufferPoolConfiguration config) {
+        this.bufferPool = config;
+    }
+
+    public ThreadPoolConfiguration getThreadPoolConfiguration() {
+        return threadPool;
+    }
+
+    public void setThreadPoolConfiguration(ThreadPoolConfiguration config) {
+        this.threadPool = config;
+    }
+
+    public ConcurrencyLimitConfiguration getConcurrencyLimitConfiguration() {
+        return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimitConfiguration(ConcurrencyLimitConfiguration config) {
+        this.concurrencyLimit = config;
+    }
+
+    public HealthCheckConfiguration getHealthCheckConfiguration() {
+        return healthChecks;
+    }
+
+    public void setHealthCheckConfiguration(HealthCheckConfiguration config) {
+        this.healthChecks = config;
+    }
+
     public SslConfiguration getSslConfiguration() {
         return ssl;
     }
@@ -264,6 +387,18 @@ public class HttpConfiguration {
         return adminPort;
     }
 
+    /**
+     * Returns the ports of the additional application connectors, by name. Requests to them are
+     * handled by the application, like those to {@link #getPort()}.
+     */
+    public ImmutableMap<String, Integer> getApplicationConnectors() {
+        return applicationConnectors;
+    }
+
+    public void setApplicationConnectors(Map<String, Integer> applicationConnectors) {
+        this.applicationConnectors = ImmutableMap.copyOf(applicationConnectors);
+    }
+
     public void setAdminPort(int port) {
         this.adminPort = port;
     }
@@ -300,6 +435,27 @@ public class HttpConfiguration {
         this.acceptorThreads = count;
     }
 
+    public int getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public void setSelectorThreads(int count) {
+        this.selectorThreads = count;
+    }
+
+    /**
+     * Returns the number of selector threads each connector uses: twice the number of acceptor
+     * threads if {@code selectorThreads} is 0, or one per available processor if it's -1.
+     */
+    public int getSelectorThreadCount() {
+        if (selectorThreads == -1) {
+            return Runtime.getRuntime().availableProcessors();
+        } else if (selectorThreads == 0) {
+            return getAcceptorThreads() * 2;
+        }
+        return selectorThreads;
+    }
+
     public int getAcceptorThreadPriorityOffset() {
         return acceptorThreadPriorityOffset;
     }
@@ -316,6 +472,71 @@ public class HttpConfiguration {
         this.acceptQueueSize = size;
     }
 
+    public int getReservedAdminThreads() {
+        return reservedAdminThreads;
+    }
+
+    public void setReservedAdminThreads(int count) {
+        this.reservedAdminThreads = count;
+    }
+
+    public int getMaxQueuedAppRequests() {
+        return maxQueuedAppRequests;
+    }
+
+    public void setMaxQueuedAppRequests(int count) {
+        this.maxQueuedAppRequests = count;
+    }
+
+    public Duration getAppQueueTimeout() {
+        return appQueueTimeout;
+    }
+
+    public void setAppQueueTimeout(Duration timeout) {
+        this.appQueueTimeout = timeout;
+    }
+
+    /**
+     * Returns the maximum number of application requests dispatched at once by the configured
+     * thread pool; see {@link #getMaxAppDispatches(ThreadPool)}.
+     */
+    public int getMaxAppDispatches() {
+        final int poolSize = (threadPool.getType() == ThreadPoolConfiguration.PoolType.VIRTUAL) ?
+                threadPool.getMaxConcurrency() : maxThreads;
+        return getMaxAppDispatches(poolSize);
+    }
+
+    /**
+     * Returns the maximum number of application requests dispatched at once when the application
+     * and admin share a port, or 0 if no threads are reserved for admin requests. The shared
+     * thread pool also runs every connector's acceptor and selector threads, and queued
+     * application requests hold a thread while they wait, so the dispatches are the threads left
+     * once those and {@code reservedAdminThreads} are taken.
+     * <p>
+     * The size of the pool is its maximum number of threads, or for a {@link VirtualThreadPool}
+     * the maximum number of jobs it runs at once. A pool of any other kind isn't limited.
+     *
+     * @param threadPool the thread pool built by {@link #buildThreadPool()}
+     */
+    public int getMaxAppDispatches(ThreadPool threadPool) {
+        if (threadPool instanceof ThreadPool.SizedThreadPool) {
+            return getMaxAppDispatches(((ThreadPool.SizedThreadPool) threadPool).getMaxThreads());
+        }
+        if (threadPool instanceof VirtualThreadPool) {
+            return getMaxAppDispatches(((VirtualThreadPool) threadPool).getMaxConcurrency());
+        }
+        return 0;
+    }
+
+    private int getMaxAppDispatches(int poolSize) {
+        if (reservedAdminThreads == 0) {
+            return 0;
+        }
+        final int connectors = 1 + applicationConnectors.size();
+        final int connectorThreads = connectors * (getAcceptorThreads() + getSelectorThreadCount());
+        return poolSize - connectorThreads - reservedAdminThreads - maxQueuedAppRequests;
+    }
+
     public int getMaxBufferCount() {
         return maxBufferCount;
     }
@@ -396,6 +617,22 @@ public class HttpConfiguration {
         this.shutdownGracePeriod = duration;
     }
 
+    public Duration getShutdownDelay() {
+        return shutdownDelay;
+    }
+
+    public void setShutdownDelay(Duration delay) {
+        this.shutdownDelay = delay;
+    }
+
+    public Duration getManagedStopTimeout() {
+        return managedStopTimeout;
+    }
+
+    public void setManagedStopTimeout(Duration timeout) {
+        this.managedStopTimeout = timeout;
+    }
+
     public boolean useForwardedHeaders() {
         return useForwardedHeaders;
     }
@@ -412,6 +649,22 @@ public class HttpConfiguration {
         this.useDirectBuffers = useDirectBuffers;
     }
 
+    public Duration getLatencyHistogramInterval() {
+        return latencyHistogramInterval;
+    }
+
+    public void setLatencyHistogramInterval(Duration interval) {
+        this.latencyHistogramInterval = interval;
+    }
+
+    public int getMaxInstrumentedRoutes() {
+        return maxInstrumentedRoutes;
+    }
+
+    public void setMaxInstrumentedRoutes(int maxInstrumentedRoutes) {
+        this.maxInstrumentedRoutes = maxInstrumentedRoutes;
+    }
+
     public Optional<String> getBindHost() {
         return Optional.fromNullable(bindHost);
     }
@@ -476,7 +729,34 @@ public class HttpConfiguration {
         final HttpConnectionFactory httpConnectionFactory = buildHttpConnectionFactory(httpConfig);
 
         final ConnectionFactory[] connectionFactories;
-        if (isSslEnabled()) {
+        if (getConnectorType() == ConnectorType.H2) {
+            final SslContextFactory sslContextFactory = ssl.build();
+            // HTTP/2 blacklists most of the cipher suites allowed by HTTP/1.1, so prefer the
+            // ones it allows
+            sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+            sslContextFactory.setUseCipherSuitesOrder(true);
+
+            server.addBean(sslContextFactory);
+
+            final ALPNServerConnectionFactory alpnConnectionFactory =
+                new ALPNServerConnectionFactory(H2_PROTOCOL, httpConnectionFactory.getProtocol());
+            alpnConnectionFactory.setDefaultProtocol(httpConnectionFactory.getProtocol());
+
+            final SslConnectionFactory sslConnectionFactory =
+                new SslConnectionFactory(sslContextFactory, alpnConnectionFactory.getProtocol());
+
+            connectionFactories = new ConnectionFactory[]{
+                new Jetty93InstrumentedConnectionFactory(sslConnectionFactory, metrics),
+                alpnConnectionFactory,
+                buildHttp2ConnectionFactory(httpConfig, metrics),
+                httpConnectionFactory
+            };
+        } else if (getConnectorType() == ConnectorType.H2C) {
+            connectionFactories = new ConnectionFactory[]{
+                new Jetty93InstrumentedConnectionFactory(httpConnectionFactory, metrics),
+                buildHttp2CleartextConnectionFactory(httpConfig, metrics)
+            };
+        } else if (isSslEnabled()) {
             final SslContextFactory sslContextFactory = ssl.build();
 
             server.addBean(sslContextFactory);
@@ -496,29 +776,17 @@ public class HttpConfiguration {
 
         final Scheduler scheduler = new ScheduledExecutorScheduler();
 
-        final ByteBufferPool bufferPool = buildBufferPool();
+        final ByteBufferPool bufferPool = buildBufferPool(metrics, name);
 
         return buildConnector(server, scheduler, bufferPool, name, threadPool, port, connectionFactories);
     }
 
     public ThreadPool buildThreadPool() {
-      int minThreads = getMinThreads();
-      int maxThreads = getMaxThreads();
-      int maxQueuedRequests = getAcceptQueueSize();
-      final BlockingQueue<Runnable> queue = new BlockingArrayQueue<Runnable>(
-          minThreads,
-          maxThreads,
-          maxQueuedRequests
-      );
-      final InstrumentedQueuedThreadPool threadPool = new InstrumentedQueuedThreadPool(
-          Metrics.defaultRegistry(),
-          maxThreads,
-          minThreads,
-          (int) Duration.minutes(1).toMilliseconds(),
-          queue
-      );
-      threadPool.setName("dw");
-      return threadPool;
+      return threadPool.build("dw",
+                              getMinThreads(),
+                              getMaxThreads(),
+                              getAcceptQueueSize(),
+                              Metrics.defaultRegistry());
     }
 
     protected ServerConnector buildConnector(Server server,
@@ -528,13 +796,14 @@ public class HttpConfiguration {
                                              @Nullable ThreadPool threadPool,
                                              int port,
                                              ConnectionFactory... factories) {
-        final ServerConnector connector = new ServerConnector(server,
-                                                              threadPool,
-                                                              scheduler,
-                                                              bufferPool,
-                                                              getAcceptorThreads(),
-                                                              getAcceptorThreads() * 2,
-                                                              factories);
+        final ServerConnector connector = new RoutedServerConnector(server,
+                                                                    threadPool,
+                                                                    scheduler,
+                                                                    bufferPool,
+                                                                    getAcceptorThreads(),
+                                                                    getSelectorThreadCount(),
+                                                                    factories);
+        connector.setAcceptorPriorityDelta(getAcceptorThreadPriorityOffset());
         connector.setPort(port);
         connector.setHost(getBindHost().orNull());
         connector.setAcceptQueueSize(acceptQueueSize);
@@ -555,6 +824,18 @@ public class HttpConfiguration {
         return httpConnectionFactory;
     }
 
+    // The HTTP/2 factories are not wrapped, as the connector looks them up by protocol to
+    // negotiate or upgrade to HTTP/2; connections are counted by the first factory instead.
+    protected HTTP2ServerConnectionFactory buildHttp2ConnectionFactory(org.eclipse.jetty.server.HttpConfiguration httpConfig,
+                                                                       MetricsRegistry metrics) {
+        return new InstrumentedHTTP2ServerConnectionFactory(httpConfig, metrics);
+    }
+
+    protected HTTP2CServerConnectionFactory buildHttp2CleartextConnectionFactory(org.eclipse.jetty.server.HttpConfiguration httpConfig,
+                                                                                 MetricsRegistry metrics) {
+        return new InstrumentedHTTP2ServerConnectionFactory.Cleartext(httpConfig, metrics);
+    }
+
     protected org.eclipse.jetty.server.HttpConfiguration buildHttpConfiguration(int port) {
         final org.eclipse.jetty.server.HttpConfiguration httpConfig = new org.eclipse.jetty.server.HttpConfiguration();
         httpConfig.setRequestHeaderSize((int) getRequestHeaderBufferSize().toBytes());
@@ -575,11 +856,8 @@ public class HttpConfiguration {
         return httpConfig;
     }
 
-    protected ByteBufferPool buildBufferPool() {
-        // hard-code for now
-        return new ArrayByteBufferPool((int) Size.bytes(64).toBytes(),
-                                       (int) Size.bytes(1024).toBytes(),
-                                       (int) Size.kilobytes(64).toBytes());
+    protected ByteBufferPool buildBufferPool(MetricsRegistry metrics, String name) {
+        return bufferPool.build(getMaxBufferCount(), useDirectBuffers(), metrics, name);
     }
 
     private boolean isSslEnabled() {
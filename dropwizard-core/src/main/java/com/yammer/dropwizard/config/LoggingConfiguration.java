@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonValue;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.dropwizard.util.Size;
 import com.yammer.dropwizard.validation.ValidationMethod;
 
 import javax.validation.Valid;
@@ -260,6 +262,91 @@ public class LoggingConfiguration {
         }
     }
 
+    public static class AsyncConfiguration {
+        @Min(0)
+        @JsonProperty
+        private int queueSize = 0;
+
+        @Min(0)
+        @Max(100)
+        @JsonProperty
+        private int discardingThreshold = 80;
+
+        @JsonProperty
+        private boolean neverBlock = false;
+
+        @NotNull
+        @JsonProperty
+        private Duration shutdownTimeout = Duration.seconds(1);
+
+        @JsonProperty
+        private boolean batchWrites = false;
+
+        @NotNull
+        @JsonProperty
+        private Size maxBatchSize = Size.kilobytes(64);
+
+        @NotNull
+        @JsonProperty
+        private Duration maxFlushLatency = Duration.milliseconds(0);
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+
+        public int getDiscardingThreshold() {
+            return discardingThreshold;
+        }
+
+        public void setDiscardingThreshold(int percent) {
+            this.discardingThreshold = percent;
+        }
+
+        public boolean isNeverBlock() {
+            return neverBlock;
+        }
+
+        public void setNeverBlock(boolean neverBlock) {
+            this.neverBlock = neverBlock;
+        }
+
+        public Duration getShutdownTimeout() {
+            return shutdownTimeout;
+        }
+
+        public void setShutdownTimeout(Duration shutdownTimeout) {
+            this.shutdownTimeout = shutdownTimeout;
+        }
+
+        public boolean isBatchWrites() {
+            return batchWrites;
+        }
+
+        public void setBatchWrites(boolean batchWrites) {
+            this.batchWrites = batchWrites;
+        }
+
+        public Size getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(Size maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public Duration getMaxFlushLatency() {
+            return maxFlushLatency;
+        }
+
+        public void setMaxFlushLatency(Duration maxFlushLatency) {
+            this.maxFlushLatency = maxFlushLatency;
+        }
+    }
+
     @NotNull
     @JsonProperty
     private Level level = Level.INFO;
@@ -283,6 +370,11 @@ public class LoggingConfiguration {
     @JsonProperty
     private SyslogConfiguration syslog = new SyslogConfiguration();
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AsyncConfiguration async = new AsyncConfiguration();
+
     public Level getLevel() {
         return level;
     }
@@ -322,4 +414,12 @@ public class LoggingConfiguration {
     public void setSyslogConfiguration(SyslogConfiguration config) {
         this.syslog = config;
     }
+
+    public AsyncConfiguration getAsyncConfiguration() {
+        return async;
+    }
+
+    public void setAsyncConfiguration(AsyncConfiguration config) {
+        this.async = config;
+    }
 }
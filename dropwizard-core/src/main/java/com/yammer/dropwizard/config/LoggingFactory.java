@@ -7,6 +7,7 @@ import ch.qos.logback.classic.jul.LevelChangePropagator;
 import com.google.common.base.Optional;
 import com.yammer.dropwizard.logging.AsyncAppender;
 import com.yammer.dropwizard.logging.LogbackFactory;
+import com.yammer.metrics.Metrics;
 import com.yammer.metrics.logback.InstrumentedAppender;
 import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
@@ -48,19 +49,26 @@ public class LoggingFactory {
         hijackJDKLogging();
 
         final Logger root = configureLevels();
+        final AsyncConfiguration async = config.getAsyncConfiguration();
 
         final ConsoleConfiguration console = config.getConsoleConfiguration();
         if (console.isEnabled()) {
             root.addAppender(AsyncAppender.wrap(LogbackFactory.buildConsoleAppender(console,
                                                                                     root.getLoggerContext(),
-                                                                                    console.getLogFormat())));
+                                                                                    console.getLogFormat()),
+                                                async,
+                                                "console",
+                                                Metrics.defaultRegistry()));
         }
 
         final FileConfiguration file = config.getFileConfiguration();
         if (file.isEnabled()) {
             root.addAppender(AsyncAppender.wrap(LogbackFactory.buildFileAppender(file,
                                                                                  root.getLoggerContext(),
-                                                                                 file.getLogFormat())));
+                                                                                 file.getLogFormat()),
+                                                async,
+                                                "file",
+                                                Metrics.defaultRegistry()));
         }
 
         final SyslogConfiguration syslog = config.getSyslogConfiguration();
@@ -68,7 +76,10 @@ public class LoggingFactory {
             root.addAppender(AsyncAppender.wrap(LogbackFactory.buildSyslogAppender(syslog,
                                                                                    root.getLoggerContext(),
                                                                                    name,
-                                                                                   syslog.getLogFormat())));
+                                                                                   syslog.getLogFormat()),
+                                                async,
+                                                "syslog",
+                                                Metrics.defaultRegistry()));
         }
 
 
@@ -1,7 +1,15 @@
 package com.yammer.dropwizard.config;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.yammer.dropwizard.jetty.RequestLogRingBuffer;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.dropwizard.util.Size;
+import com.yammer.dropwizard.util.SizeUnit;
+import com.yammer.dropwizard.validation.SizeRange;
 
+import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 import java.util.TimeZone;
 
@@ -9,6 +17,124 @@ import static com.yammer.dropwizard.config.LoggingConfiguration.*;
 
 @SuppressWarnings("UnusedDeclaration")
 public class RequestLogConfiguration {
+    public static class RingBufferConfiguration {
+        @JsonProperty
+        private boolean enabled = false;
+
+        @Min(2)
+        @Max(1 << 24)
+        @JsonProperty
+        private int size = 8192;
+
+        @NotNull
+        @SizeRange(min = 64, max = 64 * 1024)
+        @JsonProperty
+        private Size slotSize = Size.kilobytes(1);
+
+        @NotNull
+        @JsonProperty
+        private RequestLogRingBuffer.OverflowPolicy overflowPolicy = RequestLogRingBuffer.OverflowPolicy.BLOCK;
+
+        @Min(1)
+        @JsonProperty
+        private int sampleRate = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        public void setSize(int size) {
+            this.size = size;
+        }
+
+        public Size getSlotSize() {
+            return slotSize;
+        }
+
+        public void setSlotSize(Size slotSize) {
+            this.slotSize = slotSize;
+        }
+
+        public RequestLogRingBuffer.OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(RequestLogRingBuffer.OverflowPolicy policy) {
+            this.overflowPolicy = policy;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public RequestLogRingBuffer build() {
+            return new RequestLogRingBuffer(size, (int) slotSize.toBytes(), overflowPolicy, sampleRate);
+        }
+    }
+
+    public static class FileChannelConfiguration {
+        @JsonProperty
+        private boolean enabled = false;
+
+        @NotNull
+        @SizeRange(min = 1, max = 16 * 1024, unit = SizeUnit.KILOBYTES)
+        @JsonProperty
+        private Size bufferSize = Size.kilobytes(64);
+
+        @Min(2)
+        @Max(1024)
+        @JsonProperty
+        private int bufferCount = 8;
+
+        @NotNull
+        @JsonProperty
+        private Duration flushInterval = Duration.milliseconds(200);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Size getBufferSize() {
+            return bufferSize;
+        }
+
+        public void setBufferSize(Size bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        public int getBufferCount() {
+            return bufferCount;
+        }
+
+        public void setBufferCount(int bufferCount) {
+            this.bufferCount = bufferCount;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+    }
+
     @NotNull
     @JsonProperty
     private ConsoleConfiguration console = new ConsoleConfiguration();
@@ -21,6 +147,16 @@ public class RequestLogConfiguration {
     @JsonProperty
     private SyslogConfiguration syslog = new SyslogConfiguration();
 
+    @Valid
+    @NotNull
+    @JsonProperty
+    private RingBufferConfiguration ringBuffer = new RingBufferConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private FileChannelConfiguration fileChannel = new FileChannelConfiguration();
+
     @NotNull
     @JsonProperty
     private TimeZone timeZone = UTC;
@@ -49,6 +185,22 @@ public class RequestLogConfiguration {
         this.syslog = syslogConfiguration;
     }
 
+    public RingBufferConfiguration getRingBufferConfiguration() {
+        return ringBuffer;
+    }
+
+    public void setRingBufferConfiguration(RingBufferConfiguration ringBufferConfiguration) {
+        this.ringBuffer = ringBufferConfiguration;
+    }
+
+    public FileChannelConfiguration getFileChannelConfiguration() {
+        return fileChannel;
+    }
+
+    public void setFileChannelConfiguration(FileChannelConfiguration fileChannelConfiguration) {
+        this.fileChannel = fileChannelConfiguration;
+    }
+
     public TimeZone getTimeZone() {
         return timeZone;
     }
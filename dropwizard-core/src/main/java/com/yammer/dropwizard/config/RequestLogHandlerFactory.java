@@ -10,12 +10,24 @@ import ch.qos.logback.core.FileAppender;
 import ch.qos.logback.core.LayoutBase;
 import ch.qos.logback.core.spi.AppenderAttachableImpl;
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 import com.yammer.dropwizard.jetty.AsyncRequestLog;
+import com.yammer.dropwizard.jetty.ChannelRequestLog;
+import com.yammer.dropwizard.jetty.RequestLogRingBuffer;
 import com.yammer.dropwizard.logging.LogbackFactory;
+import com.yammer.dropwizard.logging.RollingFileChannel;
+import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.Clock;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.server.handler.RequestLogHandler;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static com.yammer.dropwizard.config.LoggingConfiguration.ConsoleConfiguration;
 import static com.yammer.dropwizard.config.LoggingConfiguration.FileConfiguration;
 
@@ -30,6 +42,24 @@ public class RequestLogHandlerFactory {
         }
     }
 
+    private static class CompositeRequestLog extends ContainerLifeCycle implements RequestLog {
+        private final RequestLog[] logs;
+
+        private CompositeRequestLog(List<RequestLog> logs) {
+            this.logs = logs.toArray(new RequestLog[logs.size()]);
+            for (RequestLog log : logs) {
+                addBean(log);
+            }
+        }
+
+        @Override
+        public void log(Request request, Response response) {
+            for (RequestLog log : logs) {
+                log.log(request, response);
+            }
+        }
+    }
+
     private final RequestLogConfiguration config;
     private final String name;
 
@@ -66,7 +96,8 @@ public class RequestLogHandlerFactory {
         }
 
         final FileConfiguration file = config.getFileConfiguration();
-        if (file.isEnabled()) {
+        final RequestLogConfiguration.FileChannelConfiguration fileChannel = config.getFileChannelConfiguration();
+        if (file.isEnabled() && !fileChannel.isEnabled()) {
             final FileAppender<ILoggingEvent> appender = LogbackFactory.buildFileAppender(file,
                                                                                           context,
                                                                                           Optional.<String>absent());
@@ -90,10 +121,41 @@ public class RequestLogHandlerFactory {
             appenders.addAppender(appender);
         }
 
+        final RequestLogConfiguration.RingBufferConfiguration ringBufferConfig =
+                config.getRingBufferConfiguration();
+        final RequestLogRingBuffer ringBuffer = ringBufferConfig.isEnabled() ? ringBufferConfig.build() : null;
+
+        final List<RequestLog> requestLogs = Lists.newArrayList();
+        if (appenders.iteratorForAppenders().hasNext()) {
+            requestLogs.add(new AsyncRequestLog(Clock.defaultClock(),
+                                                appenders,
+                                                config.getTimeZone(),
+                                                ringBuffer,
+                                                Metrics.defaultRegistry()));
+        }
+
+        if (file.isEnabled() && fileChannel.isEnabled()) {
+            final RollingFileChannel channel =
+                    new RollingFileChannel(file.getCurrentLogFilename(),
+                                           file.isArchive() ? file.getArchivedLogFilenamePattern() : null,
+                                           file.getArchivedFileCount(),
+                                           file.getTimeZone());
+            requestLogs.add(new ChannelRequestLog(Clock.defaultClock(),
+                                                  channel,
+                                                  config.getTimeZone(),
+                                                  (int) fileChannel.getBufferSize().toBytes(),
+                                                  fileChannel.getBufferCount(),
+                                                  fileChannel.getFlushInterval().toMilliseconds(),
+                                                  TimeUnit.MILLISECONDS,
+                                                  Metrics.defaultRegistry()));
+        }
+
         final RequestLogHandler handler = new RequestLogHandler();
-        handler.setRequestLog(new AsyncRequestLog(Clock.defaultClock(),
-                                                  appenders,
-                                                  config.getTimeZone()));
+        if (requestLogs.size() == 1) {
+            handler.setRequestLog(requestLogs.get(0));
+        } else {
+            handler.setRequestLog(new CompositeRequestLog(requestLogs));
+        }
 
         return handler;
     }
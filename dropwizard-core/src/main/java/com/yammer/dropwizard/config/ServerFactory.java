@@ -4,7 +4,9 @@ import java.util.EnumSet;
 import java.util.EventListener;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.Nullable;
 import javax.servlet.DispatcherType;
 
 import org.eclipse.jetty.security.ConstraintMapping;
@@ -29,8 +31,12 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableMap;
 import com.sun.jersey.spi.container.servlet.ServletContainer;
+import com.yammer.dropwizard.health.HealthCheckScheduler;
+import com.yammer.dropwizard.health.ShutdownHealthCheck;
 import com.yammer.dropwizard.jersey.JacksonMessageBodyProvider;
+import com.yammer.dropwizard.jersey.routes.RouteMetricsResourceMethodDispatchAdapter;
 import com.yammer.dropwizard.jetty.AdminRoutingHandler;
+import com.yammer.dropwizard.jetty.DrainingServer;
 import com.yammer.dropwizard.jetty.InstrumentedHandler;
 import com.yammer.dropwizard.jetty.InstrumentedQueuedThreadPool;
 import com.yammer.dropwizard.jetty.RoutingHandler;
@@ -71,9 +77,17 @@ public class ServerFactory {
     }
 
     public Server buildServer(Environment env) throws ConfigurationException {
-        HealthChecks.defaultRegistry().register(new DeadlockHealthCheck());
+        // never cached, so load balancers see the server start shutting down right away
+        final ShutdownHealthCheck shutdownHealthCheck = new ShutdownHealthCheck();
+        HealthChecks.defaultRegistry().register(shutdownHealthCheck);
+
+        final HealthCheckScheduler scheduler = buildHealthCheckScheduler(env);
+        registerHealthCheck(scheduler, new DeadlockHealthCheck());
         for (HealthCheck healthCheck : env.getHealthChecks()) {
-            HealthChecks.defaultRegistry().register(healthCheck);
+            registerHealthCheck(scheduler, healthCheck);
+        }
+        if (scheduler != null) {
+            env.manage(scheduler);
         }
 
         if (env.getHealthChecks().isEmpty()) {
@@ -90,14 +104,47 @@ public class ServerFactory {
             );
         }
 
-        final Server server = createServer();
+        env.setManagedStopTimeout(config.getManagedStopTimeout());
+
+        final Server server = createServer(shutdownHealthCheck);
         server.setHandler(createHandler(server, env));
         server.addBean(env);
         return server;
     }
 
-    private Server createServer() {
-        final Server server = new Server(config.buildThreadPool());
+    @Nullable
+    private HealthCheckScheduler buildHealthCheckScheduler(Environment env) {
+        if (!config.getHealthCheckConfiguration().isBackground()) {
+            return null;
+        }
+        // a thread per check, including the deadlock check, so a slow check doesn't delay the others
+        final int threads = env.getHealthChecks().size() + 1;
+        return new HealthCheckScheduler(env.managedScheduledExecutorService("health-check-scheduler-%d", threads),
+                                        env.managedExecutorService("health-check-%d",
+                                                                   threads,
+                                                                   threads,
+                                                                   1,
+                                                                   TimeUnit.MINUTES),
+                                        Metrics.defaultRegistry());
+    }
+
+    private void registerHealthCheck(@Nullable HealthCheckScheduler scheduler, HealthCheck healthCheck) {
+        if (scheduler == null) {
+            HealthChecks.defaultRegistry().register(healthCheck);
+        } else {
+            final HealthCheckConfiguration healthChecks = config.getHealthCheckConfiguration();
+            final String name = healthCheck.getName();
+            HealthChecks.defaultRegistry().register(scheduler.schedule(healthCheck,
+                                                                       healthChecks.getInterval(name),
+                                                                       healthChecks.getTimeout(name)));
+        }
+    }
+
+    private Server createServer(ShutdownHealthCheck shutdownHealthCheck) {
+        final Server server = new DrainingServer(config.buildThreadPool(),
+                                                 shutdownHealthCheck,
+                                                 config.getShutdownDelay(),
+                                                 Metrics.defaultRegistry());
 
         ErrorHandler errorHandler = new UnbrandedErrorHandler();
         errorHandler.setServer(server);
@@ -113,18 +160,21 @@ public class ServerFactory {
         final Handler applicationHandler = createAppServlet(server, env, Metrics.defaultRegistry());
         final Handler adminHandler = createAdminServlet(server, env, Metrics.defaultRegistry());
 
-        final Handler routingHandler;
+        final Map<Connector, Handler> handlers = new LinkedHashMap<Connector, Handler>();
         if (config.getAdminPort() != 0 && config.getAdminPort() == config.getPort()) {
             // use "simple" server with one connector
             final Connector conn = buildAppConnector(server, env, Metrics.defaultRegistry());
 
             server.addConnector(conn);
 
-            routingHandler = new AdminRoutingHandler(applicationHandler, adminHandler);
+            handlers.put(conn, new AdminRoutingHandler(applicationHandler,
+                                                       adminHandler,
+                                                       config.getMaxAppDispatches(server.getThreadPool()),
+                                                       config.getMaxQueuedAppRequests(),
+                                                       config.getAppQueueTimeout().getQuantity(),
+                                                       config.getAppQueueTimeout().getUnit()));
         } else {
             // use "default" server with multiple connectors
-            final Map<Connector, Handler> handlers = new LinkedHashMap<Connector, Handler>();
-
             Connector appConnector = buildAppConnector(server, env, Metrics.defaultRegistry());
             server.addConnector(appConnector);
             handlers.put(appConnector, applicationHandler);
@@ -132,10 +182,22 @@ public class ServerFactory {
             Connector adminConnector = buildAdminConnector(server, env, Metrics.defaultRegistry());
             server.addConnector(adminConnector);
             handlers.put(adminConnector, adminHandler);
+        }
 
-            routingHandler = new RoutingHandler(handlers);
+        for (Map.Entry<String, Integer> entry : config.getApplicationConnectors().entrySet()) {
+            final Connector connector = config.build(server,
+                                                     Metrics.defaultRegistry(),
+                                                     entry.getKey(),
+                                                     null,
+                                                     entry.getValue());
+            server.addConnector(connector);
+            handlers.put(connector, applicationHandler);
         }
 
+        // a single connector doesn't need routing
+        final Handler routingHandler = (handlers.size() == 1) ?
+                handlers.values().iterator().next() : new RoutingHandler(handlers);
+
         final Handler gzipHandler = config.getGzipConfiguration().build(routingHandler);
         return addStatsHandler(addRequestLog(server, gzipHandler, env.getName()));
     }
@@ -178,6 +240,12 @@ public class ServerFactory {
         final ServletContainer jerseyContainer = env.getJerseyServletContainer();
         if (jerseyContainer != null) {
             env.addProvider(new JacksonMessageBodyProvider(env.getObjectMapperFactory().build(), env.getValidator()));
+            if (config.getMaxInstrumentedRoutes() > 0) {
+                final RouteMetricsResourceMethodDispatchAdapter routeMetrics =
+                        new RouteMetricsResourceMethodDispatchAdapter(metricsRegistry,
+                                                                      config.getMaxInstrumentedRoutes());
+                routeMetrics.register(env.getJerseyResourceConfig());
+            }
             final ServletHolder jerseyHolder = new ServletHolder(jerseyContainer);
             jerseyHolder.setInitOrder(Integer.MAX_VALUE);
             handler.addServlet(jerseyHolder, config.getRootPath());
@@ -197,10 +265,18 @@ public class ServerFactory {
 
         handler.setSessionHandler(env.getSessionHandler());
 
-        final InstrumentedHandler instrumented = new InstrumentedHandler(metricsRegistry);
+        final InstrumentedHandler instrumented =
+                new InstrumentedHandler(metricsRegistry,
+                                        config.getLatencyHistogramInterval().getQuantity(),
+                                        config.getLatencyHistogramInterval().getUnit());
         instrumented.setServer(server);
         instrumented.setHandler(handler);
-        return instrumented;
+        // only the application is limited, so the admin port stays reachable under overload; the
+        // limiter sits outside the instrumented handler so its metrics keep their names, which
+        // means its 503s are counted by its rejected meter but not by the response metrics
+        final Handler limited = config.getConcurrencyLimitConfiguration().build(instrumented, metricsRegistry);
+        limited.setServer(server);
+        return limited;
     }
 
     protected Handler createAdminServlet(Server server, Environment env, MetricsRegistry metrics) {
@@ -0,0 +1,170 @@
+package com.yammer.dropwizard.config;
+
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.yammer.dropwizard.jetty.AdaptiveQueuedThreadPool;
+import com.yammer.dropwizard.jetty.InstrumentedQueuedThreadPool;
+import com.yammer.dropwizard.jetty.VirtualThreadPool;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.dropwizard.validation.ValidationMethod;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * An object representation of the {@code http.threadPool} section of the YAML configuration file.
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class ThreadPoolConfiguration {
+    public enum PoolType {
+        /**
+         * An {@link InstrumentedQueuedThreadPool}, which starts threads whenever none are idle.
+         */
+        QUEUED,
+
+        /**
+         * An {@link AdaptiveQueuedThreadPool}, which sizes itself by queue latency.
+         */
+        ADAPTIVE,
+
+        /**
+         * A {@link VirtualThreadPool}, which runs each job on its own virtual thread.
+         */
+        VIRTUAL;
+
+        @Override
+        @JsonValue
+        public String toString() {
+            return super.toString().toLowerCase(Locale.ENGLISH);
+        }
+
+        @JsonCreator
+        public static PoolType parse(String type) {
+            return valueOf(type.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    @NotNull
+    @JsonProperty
+    private PoolType type = PoolType.QUEUED;
+
+    @NotNull
+    @JsonProperty
+    private Duration idleTimeout = Duration.minutes(1);
+
+    @NotNull
+    @JsonProperty
+    private Duration targetQueueLatency = Duration.milliseconds(10);
+
+    @NotNull
+    @JsonProperty
+    private Duration adjustmentInterval = Duration.seconds(1);
+
+    @Min(1)
+    @JsonProperty
+    private int maxConcurrency = 10000;
+
+    @ValidationMethod(message = "must run on a JDK with virtual threads to use a virtual thread pool")
+    public boolean isPoolTypeSupported() {
+        return type != PoolType.VIRTUAL || VirtualThreadPool.isSupported();
+    }
+
+    @ValidationMethod(message = "must have a positive adjustmentInterval")
+    public boolean isAdjustmentIntervalValid() {
+        return adjustmentInterval.toNanoseconds() > 0;
+    }
+
+    public PoolType getType() {
+        return type;
+    }
+
+    public void setType(PoolType type) {
+        this.type = type;
+    }
+
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration timeout) {
+        this.idleTimeout = timeout;
+    }
+
+    public Duration getTargetQueueLatency() {
+        return targetQueueLatency;
+    }
+
+    public void setTargetQueueLatency(Duration latency) {
+        this.targetQueueLatency = latency;
+    }
+
+    public Duration getAdjustmentInterval() {
+        return adjustmentInterval;
+    }
+
+    public void setAdjustmentInterval(Duration interval) {
+        this.adjustmentInterval = interval;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int count) {
+        this.maxConcurrency = count;
+    }
+
+    /**
+     * Builds the thread pool for the application's connectors.
+     *
+     * @param name              the name of the pool, used as the prefix of its threads' names
+     * @param minThreads        the minimum number of threads
+     * @param maxThreads        the maximum number of threads
+     * @param maxQueuedRequests the maximum number of queued jobs
+     * @param metrics           the registry for the pool's metrics
+     * @return a new thread pool
+     */
+    public ThreadPool build(String name,
+                            int minThreads,
+                            int maxThreads,
+                            int maxQueuedRequests,
+                            MetricsRegistry metrics) {
+        if (type == PoolType.VIRTUAL) {
+            final VirtualThreadPool pool = new VirtualThreadPool(metrics, maxConcurrency, maxQueuedRequests);
+            pool.setName(name);
+            return pool;
+        }
+
+        final BlockingQueue<Runnable> queue = new BlockingArrayQueue<Runnable>(
+            minThreads,
+            maxThreads,
+            maxQueuedRequests
+        );
+        final int idleTimeoutMillis = (int) idleTimeout.toMilliseconds();
+        final QueuedThreadPool pool;
+        if (type == PoolType.ADAPTIVE) {
+            pool = new AdaptiveQueuedThreadPool(metrics,
+                                                maxThreads,
+                                                minThreads,
+                                                idleTimeoutMillis,
+                                                queue,
+                                                targetQueueLatency.toNanoseconds(),
+                                                adjustmentInterval.toNanoseconds(),
+                                                TimeUnit.NANOSECONDS);
+        } else {
+            pool = new InstrumentedQueuedThreadPool(metrics, maxThreads, minThreads, idleTimeoutMillis, queue);
+        }
+        pool.setName(name);
+        return pool;
+    }
+}
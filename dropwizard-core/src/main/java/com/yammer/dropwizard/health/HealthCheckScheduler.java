@@ -0,0 +1,134 @@
+package com.yammer.dropwizard.health;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.collect.Lists;
+import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.metrics.core.HealthCheck;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+/**
+ * Runs health checks in the background, so that asking for their results doesn't run them.
+ * <p>
+ * Each check given to {@link #schedule(HealthCheck, Duration, Duration)} is wrapped in a
+ * {@link HealthCheck} of the same name which returns the result of its most recent run. Once
+ * started, the scheduler runs each check every interval, and a run which takes longer than the
+ * check's timeout is interrupted and reported as unhealthy. The duration of each run is recorded
+ * by a {@code duration} timer scoped to the check's name. Until a check's first run completes,
+ * asking for its result runs it in place.
+ */
+public class HealthCheckScheduler implements Managed {
+    private class ScheduledHealthCheck extends HealthCheck implements Runnable {
+        private final HealthCheck healthCheck;
+        private final long intervalNanos;
+        private final long timeoutNanos;
+        private final Timer duration;
+        private volatile Result result;
+
+        private ScheduledHealthCheck(HealthCheck healthCheck, Duration interval, Duration timeout) {
+            super(healthCheck.getName());
+            this.healthCheck = healthCheck;
+            this.intervalNanos = interval.toNanoseconds();
+            this.timeoutNanos = timeout.toNanoseconds();
+            this.duration = metrics.newTimer(HealthCheck.class,
+                                             "duration",
+                                             healthCheck.getName(),
+                                             TimeUnit.MILLISECONDS,
+                                             TimeUnit.SECONDS);
+        }
+
+        @Override
+        protected Result check() throws Exception {
+            final Result cached = result;
+            if (cached != null) {
+                return cached;
+            }
+            return healthCheck.execute();
+        }
+
+        @Override
+        public void run() {
+            final TimerContext context = duration.time();
+            final Future<Result> future = executor.submit(new Callable<Result>() {
+                @Override
+                public Result call() throws Exception {
+                    return healthCheck.execute();
+                }
+            });
+            try {
+                this.result = future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                this.result = Result.unhealthy("Timed out after " + Duration.nanoseconds(timeoutNanos));
+            } catch (ExecutionException e) {
+                this.result = Result.unhealthy(e.getCause());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+            } finally {
+                context.stop();
+            }
+        }
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+    private final MetricsRegistry metrics;
+    private final List<ScheduledHealthCheck> healthChecks = Lists.newArrayList();
+
+    /**
+     * Creates a new scheduler. Both executors should have a thread for each check, so that a slow
+     * check doesn't delay the others.
+     *
+     * @param scheduler the executor which schedules the checks and waits for their results
+     * @param executor  the executor which runs the checks
+     * @param metrics   the registry for the checks' timers
+     */
+    public HealthCheckScheduler(ScheduledExecutorService scheduler,
+                                ExecutorService executor,
+                                MetricsRegistry metrics) {
+        this.scheduler = scheduler;
+        this.executor = executor;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Schedules a health check.
+     *
+     * @param healthCheck a health check
+     * @param interval    how often to run it
+     * @param timeout     how long a run may take before it's reported as unhealthy
+     * @return a health check which returns the result of the most recent run
+     */
+    public HealthCheck schedule(HealthCheck healthCheck, Duration interval, Duration timeout) {
+        final ScheduledHealthCheck scheduled = new ScheduledHealthCheck(healthCheck, interval, timeout);
+        healthChecks.add(scheduled);
+        return scheduled;
+    }
+
+    @Override
+    public void start() throws Exception {
+        for (ScheduledHealthCheck healthCheck : healthChecks) {
+            scheduler.scheduleWithFixedDelay(healthCheck,
+                                             0,
+                                             healthCheck.intervalNanos,
+                                             TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,34 @@
+package com.yammer.dropwizard.health;
+
+import com.yammer.metrics.core.HealthCheck;
+
+/**
+ * A health check which is healthy until the server starts shutting down, so that load balancers
+ * stop sending it requests before it stops accepting them.
+ */
+public class ShutdownHealthCheck extends HealthCheck {
+    private volatile boolean shuttingDown;
+
+    public ShutdownHealthCheck() {
+        super("shutdown");
+    }
+
+    /**
+     * Makes the check unhealthy from now on.
+     */
+    public void shutdownStarted() {
+        this.shuttingDown = true;
+    }
+
+    public boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    @Override
+    protected Result check() throws Exception {
+        if (shuttingDown) {
+            return Result.unhealthy("Shutting down");
+        }
+        return Result.healthy();
+    }
+}
@@ -0,0 +1,255 @@
+package com.yammer.dropwizard.jersey.routes;
+
+import com.google.common.collect.Sets;
+import com.sun.jersey.api.core.HttpContext;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.sun.jersey.api.model.AbstractResource;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceMethodDispatchAdapter;
+import com.sun.jersey.spi.container.ResourceMethodDispatchProvider;
+import com.sun.jersey.spi.dispatch.RequestDispatcher;
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ResourceMethodDispatchAdapter} which records a timer, an in-flight counter and
+ * response code meters for every route (HTTP method and templated path) of every resource method.
+ * <p>
+ * The metrics are created once, when Jersey builds the dispatcher for each resource method, and
+ * are registered in the {@code routes} group with the route as their type. The route is made safe
+ * for JMX and Graphite: path segments are separated by dots, template parameters are reduced to
+ * their names with a {@code $} prefix, and any other punctuation is replaced by underscores, e.g.
+ * {@code routes.GET.users.$id.requests}. Once {@code maxRoutes} distinct routes have been
+ * instrumented, any further routes share the metrics of the {@code other} route.
+ * <p>
+ * Response codes are only known once exception mappers have run, so they're counted by a
+ * {@link ContainerResponseFilter}; use {@link #register(ResourceConfig)} to add both the adapter
+ * and its filter. Exceptions which aren't mapped to a response are timed, but aren't counted as
+ * responses.
+ */
+public class RouteMetricsResourceMethodDispatchAdapter implements ResourceMethodDispatchAdapter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteMetricsResourceMethodDispatchAdapter.class);
+    private static final String GROUP = "routes";
+    private static final String OTHER_ROUTE = "other";
+    private static final String METRICS_PROPERTY = RouteMetricsResourceMethodDispatchAdapter.class.getName();
+
+    private static class RouteMetrics {
+        private final Timer requests;
+        private final Counter activeRequests;
+        private final Meter[] responses;
+
+        private RouteMetrics(MetricsRegistry registry, String route) {
+            this.requests = registry.newTimer(new MetricName(GROUP, route, "requests"),
+                                              TimeUnit.MILLISECONDS,
+                                              TimeUnit.SECONDS);
+            this.activeRequests = registry.newCounter(new MetricName(GROUP, route, "active-requests"));
+            this.responses = new Meter[5];
+            for (int i = 0; i < responses.length; i++) {
+                final String name = (i + 1) + "xx-responses";
+                responses[i] = registry.newMeter(new MetricName(GROUP, route, name), "responses", TimeUnit.SECONDS);
+            }
+        }
+
+        private void mark(int status) {
+            final int responseStatus = status / 100;
+            if (responseStatus >= 1 && responseStatus <= 5) {
+                responses[responseStatus - 1].mark();
+            }
+        }
+    }
+
+    private class RouteMetricsResourceMethodDispatchProvider implements ResourceMethodDispatchProvider {
+        private final ResourceMethodDispatchProvider provider;
+
+        private RouteMetricsResourceMethodDispatchProvider(ResourceMethodDispatchProvider provider) {
+            this.provider = provider;
+        }
+
+        @Override
+        public RequestDispatcher create(AbstractResourceMethod abstractResourceMethod) {
+            final RequestDispatcher dispatcher = provider.create(abstractResourceMethod);
+            if (dispatcher == null) {
+                return null;
+            }
+            return new RouteMetricsRequestDispatcher(dispatcher, metricsFor(abstractResourceMethod));
+        }
+    }
+
+    private static class RouteMetricsResponseFilter implements ContainerResponseFilter {
+        @Override
+        public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+            final RouteMetrics metrics = (RouteMetrics) request.getProperties().get(METRICS_PROPERTY);
+            if (metrics != null) {
+                metrics.mark(response.getStatus());
+            }
+            return response;
+        }
+    }
+
+    private class RouteMetricsRequestDispatcher implements RequestDispatcher {
+        private final RequestDispatcher dispatcher;
+        private final RouteMetrics metrics;
+
+        private RouteMetricsRequestDispatcher(RequestDispatcher dispatcher, RouteMetrics metrics) {
+            this.dispatcher = dispatcher;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void dispatch(Object resource, HttpContext context) {
+            // the response is counted by filter(), once any exception has been mapped
+            context.getProperties().put(METRICS_PROPERTY, metrics);
+            metrics.activeRequests.inc();
+            final long start = clock.tick();
+            try {
+                dispatcher.dispatch(resource, context);
+            } finally {
+                metrics.requests.update(clock.tick() - start, TimeUnit.NANOSECONDS);
+                metrics.activeRequests.dec();
+            }
+        }
+    }
+
+    private final MetricsRegistry registry;
+    private final int maxRoutes;
+    private final Clock clock;
+    private final Set<String> routes = Sets.newHashSet();
+    private RouteMetrics other;
+
+    /**
+     * Creates a new adapter.
+     *
+     * @param registry  the registry for the route metrics
+     * @param maxRoutes the maximum number of routes with their own metrics
+     */
+    public RouteMetricsResourceMethodDispatchAdapter(MetricsRegistry registry, int maxRoutes) {
+        this(registry, maxRoutes, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a new adapter.
+     *
+     * @param registry  the registry for the route metrics
+     * @param maxRoutes the maximum number of routes with their own metrics
+     * @param clock     the clock used to time requests
+     */
+    public RouteMetricsResourceMethodDispatchAdapter(MetricsRegistry registry, int maxRoutes, Clock clock) {
+        this.registry = registry;
+        this.maxRoutes = maxRoutes;
+        this.clock = clock;
+    }
+
+    /**
+     * Adds the adapter as a provider and the filter which counts its responses as a container
+     * response filter of the given resource config.
+     *
+     * @param config the resource config
+     */
+    @SuppressWarnings("unchecked")
+    public void register(ResourceConfig config) {
+        config.getSingletons().add(this);
+        config.getContainerResponseFilters().add(new RouteMetricsResponseFilter());
+    }
+
+    @Override
+    public ResourceMethodDispatchProvider adapt(ResourceMethodDispatchProvider provider) {
+        return new RouteMetricsResourceMethodDispatchProvider(provider);
+    }
+
+    private synchronized RouteMetrics metricsFor(AbstractResourceMethod method) {
+        // a route's dispatcher may be created more than once, and it gets the same metrics each time
+        final String route = route(method);
+        if (!routes.contains(route) && routes.size() >= maxRoutes) {
+            LOGGER.debug("Not instrumenting {}: more than {} routes", route, maxRoutes);
+            return other();
+        }
+        routes.add(route);
+        return new RouteMetrics(registry, route);
+    }
+
+    private RouteMetrics other() {
+        if (other == null) {
+            LOGGER.warn("More than {} routes; additional routes will be reported as '{}'", maxRoutes, OTHER_ROUTE);
+            this.other = new RouteMetrics(registry, OTHER_ROUTE);
+        }
+        return other;
+    }
+
+    private static String route(AbstractResourceMethod method) {
+        final StringBuilder route = new StringBuilder(method.getHttpMethod());
+        final AbstractResource resource = method.getResource();
+        if (resource.isRootResource()) {
+            appendPath(route, resource.getPath().getValue());
+        } else {
+            // reached through a sub-resource locator, so there's no path of its own
+            route.append('.').append(resource.getResourceClass().getSimpleName());
+        }
+        if (method instanceof AbstractSubResourceMethod) {
+            appendPath(route, ((AbstractSubResourceMethod) method).getPath().getValue());
+        }
+        return route.toString();
+    }
+
+    private static void appendPath(StringBuilder route, String path) {
+        final StringBuilder segment = new StringBuilder();
+        int i = 0;
+        while (i < path.length()) {
+            final char c = path.charAt(i);
+            if (c == '/') {
+                appendSegment(route, segment);
+                i++;
+            } else if (c == '{') {
+                // a template parameter, whose regular expression may contain braces and slashes
+                final int nameStart = i + 1;
+                int nameEnd = -1;
+                int depth = 1;
+                int j = nameStart;
+                while (j < path.length() && depth > 0) {
+                    final char d = path.charAt(j);
+                    if (d == '{') {
+                        depth++;
+                    } else if (d == '}') {
+                        depth--;
+                    }
+                    if (nameEnd < 0 && (d == ':' || depth == 0)) {
+                        nameEnd = j;
+                    }
+                    j++;
+                }
+                segment.append('$').append(path.substring(nameStart, nameEnd < 0 ? j : nameEnd).trim());
+                i = j;
+            } else {
+                segment.append(c);
+                i++;
+            }
+        }
+        appendSegment(route, segment);
+    }
+
+    private static void appendSegment(StringBuilder route, StringBuilder segment) {
+        if (segment.length() == 0) {
+            return;
+        }
+        route.append('.');
+        for (int i = 0; i < segment.length(); i++) {
+            final char c = segment.charAt(i);
+            final boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                    c == '_' || c == '-' || c == '$';
+            route.append(safe ? c : '_');
+        }
+        segment.setLength(0);
+    }
+}
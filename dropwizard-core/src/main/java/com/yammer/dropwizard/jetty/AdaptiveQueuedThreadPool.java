@@ -0,0 +1,188 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+/**
+ * An {@link InstrumentedQueuedThreadPool} which sizes itself by how long jobs wait in its queue.
+ * <p>
+ * Every job is timestamped when it's queued, and the time until a thread starts running it is
+ * recorded by the {@code queue-latency} timer. Once per adjustment interval, the 99th percentile
+ * of the interval's queue latency is compared against a target: if it's above the target, the
+ * number of core threads grows by a quarter; if it's below half the target, or no jobs were run,
+ * it shrinks by an eighth. Core threads are started immediately, so bursts are absorbed without
+ * waiting for the queue to back up, and threads above the core exit once they've been idle for
+ * the idle timeout. The core never leaves the pool's configured minimum and maximum.
+ */
+public class AdaptiveQueuedThreadPool extends InstrumentedQueuedThreadPool {
+    private class QueuedJob implements Runnable {
+        private final Runnable job;
+        private final long queuedAt;
+
+        private QueuedJob(Runnable job, long queuedAt) {
+            this.job = job;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            final long latency = clock.tick() - queuedAt;
+            queueTime.update(latency, TimeUnit.NANOSECONDS);
+            queueLatencies.update(latency, TimeUnit.NANOSECONDS);
+            job.run();
+        }
+
+        @Override
+        public String toString() {
+            return job.toString();
+        }
+    }
+
+    private final Clock clock;
+    private final Timer queueTime;
+    private final LatencyRecorder queueLatencies;
+    private final double targetLatencyMillis;
+    private final long adjustmentIntervalNanos;
+    private final int lowerBound;
+    private final int upperBound;
+    private final Scheduler scheduler = new ScheduledExecutorScheduler();
+    private long lastIntervalEnd;
+    private volatile int coreThreads;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param registry           the metrics registry
+     * @param maxThreads         the maximum number of threads
+     * @param minThreads         the minimum number of core threads
+     * @param idleTimeout        the number of milliseconds after which idle non-core threads exit
+     * @param queue              the job queue
+     * @param targetLatency      the target 99th percentile of time spent queued
+     * @param adjustmentInterval how often the number of core threads is adjusted
+     * @param unit               the unit of {@code targetLatency} and {@code adjustmentInterval}
+     */
+    public AdaptiveQueuedThreadPool(MetricsRegistry registry,
+                                    int maxThreads,
+                                    int minThreads,
+                                    int idleTimeout,
+                                    BlockingQueue<Runnable> queue,
+                                    long targetLatency,
+                                    long adjustmentInterval,
+                                    TimeUnit unit) {
+        this(registry, maxThreads, minThreads, idleTimeout, queue,
+             targetLatency, adjustmentInterval, unit, Clock.defaultClock());
+    }
+
+    public AdaptiveQueuedThreadPool(MetricsRegistry registry,
+                                    int maxThreads,
+                                    int minThreads,
+                                    int idleTimeout,
+                                    BlockingQueue<Runnable> queue,
+                                    long targetLatency,
+                                    long adjustmentInterval,
+                                    TimeUnit unit,
+                                    Clock clock) {
+        super(registry, maxThreads, minThreads, idleTimeout, queue);
+        this.clock = clock;
+        this.targetLatencyMillis = unit.toNanos(targetLatency) / 1e6;
+        this.adjustmentIntervalNanos = unit.toNanos(adjustmentInterval);
+        this.lowerBound = minThreads;
+        this.upperBound = maxThreads;
+        this.coreThreads = minThreads;
+        this.queueLatencies = new LatencyRecorder(clock, adjustmentInterval, unit);
+        this.lastIntervalEnd = queueLatencies.value().getEnd();
+        this.queueTime = registry.newTimer(QueuedThreadPool.class, "queue-latency");
+        registry.newGauge(QueuedThreadPool.class, "core-threads", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return coreThreads;
+            }
+        });
+    }
+
+    /**
+     * Returns the current number of core threads.
+     */
+    public int getCoreThreads() {
+        return coreThreads;
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        super.execute(new QueuedJob(job, clock.tick()));
+    }
+
+    /**
+     * Adjusts the number of core threads to the most recent interval's queue latency. Called once
+     * per adjustment interval while the pool is running.
+     */
+    public void adjust() {
+        adjust(queueLatencies.value());
+    }
+
+    /**
+     * Adjusts the number of core threads to the given queue latencies.
+     *
+     * @param snapshot the queue latencies of the most recent interval
+     */
+    public synchronized void adjust(LatencyRecorder.Snapshot snapshot) {
+        if (snapshot.getEnd() == lastIntervalEnd) {
+            // the interval hasn't ended yet
+            return;
+        }
+        this.lastIntervalEnd = snapshot.getEnd();
+
+        final int current = coreThreads;
+        final int next;
+        if (snapshot.getCount() > 0 && snapshot.get99thPercentile() > targetLatencyMillis) {
+            next = Math.min(upperBound, current + Math.max(1, current / 4));
+        } else if (snapshot.getCount() == 0 || snapshot.get99thPercentile() < targetLatencyMillis / 2) {
+            next = Math.max(lowerBound, current - Math.max(1, current / 8));
+        } else {
+            next = current;
+        }
+
+        if (next != current) {
+            this.coreThreads = next;
+            // starts any missing core threads right away
+            setMinThreads(next);
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        scheduler.start();
+        scheduleAdjustment();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        scheduler.stop();
+        super.doStop();
+    }
+
+    private void scheduleAdjustment() {
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    adjust();
+                } finally {
+                    if (isRunning()) {
+                        scheduleAdjustment();
+                    }
+                }
+            }
+        }, adjustmentIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -1,6 +1,9 @@
 package com.yammer.dropwizard.jetty;
 
 import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -10,34 +13,124 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 /**
  * A Jetty router which routes /admin requests to the admin handler.
+ * <p>
+ * If it's given a maximum number of application dispatches, application requests have a lane of
+ * their own: at most that many are dispatched at once, and the rest wait, in order, for one to
+ * finish. At most {@code maxQueuedAppRequests} wait at once, each for at most the queue timeout;
+ * requests beyond the queue, or which time out in it, are rejected with
+ * {@code 503 Service Unavailable}. A waiting request holds its thread, so the lane's threads are
+ * the dispatches plus the queue. As that's fewer than the server's threads, the remaining threads
+ * are always free for admin requests, so health checks keep answering while the application is
+ * saturated.
+ * <p>
+ * Requests wait before they're dispatched to the application handler, so once admitted they pass
+ * through its filters, metrics and limits like any other request. Only a request's initial
+ * dispatch waits; a resumed asynchronous request was admitted when it was first dispatched.
  */
 public class AdminRoutingHandler extends AbstractHandler {
   private final Handler appHandler;
   private final Handler adminHandler;
+  private final int maxAppDispatches;
+  private final int maxAppRequests;
+  private final long queueTimeoutNanos;
+  private final Semaphore appDispatches;
+  private final AtomicInteger appRequests = new AtomicInteger();
 
   public AdminRoutingHandler(Handler appHandler, Handler adminHandler) {
+    this(appHandler, adminHandler, 0, 0, 0, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param appHandler           the application handler
+   * @param adminHandler         the admin handler
+   * @param maxAppDispatches     the maximum number of application requests dispatched at once, or
+   *                             0 for no limit
+   * @param maxQueuedAppRequests the maximum number of application requests waiting to be
+   *                             dispatched
+   * @param queueTimeout         how long an application request may wait to be dispatched
+   * @param unit                 the unit of {@code queueTimeout}
+   */
+  public AdminRoutingHandler(Handler appHandler,
+                             Handler adminHandler,
+                             int maxAppDispatches,
+                             int maxQueuedAppRequests,
+                             long queueTimeout,
+                             TimeUnit unit) {
+    checkArgument(maxAppDispatches >= 0, "maxAppDispatches must not be negative");
+    checkArgument(maxQueuedAppRequests >= 0, "maxQueuedAppRequests must not be negative");
     this.appHandler = appHandler;
     this.adminHandler = adminHandler;
+    this.maxAppDispatches = maxAppDispatches;
+    this.maxAppRequests = maxAppDispatches + maxQueuedAppRequests;
+    this.queueTimeoutNanos = unit.toNanos(queueTimeout);
+    // fair, so waiting requests are dispatched in the order they arrived
+    this.appDispatches = new Semaphore(maxAppDispatches, true);
 
     addBean(appHandler);
     addBean(adminHandler);
   }
 
+  public int getAppDispatches() {
+    return maxAppDispatches - appDispatches.availablePermits();
+  }
+
+  public int getQueuedAppRequests() {
+    return appDispatches.getQueueLength();
+  }
+
   @Override
   public void handle(String target,
                      Request baseRequest,
                      HttpServletRequest request,
                      HttpServletResponse response) throws IOException, ServletException {
-    final Handler handler;
     if (baseRequest.getRequestURI().startsWith("/admin")) {
-      handler = adminHandler;
+      adminHandler.handle(target, baseRequest, request, response);
+    } else if (maxAppDispatches <= 0 || !baseRequest.getHttpChannelState().isInitial()) {
+      appHandler.handle(target, baseRequest, request, response);
     } else {
-      handler = appHandler;
+      handleApp(target, baseRequest, request, response);
+    }
+  }
+
+  private void handleApp(String target,
+                         Request baseRequest,
+                         HttpServletRequest request,
+                         HttpServletResponse response) throws IOException, ServletException {
+    if (!admit()) {
+      baseRequest.setHandled(true);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return;
     }
 
-    handler.handle(target, baseRequest, request, response);
+    try {
+      appHandler.handle(target, baseRequest, request, response);
+    } finally {
+      // leave the count first, so a request admitted by the released permit isn't rejected
+      appRequests.decrementAndGet();
+      appDispatches.release();
+    }
   }
-}
 
+  private boolean admit() {
+    if (appRequests.incrementAndGet() > maxAppRequests) {
+      // the queue is full
+      appRequests.decrementAndGet();
+      return false;
+    }
+
+    boolean admitted = false;
+    try {
+      admitted = appDispatches.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!admitted) {
+      appRequests.decrementAndGet();
+    }
+    return admitted;
+  }
+}
@@ -3,22 +3,23 @@ package com.yammer.dropwizard.jetty;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import org.eclipse.jetty.server.Authentication;
+import javax.annotation.Nullable;
+
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Response;
-import org.eclipse.jetty.util.DateCache;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 
-import com.google.common.base.Optional;
-import com.google.common.net.HttpHeaders;
+import com.google.common.base.Charsets;
 import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -31,13 +32,31 @@ import ch.qos.logback.core.spi.AppenderAttachableImpl;
  * functionality of {@link org.eclipse.jetty.server.NCSARequestLog}. Log entries are added to an
  * in-memory queue and an offline thread handles the responsibility of batching them to disk. The
  * date format is fixed, UTC time zone is fixed, and latency is always logged.
+ * <p>
+ * By default the queue is unbounded. If a {@link RequestLogRingBuffer} is provided, entries are
+ * instead encoded into its pre-allocated, fixed-size slots and the dispatcher thread reuses a
+ * single logging event for every line, so the heap cost of the request log is fixed no matter how
+ * far the appenders fall behind. Logback's layouts format a {@link String}, so the dispatcher
+ * still decodes each line into one, but only once an appender asks for the message.
  */
 public class AsyncRequestLog extends AbstractLifeCycle implements RequestLog {
     private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
     private static final int BATCH_SIZE = 10000;
+    private static final int INITIAL_LINE_SIZE = 256;
+    // a thread which formats a longer line gets a new buffer, rather than keeping a large one
+    private static final int MAX_RETAINED_LINE_SIZE = 4096;
+    private static final long RING_BUFFER_POLL_MILLIS = 10;
+    private static final long RING_BUFFER_STOP_MILLIS = 1000;
+
+    private abstract static class Dispatcher implements Runnable {
+        protected volatile boolean running = true;
+
+        public void stop() {
+            this.running = false;
+        }
+    }
 
-    private class Dispatcher implements Runnable {
-        private volatile boolean running = true;
+    private class QueueDispatcher extends Dispatcher {
         private final List<String> statements = new ArrayList<String>(BATCH_SIZE);
 
         @Override
@@ -60,53 +79,162 @@ public class AsyncRequestLog extends AbstractLifeCycle implements RequestLog {
                 }
             }
         }
+    }
 
-        public void stop() {
-            this.running = false;
+    private class RingBufferDispatcher extends Dispatcher implements RequestLogRingBuffer.SlotHandler {
+        private final ReusableLoggingEvent event = new ReusableLoggingEvent();
+
+        @Override
+        public void run() {
+            while (running) {
+                if (ringBuffer.drain(this, BATCH_SIZE) == 0) {
+                    ringBuffer.awaitEntries(RING_BUFFER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            }
+
+            // flush whatever was published before we were stopped
+            while (ringBuffer.drain(this, BATCH_SIZE) > 0) {
+                // keep draining
+            }
+        }
+
+        @Override
+        public void handle(byte[] bytes, int length) {
+            event.setLine(bytes, length);
+            appenders.appendLoopOnAppenders(event);
+        }
+    }
+
+    /**
+     * A logging event whose message can be replaced, so the ring buffer dispatcher can pass every
+     * line to the (synchronous) appenders using the same instance. The line is only decoded when
+     * an appender asks for it, and then only once.
+     */
+    private static class ReusableLoggingEvent extends LoggingEvent {
+        @Nullable
+        private byte[] bytes;
+        private int length;
+        @Nullable
+        private String line;
+
+        private ReusableLoggingEvent() {
+            setLevel(Level.INFO);
+        }
+
+        private void setLine(byte[] bytes, int length) {
+            this.bytes = bytes;
+            this.length = length;
+            this.line = null;
+        }
+
+        @Override
+        public String getMessage() {
+            return getFormattedMessage();
+        }
+
+        @Override
+        public String getFormattedMessage() {
+            if (line == null && bytes != null) {
+                this.line = new String(bytes, 0, length, Charsets.UTF_8);
+            }
+            return line;
         }
     }
 
-    private final Clock clock;
+    private final RequestLogFormat format;
     @SuppressWarnings("ThreadLocalNotStaticFinal")
-    private final ThreadLocal<DateCache> dateCache;
+    private final ThreadLocal<StringBuilder> lineBuffer;
+    @Nullable
     private final BlockingQueue<String> queue;
+    @Nullable
+    private final RequestLogRingBuffer ringBuffer;
+    @Nullable
+    private final MetricsRegistry metricsRegistry;
     private final Dispatcher dispatcher;
     private final Thread dispatchThread;
     private final AppenderAttachableImpl<ILoggingEvent> appenders;
 
     public AsyncRequestLog(Clock clock,
                            AppenderAttachableImpl<ILoggingEvent> appenders,
-                           final TimeZone timeZone) {
-        this.clock = clock;
-        this.queue = new LinkedBlockingQueue<String>();
-        this.dispatcher = new Dispatcher();
+                           TimeZone timeZone) {
+        this(clock, appenders, timeZone, null, null);
+    }
+
+    /**
+     * Creates a new request log which buffers entries in the given ring buffer.
+     *
+     * @param clock           the clock used to calculate request latency
+     * @param appenders       the appenders to which entries are written
+     * @param timeZone        the time zone in which dates are formatted
+     * @param ringBuffer      the ring buffer in which to queue entries, or {@code null} to use an
+     *                        unbounded queue
+     * @param metricsRegistry the registry for the ring buffer's gauges, or {@code null}
+     */
+    public AsyncRequestLog(Clock clock,
+                           AppenderAttachableImpl<ILoggingEvent> appenders,
+                           TimeZone timeZone,
+                           @Nullable RequestLogRingBuffer ringBuffer,
+                           @Nullable MetricsRegistry metricsRegistry) {
+        this.format = new RequestLogFormat(clock, timeZone);
+        this.ringBuffer = ringBuffer;
+        this.metricsRegistry = metricsRegistry;
+        if (ringBuffer == null) {
+            this.queue = new LinkedBlockingQueue<String>();
+            this.dispatcher = new QueueDispatcher();
+        } else {
+            this.queue = null;
+            this.dispatcher = new RingBufferDispatcher();
+        }
         this.dispatchThread = new Thread(dispatcher);
         dispatchThread.setName("async-request-log-dispatcher-" + THREAD_COUNTER.incrementAndGet());
         dispatchThread.setDaemon(true);
 
-        this.dateCache = new ThreadLocal<DateCache>() {
+        this.lineBuffer = new ThreadLocal<StringBuilder>() {
             @Override
-            protected DateCache initialValue() {
-                return new DateCache("dd/MMM/yyyy:HH:mm:ss Z", Locale.US, timeZone);
+            protected StringBuilder initialValue() {
+                return new StringBuilder(INITIAL_LINE_SIZE);
             }
         };
 
         this.appenders = appenders;
     }
 
-
     @Override
     protected void doStart() throws Exception {
         final Iterator<Appender<ILoggingEvent>> iterator = appenders.iteratorForAppenders();
         while (iterator.hasNext()) {
             iterator.next().start();
         }
+        if (ringBuffer != null && metricsRegistry != null) {
+            metricsRegistry.newGauge(AsyncRequestLog.class, "ring-buffer-depth", new Gauge<Integer>() {
+                @Override
+                public Integer value() {
+                    return ringBuffer.getDepth();
+                }
+            });
+            metricsRegistry.newGauge(AsyncRequestLog.class, "ring-buffer-dropped", new Gauge<Long>() {
+                @Override
+                public Long value() {
+                    return ringBuffer.getDropped();
+                }
+            });
+            metricsRegistry.newGauge(AsyncRequestLog.class, "ring-buffer-truncated", new Gauge<Long>() {
+                @Override
+                public Long value() {
+                    return ringBuffer.getTruncated();
+                }
+            });
+        }
         dispatchThread.start();
     }
 
     @Override
     protected void doStop() throws Exception {
         dispatcher.stop();
+        if (ringBuffer != null) {
+            ringBuffer.close();
+            dispatchThread.join(RING_BUFFER_STOP_MILLIS);
+        }
         final Iterator<Appender<ILoggingEvent>> iterator = appenders.iteratorForAppenders();
         while (iterator.hasNext()) {
             iterator.next().stop();
@@ -115,77 +243,18 @@ public class AsyncRequestLog extends AbstractLifeCycle implements RequestLog {
 
     @Override
     public void log(Request request, Response response) {
-        // copied almost entirely from NCSARequestLog
-        final StringBuilder buf = new StringBuilder(256);
-        String address = request.getHeader(HttpHeaders.X_FORWARDED_FOR);
-        if (address == null) {
-            address = request.getRemoteAddr();
-        }
+        final StringBuilder buf = lineBuffer.get();
+        buf.setLength(0);
+        format.format(buf, request, response);
 
-        buf.append(address);
-        buf.append(" - ");
-        final Authentication authentication = request.getAuthentication();
-        if (authentication instanceof Authentication.User) {
-            buf.append(((Authentication.User) authentication).getUserIdentity()
-                                                             .getUserPrincipal()
-                                                             .getName());
+        if (ringBuffer != null) {
+            ringBuffer.publish(buf);
         } else {
-            buf.append('-');
+            queue.add(buf.toString());
         }
 
-        buf.append(" [");
-        buf.append(dateCache.get().format(request.getTimeStamp()));
-
-        buf.append("] \"");
-        buf.append(request.getMethod());
-        buf.append(' ');
-        buf.append(request.getHttpURI().toString());
-        buf.append(' ');
-        buf.append(request.getProtocol());
-        buf.append("\" ");
-
-        // TODO do we need to check request.getHttpChannelState().isInitial() ?
-        int status = response.getStatus();
-        if (status <= 0) {
-            status = 404;
-        }
-        buf.append((char) ('0' + ((status / 100) % 10)));
-        buf.append((char) ('0' + ((status / 10) % 10)));
-        buf.append((char) ('0' + (status % 10)));
-
-        final long responseLength = response.getContentCount();
-        if (responseLength >= 0) {
-            buf.append(' ');
-            if (responseLength > 99999) {
-                buf.append(responseLength);
-            } else {
-                if (responseLength > 9999) {
-                    buf.append((char) ('0' + ((responseLength / 10000) % 10)));
-                }
-                if (responseLength > 999) {
-                    buf.append((char) ('0' + ((responseLength / 1000) % 10)));
-                }
-                if (responseLength > 99) {
-                    buf.append((char) ('0' + ((responseLength / 100) % 10)));
-                }
-                if (responseLength > 9) {
-                    buf.append((char) ('0' + ((responseLength / 10) % 10)));
-                }
-                buf.append((char) ('0' + (responseLength % 10)));
-            }
-        } else {
-            buf.append(" -");
+        if (buf.length() > MAX_RETAINED_LINE_SIZE) {
+            lineBuffer.set(new StringBuilder(INITIAL_LINE_SIZE));
         }
-
-        long queueTime = Optional.fromNullable((Long) request.getAttribute("_queue_time_millis")).or(0L);
-        long processingTime = clock.time() - request.getTimeStamp();
-
-        buf.append(' ');
-        buf.append(queueTime + processingTime);
-
-        buf.append(' ');
-        buf.append(processingTime);
-
-        queue.add(buf.toString());
     }
 }
@@ -1,16 +1,28 @@
 package com.yammer.dropwizard.jetty;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ReadListener;
 import javax.servlet.ServletException;
 import javax.servlet.ServletInputStream;
@@ -21,14 +33,82 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import com.google.common.io.CountingInputStream;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
 
 /**
  * An extension of {@link GzipHandler} which decompresses gzip- and deflate-encoded request
- * entities.
+ * entities. The inflaters are pooled, and the pools are reported as {@code inflaters-idle},
+ * {@code inflaters-in-use} and {@code inflaters-created} gauges. Requests whose entities inflate to
+ * more than the maximum size, or by more than the maximum ratio, are rejected with a
+ * {@code 413 Request Entity Too Large} and counted by the {@code rejected-entities} meter.
+ * <p/>
+ * Responses are compressed at a configurable level, which can be lowered while the server's thread
+ * pool is busy. The uncompressed and compressed sizes are recorded by the {@code bytes-in} and
+ * {@code bytes-out} meters, and the time spent compressing by the {@code compression} timer.
  */
 public class BiDiGzipHandler extends GzipHandler {
 
-    private final ThreadLocal<Inflater> localInflater = new ThreadLocal<Inflater>();
+    // the level Deflater.DEFAULT_COMPRESSION stands for
+    private static final int DEFAULT_LEVEL = 6;
+
+    // the inflated size after which the inflation ratio is checked
+    private static final long MIN_RATIO_CHECKED_SIZE = 1024 * 1024;
+
+    private final MetricsRegistry metricsRegistry;
+
+    /**
+     * The maximum number of idle inflaters to keep in each pool
+     */
+    private int inflaterPoolSize = 32;
+
+    private volatile InflaterPool gzipInflaters;
+    private volatile InflaterPool deflateInflaters;
+
+    private final ThreadLocal<TimedDeflater> localDeflater = new ThreadLocal<TimedDeflater>();
+
+    /**
+     * The level responses are compressed at, from 1 to 9, or -1 for the deflater's default
+     */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * Whether to lower the compression level when the server's thread pool is busy
+     */
+    private boolean adaptiveCompression = false;
+
+    /**
+     * The utilization of the server's thread pool above which the compression level is lowered
+     */
+    private double adaptiveThreshold = 0.75;
+
+    /**
+     * The lowest level responses are compressed at when the server is busy
+     */
+    private int minimumCompressionLevel = Deflater.BEST_SPEED;
+
+    /**
+     * The maximum size of an inflated request entity, or 0 for no limit
+     */
+    private long maxInflatedEntitySize = 0;
+
+    /**
+     * The maximum ratio of a request entity's inflated size to its compressed size, or 0 for no
+     * limit
+     */
+    private double maxInflationRatio = 0;
+
+    private volatile ThreadPool threadPool;
+    private Meter rejectedEntities;
+    private Meter bytesIn;
+    private Meter bytesOut;
+    private Timer compressionTime;
 
     /**
      * Size of the buffer for decompressing requests
@@ -50,68 +130,498 @@ public class BiDiGzipHandler extends GzipHandler {
     }
 
     public BiDiGzipHandler() {
+        this(Metrics.defaultRegistry());
+    }
+
+    public BiDiGzipHandler(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
     }
 
     public void setInputBufferSize(int inputBufferSize) {
         this.inputBufferSize = inputBufferSize;
     }
 
+    public int getInflaterPoolSize() {
+        return inflaterPoolSize;
+    }
+
+    public void setInflaterPoolSize(int inflaterPoolSize) {
+        this.inflaterPoolSize = inflaterPoolSize;
+    }
+
+    public long getMaxInflatedEntitySize() {
+        return maxInflatedEntitySize;
+    }
+
+    public void setMaxInflatedEntitySize(long maxInflatedEntitySize) {
+        this.maxInflatedEntitySize = maxInflatedEntitySize;
+    }
+
+    public double getMaxInflationRatio() {
+        return maxInflationRatio;
+    }
+
+    public void setMaxInflationRatio(double maxInflationRatio) {
+        this.maxInflationRatio = maxInflationRatio;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isAdaptiveCompression() {
+        return adaptiveCompression;
+    }
+
+    public void setAdaptiveCompression(boolean adaptiveCompression) {
+        this.adaptiveCompression = adaptiveCompression;
+    }
+
+    public double getAdaptiveThreshold() {
+        return adaptiveThreshold;
+    }
+
+    public void setAdaptiveThreshold(double adaptiveThreshold) {
+        this.adaptiveThreshold = adaptiveThreshold;
+    }
+
+    public int getMinimumCompressionLevel() {
+        return minimumCompressionLevel;
+    }
+
+    public void setMinimumCompressionLevel(int minimumCompressionLevel) {
+        this.minimumCompressionLevel = minimumCompressionLevel;
+    }
+
+    /**
+     * Returns the level responses are compressed at when the server's thread pool is
+     * {@code utilization} busy. Up to the adaptive threshold, it's the compression level; above
+     * it, it's lowered in proportion, to the minimum compression level when the pool is fully
+     * utilized.
+     *
+     * @param utilization the ratio of busy threads to the maximum number of threads
+     * @return the compression level
+     */
+    public int getCompressionLevel(double utilization) {
+        if (!adaptiveCompression || utilization <= adaptiveThreshold) {
+            return compressionLevel;
+        }
+        final int level = (compressionLevel == Deflater.DEFAULT_COMPRESSION) ? DEFAULT_LEVEL : compressionLevel;
+        if (level <= minimumCompressionLevel) {
+            return level;
+        }
+        final double pressure = Math.min(1, (utilization - adaptiveThreshold) / (1 - adaptiveThreshold));
+        return (int) Math.round(level - (level - minimumCompressionLevel) * pressure);
+    }
+
     @Override
-    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
-        throws IOException, ServletException {
-        final String encoding = request.getHeader(HttpHeader.CONTENT_ENCODING.asString());
-        if (GZIP.equalsIgnoreCase(encoding)) {
-            super.handle(target, baseRequest, wrapGzippedRequest(removeContentEncodingHeader(request)), response);
-        } else if (DEFLATE.equalsIgnoreCase(encoding)) {
-            super.handle(target, baseRequest, wrapDeflatedRequest(removeContentEncodingHeader(request)), response);
+    public Deflater getDeflater(Request request, long contentLength) {
+        final String userAgent = request.getHttpFields().get(HttpHeader.USER_AGENT);
+        if (userAgent != null && !isAgentGzipable(userAgent)) {
+            return null;
+        }
+        if (contentLength >= 0 && contentLength < getMinGzipSize()) {
+            return null;
+        }
+
+        TimedDeflater deflater = localDeflater.get();
+        if (deflater == null) {
+            deflater = new TimedDeflater(compressionLevel);
         } else {
-            super.handle(target, baseRequest, request, response);
+            localDeflater.set(null);
         }
+        final ThreadPool pool = threadPool;
+        deflater.setLevel(adaptiveCompression && pool != null ?
+                                  getCompressionLevel(getUtilization(pool)) : compressionLevel);
+        return deflater;
     }
 
-    private Inflater buildInflater() {
-        final Inflater inflater = localInflater.get();
-        if (inflater != null) {
-            // The request could fail in the middle of decompressing, so potentially we can get
-            // a broken inflater in the thread local storage. That's why we need to clear the storage.
-            localInflater.set(null);
-
-            // Reuse the inflater from the thread local storage
-            inflater.reset();
-            return inflater;
+    @Override
+    public void recycle(Deflater deflater) {
+        if (!(deflater instanceof TimedDeflater)) {
+            super.recycle(deflater);
+            return;
+        }
+        final TimedDeflater timedDeflater = (TimedDeflater) deflater;
+        bytesIn.mark(timedDeflater.getBytesRead());
+        bytesOut.mark(timedDeflater.getBytesWritten());
+        compressionTime.update(timedDeflater.nanos, TimeUnit.NANOSECONDS);
+
+        timedDeflater.reset();
+        timedDeflater.nanos = 0;
+        if (localDeflater.get() == null) {
+            localDeflater.set(timedDeflater);
         } else {
-            return new Inflater(inflateNoWrap);
+            timedDeflater.end();
         }
     }
 
-    private WrappedServletRequest wrapDeflatedRequest(HttpServletRequest request) throws IOException {
-        final Inflater inflater = buildInflater();
-        final InflaterInputStream input = new InflaterInputStream(request.getInputStream(), inflater, inputBufferSize) {
+    private static double getUtilization(ThreadPool pool) {
+        if (pool instanceof VirtualThreadPool) {
+            final VirtualThreadPool virtualThreadPool = (VirtualThreadPool) pool;
+            return virtualThreadPool.getThreads() / (double) virtualThreadPool.getMaxConcurrency();
+        }
+        if (pool instanceof ThreadPool.SizedThreadPool) {
+            // the same as the thread pool's utilization-max gauge
+            final ThreadPool.SizedThreadPool sizedThreadPool = (ThreadPool.SizedThreadPool) pool;
+            return (sizedThreadPool.getThreads() - sizedThreadPool.getIdleThreads()) /
+                    (double) sizedThreadPool.getMaxThreads();
+        }
+        return 0;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        this.threadPool = (getServer() == null) ? null : getServer().getThreadPool();
+        // gzip is raw deflate data in a wrapper, so deflate bodies can share its inflaters when
+        // they're inflated in the GZIP-compatible mode
+        this.gzipInflaters = new InflaterPool(true, inflaterPoolSize);
+        this.deflateInflaters = inflateNoWrap ? gzipInflaters : new InflaterPool(false, inflaterPoolSize);
+        registerMetrics();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        gzipInflaters.close();
+        deflateInflaters.close();
+    }
+
+    private void registerMetrics() {
+        this.rejectedEntities = metricsRegistry.newMeter(BiDiGzipHandler.class,
+                                                         "rejected-entities",
+                                                         "requests",
+                                                         TimeUnit.SECONDS);
+        this.bytesIn = metricsRegistry.newMeter(BiDiGzipHandler.class, "bytes-in", "bytes", TimeUnit.SECONDS);
+        this.bytesOut = metricsRegistry.newMeter(BiDiGzipHandler.class, "bytes-out", "bytes", TimeUnit.SECONDS);
+        this.compressionTime = metricsRegistry.newTimer(BiDiGzipHandler.class, "compression");
+        metricsRegistry.newGauge(BiDiGzipHandler.class, "inflaters-idle", new Gauge<Integer>() {
             @Override
-            public void close() throws IOException {
-                super.close();
-                localInflater.set(inflater);
+            public Integer value() {
+                return (deflateInflaters == gzipInflaters) ? gzipInflaters.getIdle() :
+                        gzipInflaters.getIdle() + deflateInflaters.getIdle();
+            }
+        });
+        metricsRegistry.newGauge(BiDiGzipHandler.class, "inflaters-in-use", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return (deflateInflaters == gzipInflaters) ? gzipInflaters.getInUse() :
+                        gzipInflaters.getInUse() + deflateInflaters.getInUse();
+            }
+        });
+        metricsRegistry.newGauge(BiDiGzipHandler.class, "inflaters-created", new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return (deflateInflaters == gzipInflaters) ? gzipInflaters.getCreated() :
+                        gzipInflaters.getCreated() + deflateInflaters.getCreated();
             }
-        };
-        return new WrappedServletRequest(request, input);
+        });
     }
 
-    private WrappedServletRequest wrapGzippedRequest(HttpServletRequest request) throws IOException {
-        return new WrappedServletRequest(request, new GZIPInputStream(request.getInputStream(), inputBufferSize));
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+        throws IOException, ServletException {
+        final String encoding = request.getHeader(HttpHeader.CONTENT_ENCODING.asString());
+        final boolean gzipped = GZIP.equalsIgnoreCase(encoding);
+        if (!gzipped && !DEFLATE.equalsIgnoreCase(encoding)) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        final CountingInputStream compressed = new CountingInputStream(request.getInputStream());
+        final PooledInflaterInputStream inflated = gzipped ? inflateGzipped(compressed) : inflateDeflated(compressed);
+        final WrappedServletInputStream input = new WrappedServletInputStream(inflated,
+                                                                              compressed,
+                                                                              maxInflatedEntitySize,
+                                                                              maxInflationRatio);
+        try {
+            super.handle(target,
+                         baseRequest,
+                         new WrappedServletRequest(removeContentEncodingHeader(request), input),
+                         response);
+        } catch (IOException e) {
+            // the entity is rejected below, however the application may have wrapped the exception
+            rethrowUnlessLimitExceeded(input, e);
+        } catch (ServletException e) {
+            rethrowUnlessLimitExceeded(input, e);
+        } catch (RuntimeException e) {
+            rethrowUnlessLimitExceeded(input, e);
+        } finally {
+            // the entity may not have been read to the end and closed, but once the request is
+            // handled it won't be read any more
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new InflaterRelease(inflated));
+            } else {
+                inflated.release();
+            }
+            if (input.isLimitExceeded()) {
+                rejectedEntities.mark();
+                // the application may have already sent an error of its own
+                if (!response.isCommitted()) {
+                    response.reset();
+                    response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+                }
+            }
+        }
+    }
+
+    private static <E extends Exception> void rethrowUnlessLimitExceeded(WrappedServletInputStream input,
+                                                                         E e) throws E {
+        if (!input.isLimitExceeded()) {
+            throw e;
+        }
+    }
+
+    private PooledInflaterInputStream inflateDeflated(InputStream compressed) {
+        final InflaterPool pool = deflateInflaters;
+        return new PooledInflaterInputStream(compressed, pool, pool.acquire(), inputBufferSize);
+    }
+
+    private PooledInflaterInputStream inflateGzipped(InputStream compressed) throws IOException {
+        final InflaterPool pool = gzipInflaters;
+        final Inflater inflater = pool.acquire();
+        try {
+            return new GzipInflaterInputStream(compressed, pool, inflater, inputBufferSize);
+        } catch (IOException e) {
+            pool.release(inflater);
+            throw e;
+        }
     }
 
     private HttpServletRequest removeContentEncodingHeader(final HttpServletRequest request) {
         return new RemoveHttpHeaderWrapper(request, HttpHeader.CONTENT_ENCODING.asString());
     }
 
+    /**
+     * A {@link Deflater} which records how long it spends compressing.
+     */
+    private static class TimedDeflater extends Deflater {
+        private long nanos;
+
+        private TimedDeflater(int level) {
+            super(level, true);
+        }
+
+        @Override
+        public int deflate(byte[] b, int off, int len, int flush) {
+            final long start = System.nanoTime();
+            try {
+                return super.deflate(b, off, len, flush);
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+
+    /**
+     * Releases the inflater of an asynchronous request once the request completes, whether or not
+     * the application closed its entity.
+     */
+    private static class InflaterRelease implements AsyncListener {
+        private final PooledInflaterInputStream inflated;
+
+        private InflaterRelease(PooledInflaterInputStream inflated) {
+            this.inflated = inflated;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            inflated.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            inflated.release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            // listeners are cleared when the application starts async again
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /**
+     * An {@link InflaterInputStream} which returns its inflater to a pool once it's closed or
+     * the request has been handled.
+     */
+    private static class PooledInflaterInputStream extends InflaterInputStream {
+        private final InflaterPool pool;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PooledInflaterInputStream(InputStream input, InflaterPool pool, Inflater inflater, int size) {
+            super(input, inflater, size);
+            this.pool = pool;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                pool.release(inf);
+            }
+        }
+    }
+
+    /**
+     * Decompresses gzip data like {@link GZIPInputStream}, which always allocates its own
+     * inflater, but with an inflater from a pool.
+     */
+    private static class GzipInflaterInputStream extends PooledInflaterInputStream {
+        private static final int FHCRC = 2;
+        private static final int FEXTRA = 4;
+        private static final int FNAME = 8;
+        private static final int FCOMMENT = 16;
+
+        private final CRC32 crc = new CRC32();
+        private boolean eos;
+
+        private GzipInflaterInputStream(InputStream input, InflaterPool pool, Inflater inflater, int size)
+            throws IOException {
+            super(input, pool, inflater, size);
+            readHeader(input);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (eos) {
+                return -1;
+            }
+            final int n = super.read(b, off, len);
+            if (n == -1) {
+                if (readTrailer()) {
+                    eos = true;
+                } else {
+                    return read(b, off, len);
+                }
+            } else {
+                crc.update(b, off, n);
+            }
+            return n;
+        }
+
+        private int readHeader(InputStream stream) throws IOException {
+            final CheckedInputStream input = new CheckedInputStream(stream, crc);
+            crc.reset();
+            if (readUShort(input) != GZIPInputStream.GZIP_MAGIC) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (readUByte(input) != 8) {
+                throw new ZipException("Unsupported compression method");
+            }
+            final int flags = readUByte(input);
+            // modification time, extra flags and operating system
+            skipBytes(input, 6);
+            int n = 10;
+            if ((flags & FEXTRA) == FEXTRA) {
+                final int m = readUShort(input);
+                skipBytes(input, m);
+                n += m + 2;
+            }
+            if ((flags & FNAME) == FNAME) {
+                do {
+                    n++;
+                } while (readUByte(input) != 0);
+            }
+            if ((flags & FCOMMENT) == FCOMMENT) {
+                do {
+                    n++;
+                } while (readUByte(input) != 0);
+            }
+            if ((flags & FHCRC) == FHCRC) {
+                final int v = (int) crc.getValue() & 0xffff;
+                if (readUShort(input) != v) {
+                    throw new ZipException("Corrupt GZIP header");
+                }
+                n += 2;
+            }
+            crc.reset();
+            return n;
+        }
+
+        private boolean readTrailer() throws IOException {
+            InputStream input = this.in;
+            final int n = inf.getRemaining();
+            if (n > 0) {
+                // the inflater has already buffered the start of the trailer
+                input = new SequenceInputStream(new ByteArrayInputStream(buf, len - n, n),
+                                                new FilterInputStream(input) {
+                                                    @Override
+                                                    public void close() throws IOException {
+                                                    }
+                                                });
+            }
+            if ((readUInt(input) != crc.getValue()) ||
+                    (readUInt(input) != (inf.getBytesWritten() & 0xffffffffL))) {
+                throw new ZipException("Corrupt GZIP trailer");
+            }
+
+            // if there's more data, it's another gzip member
+            if (this.in.available() > 0 || n > 26) {
+                int m = 8;
+                try {
+                    m += readHeader(input);
+                } catch (IOException ignored) {
+                    return true;
+                }
+                inf.reset();
+                if (n > m) {
+                    inf.setInput(buf, len - n + m, n - m);
+                }
+                return false;
+            }
+            return true;
+        }
+
+        private static long readUInt(InputStream input) throws IOException {
+            final long s = readUShort(input);
+            return ((long) readUShort(input) << 16) | s;
+        }
+
+        private static int readUShort(InputStream input) throws IOException {
+            final int b = readUByte(input);
+            return (readUByte(input) << 8) | b;
+        }
+
+        private static int readUByte(InputStream input) throws IOException {
+            final int b = input.read();
+            if (b == -1) {
+                throw new EOFException();
+            }
+            return b;
+        }
+
+        private static void skipBytes(InputStream input, int n) throws IOException {
+            for (int i = 0; i < n; i++) {
+                readUByte(input);
+            }
+        }
+    }
+
     private static class WrappedServletRequest extends HttpServletRequestWrapper {
         private final ServletInputStream input;
         private final BufferedReader reader;
 
         private WrappedServletRequest(HttpServletRequest request,
-                                      InputStream inputStream) throws IOException {
+                                      ServletInputStream input) throws IOException {
             super(request);
-            this.input = new WrappedServletInputStream(inputStream);
+            this.input = input;
             this.reader = new BufferedReader(new InputStreamReader(input, getCharset()));
         }
 
@@ -134,11 +644,71 @@ public class BiDiGzipHandler extends GzipHandler {
         }
     }
 
+    /**
+     * Thrown when an inflated request entity is larger than allowed.
+     */
+    private static class InflatedEntityTooLargeException extends IOException {
+        private static final long serialVersionUID = -1L;
+
+        private InflatedEntityTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A {@link ServletInputStream} of an inflated request entity, which fails as soon as the
+     * entity becomes larger than allowed, rather than once it's been inflated in full.
+     */
     private static class WrappedServletInputStream extends ServletInputStream {
         private final InputStream input;
-
-        private WrappedServletInputStream(InputStream input) {
+        private final CountingInputStream compressed;
+        private final long maxSize;
+        private final double maxRatio;
+        private long size;
+        private volatile boolean limitExceeded;
+
+        private WrappedServletInputStream(InputStream input,
+                                          CountingInputStream compressed,
+                                          long maxSize,
+                                          double maxRatio) {
             this.input = input;
+            this.compressed = compressed;
+            this.maxSize = maxSize;
+            this.maxRatio = maxRatio;
+        }
+
+        public boolean isLimitExceeded() {
+            return limitExceeded;
+        }
+
+        private int checkLimits(int n) throws IOException {
+            if (n > 0) {
+                checkLimits((long) n);
+            }
+            return n;
+        }
+
+        private long checkLimits(long n) throws IOException {
+            size += n;
+            if (maxSize > 0 && size > maxSize) {
+                throw tooLarge("Inflated request entity is larger than " + maxSize + " bytes");
+            }
+            // small entities can be very compressible, so their ratio isn't a sign of an attack
+            if (maxRatio > 0 && size > MIN_RATIO_CHECKED_SIZE && size > maxRatio * compressed.getCount()) {
+                throw tooLarge("Request entity inflates by more than " + maxRatio + " times");
+            }
+            return n;
+        }
+
+        private IOException tooLarge(String message) {
+            this.limitExceeded = true;
+            return new InflatedEntityTooLargeException(message);
+        }
+
+        private void checkNotExceeded() throws IOException {
+            if (limitExceeded) {
+                throw new InflatedEntityTooLargeException("Inflated request entity is too large");
+            }
         }
 
         @Override
@@ -148,7 +718,8 @@ public class BiDiGzipHandler extends GzipHandler {
 
         @Override
         public int read(byte[] b, int off, int len) throws IOException {
-            return input.read(b, off, len);
+            checkNotExceeded();
+            return checkLimits(input.read(b, off, len));
         }
 
         @Override
@@ -168,7 +739,12 @@ public class BiDiGzipHandler extends GzipHandler {
 
         @Override
         public int read() throws IOException {
-            return input.read();
+            checkNotExceeded();
+            final int b = input.read();
+            if (b >= 0) {
+                checkLimits(1);
+            }
+            return b;
         }
 
         @Override
@@ -178,12 +754,14 @@ public class BiDiGzipHandler extends GzipHandler {
 
         @Override
         public long skip(long n) throws IOException {
-            return input.skip(n);
+            checkNotExceeded();
+            final long skipped = input.skip(n);
+            return (skipped > 0) ? checkLimits(skipped) : skipped;
         }
 
         @Override
         public int read(byte[] b) throws IOException {
-            return input.read(b);
+            return read(b, 0, b.length);
         }
 
         @Override
@@ -0,0 +1,314 @@
+package com.yammer.dropwizard.jetty;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+
+import com.google.common.collect.Sets;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A bounded {@link ByteBufferPool} with a small per-thread cache in front of shared buckets.
+ * <p>
+ * Like Jetty's {@code ArrayByteBufferPool}, requested sizes are rounded up to a multiple of the
+ * size increment, and each size has its own bucket for heap and for direct buffers. Unlike it,
+ * each bucket retains at most a fixed number of buffers and a fixed number of bytes; released
+ * buffers beyond that are left to the garbage collector. Buffers smaller than the minimum size or
+ * larger than the maximum size are never pooled.
+ * <p>
+ * A thread first acquires from, and releases to, its own cache, which holds a few buffers of each
+ * size, so the common case of a buffer being used and released on the same thread never touches
+ * the shared buckets. Buffers in thread caches count towards the same total as the shared
+ * buckets, which is at most the sum of the buckets' limits, so the caches of many threads can't
+ * retain more than the buckets could. The bytes cached by threads which have died are released
+ * from the total once their caches have been garbage collected. The pool counts hits (buffers
+ * reused from a cache or a bucket), misses (buffers allocated) and the bytes retained.
+ */
+public class CachedByteBufferPool implements ByteBufferPool {
+    private class Bucket {
+        private final int capacity;
+        private final int maxCount;
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<ByteBuffer>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Bucket(int capacity, int maxCount) {
+            this.capacity = capacity;
+            this.maxCount = maxCount;
+        }
+
+        @Nullable
+        private ByteBuffer poll() {
+            final ByteBuffer buffer = buffers.poll();
+            if (buffer != null) {
+                count.decrementAndGet();
+                retainedBytes.addAndGet(-capacity);
+            }
+            return buffer;
+        }
+
+        private void offer(ByteBuffer buffer) {
+            if (count.incrementAndGet() > maxCount || !retain(capacity)) {
+                count.decrementAndGet();
+                return;
+            }
+            buffers.offer(buffer);
+        }
+    }
+
+    private static class ThreadCache {
+        private final ByteBuffer[][] buffers;
+        private final int[] sizes;
+        // only updated by the owning thread, but read once it has died
+        private final AtomicLong bytes = new AtomicLong();
+
+        private ThreadCache(int bucketCount, int capacity) {
+            this.buffers = new ByteBuffer[bucketCount][capacity];
+            this.sizes = new int[bucketCount];
+        }
+
+        @Nullable
+        private ByteBuffer pop(int index) {
+            final int size = sizes[index];
+            if (size == 0) {
+                return null;
+            }
+            final ByteBuffer buffer = buffers[index][size - 1];
+            buffers[index][size - 1] = null;
+            sizes[index] = size - 1;
+            bytes.lazySet(bytes.get() - buffer.capacity());
+            return buffer;
+        }
+
+        private boolean isFull(int index) {
+            return sizes[index] == buffers[index].length;
+        }
+
+        private void push(int index, ByteBuffer buffer) {
+            final int size = sizes[index];
+            buffers[index][size] = buffer;
+            sizes[index] = size + 1;
+            bytes.lazySet(bytes.get() + buffer.capacity());
+        }
+    }
+
+    /**
+     * Holds on to the number of bytes in a thread's cache, so they can be released from the pool's
+     * total once the thread has died and its cache has been collected.
+     */
+    private static class CacheReference extends WeakReference<ThreadCache> {
+        private final AtomicLong bytes;
+
+        private CacheReference(ThreadCache cache, ReferenceQueue<ThreadCache> queue) {
+            super(cache, queue);
+            this.bytes = cache.bytes;
+        }
+    }
+
+    private final int minSize;
+    private final int increment;
+    private final int maxSize;
+    private final boolean allowDirect;
+    private final Bucket[] heap;
+    private final Bucket[] direct;
+    @SuppressWarnings("ThreadLocalNotStaticFinal")
+    private final ThreadLocal<ThreadCache> heapCache;
+    @SuppressWarnings("ThreadLocalNotStaticFinal")
+    private final ThreadLocal<ThreadCache> directCache;
+    private final StripedCounter hits = new StripedCounter();
+    private final StripedCounter misses = new StripedCounter();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final long maxRetainedBytes;
+    private final Set<CacheReference> caches = Sets.newConcurrentHashSet();
+    private final ReferenceQueue<ThreadCache> collectedCaches = new ReferenceQueue<ThreadCache>();
+
+    /**
+     * Creates a new pool.
+     *
+     * @param minSize             the smallest size of pooled buffers
+     * @param increment           the difference in size between buckets
+     * @param maxSize             the largest size of pooled buffers
+     * @param maxBuffersPerBucket the maximum number of buffers each shared bucket retains
+     * @param maxBytesPerBucket   the maximum number of bytes each shared bucket retains
+     * @param threadCacheSize     the number of buffers of each size cached per thread
+     * @param allowDirect         if {@code false}, heap buffers are used even when direct
+     *                            buffers are requested
+     */
+    public CachedByteBufferPool(int minSize,
+                                int increment,
+                                int maxSize,
+                                int maxBuffersPerBucket,
+                                long maxBytesPerBucket,
+                                final int threadCacheSize,
+                                boolean allowDirect) {
+        checkArgument(increment > 0, "increment must be positive");
+        checkArgument(maxSize % increment == 0, "maxSize must be a multiple of increment");
+        this.minSize = minSize;
+        this.increment = increment;
+        this.maxSize = maxSize;
+        this.allowDirect = allowDirect;
+
+        final int bucketCount = maxSize / increment;
+        this.heap = new Bucket[bucketCount];
+        this.direct = new Bucket[bucketCount];
+        long maxRetained = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            final int capacity = (i + 1) * increment;
+            final int maxCount = (int) Math.min(maxBuffersPerBucket, maxBytesPerBucket / capacity);
+            heap[i] = new Bucket(capacity, maxCount);
+            direct[i] = new Bucket(capacity, maxCount);
+            maxRetained += (long) capacity * maxCount;
+        }
+        this.maxRetainedBytes = allowDirect ? maxRetained * 2 : maxRetained;
+
+        this.heapCache = new ThreadLocal<ThreadCache>() {
+            @Override
+            protected ThreadCache initialValue() {
+                return newThreadCache(threadCacheSize);
+            }
+        };
+        this.directCache = new ThreadLocal<ThreadCache>() {
+            @Override
+            protected ThreadCache initialValue() {
+                return newThreadCache(threadCacheSize);
+            }
+        };
+    }
+
+    /**
+     * Registers gauges for the pool's hits, misses and retained bytes.
+     *
+     * @param registry the metrics registry
+     * @param scope    the scope of the gauges, e.g. the name of the connector using the pool
+     */
+    public void instrument(MetricsRegistry registry, @Nullable String scope) {
+        registry.newGauge(ByteBufferPool.class, "hits", scope, new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return hits.count();
+            }
+        });
+        registry.newGauge(ByteBufferPool.class, "misses", scope, new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return misses.count();
+            }
+        });
+        registry.newGauge(ByteBufferPool.class, "retained-bytes", scope, new Gauge<Long>() {
+            @Override
+            public Long value() {
+                return getRetainedBytes();
+            }
+        });
+    }
+
+    public long getHits() {
+        return hits.count();
+    }
+
+    public long getMisses() {
+        return misses.count();
+    }
+
+    public long getRetainedBytes() {
+        releaseCollectedCaches();
+        return retainedBytes.get();
+    }
+
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean useDirect) {
+        final boolean isDirect = useDirect && allowDirect;
+        if (size <= minSize || size > maxSize) {
+            misses.inc();
+            return allocate(size, isDirect);
+        }
+
+        final int index = (size - 1) / increment;
+        ByteBuffer buffer = (isDirect ? directCache : heapCache).get().pop(index);
+        if (buffer != null) {
+            retainedBytes.addAndGet(-buffer.capacity());
+        } else {
+            buffer = (isDirect ? direct : heap)[index].poll();
+        }
+        if (buffer == null) {
+            misses.inc();
+            return allocate((index + 1) * increment, isDirect);
+        }
+        hits.inc();
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        final int capacity = buffer.capacity();
+        final boolean isDirect = buffer.isDirect();
+        if (capacity <= minSize || capacity > maxSize || capacity % increment != 0 || (isDirect && !allowDirect)) {
+            // not one of ours
+            return;
+        }
+
+        releaseCollectedCaches();
+        BufferUtil.clear(buffer);
+        final int index = capacity / increment - 1;
+        final ThreadCache cache = (isDirect ? directCache : heapCache).get();
+        if (!cache.isFull(index) && retain(capacity)) {
+            cache.push(index, buffer);
+        } else {
+            (isDirect ? direct : heap)[index].offer(buffer);
+        }
+    }
+
+    private ThreadCache newThreadCache(int capacity) {
+        final ThreadCache cache = new ThreadCache(heap.length, capacity);
+        caches.add(new CacheReference(cache, collectedCaches));
+        return cache;
+    }
+
+    /**
+     * Adds a buffer to the retained total, unless the pool already retains as much as it may.
+     */
+    private boolean retain(int capacity) {
+        while (true) {
+            final long retained = retainedBytes.get();
+            if (retained + capacity > maxRetainedBytes) {
+                return false;
+            }
+            if (retainedBytes.compareAndSet(retained, retained + capacity)) {
+                return true;
+            }
+        }
+    }
+
+    private void releaseCollectedCaches() {
+        Reference<? extends ThreadCache> reference;
+        while ((reference = collectedCaches.poll()) != null) {
+            final CacheReference cache = (CacheReference) reference;
+            caches.remove(cache);
+            retainedBytes.addAndGet(-cache.bytes.get());
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean direct) {
+        return direct ? BufferUtil.allocateDirect(capacity) : BufferUtil.allocate(capacity);
+    }
+}
@@ -0,0 +1,285 @@
+package com.yammer.dropwizard.jetty;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.yammer.dropwizard.logging.RollingFileChannel;
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import ch.qos.logback.core.CoreConstants;
+
+/**
+ * A {@link RequestLog} which writes the same NCSA-style lines as {@link AsyncRequestLog}
+ * straight to a {@link RollingFileChannel}, bypassing Logback entirely.
+ * <p>
+ * Each line is encoded as bytes into a per-thread scratch buffer (no {@link String} is built for
+ * the line), which is never much larger than a batch buffer, and then copied into the current
+ * batch, a direct {@link ByteBuffer} taken from a fixed pool. A writer thread hands each batch to
+ * the file channel in a single write once it is full or when the flush interval elapses. If every
+ * pooled buffer is waiting to be written, new entries are dropped and counted rather than blocking
+ * request threads.
+ * <p>
+ * A batch is written to the file of the period in which its first entry was logged, however long
+ * it waited to be written, so the file is rolled over at the same entries whenever the writer
+ * runs.
+ */
+public class ChannelRequestLog extends AbstractLifeCycle implements RequestLog {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelRequestLog.class);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final int INITIAL_LINE_SIZE = 512;
+
+    /**
+     * A thread's scratch space for formatting and encoding lines. Lines which can't fit in a batch
+     * buffer are dropped, so it never holds on to much more than one.
+     */
+    private static class LineBuffer {
+        private final int maxLength;
+        private StringBuilder chars = new StringBuilder(INITIAL_LINE_SIZE);
+        private byte[] bytes = new byte[INITIAL_LINE_SIZE];
+        private int length;
+
+        private LineBuffer(int maxLength) {
+            this.maxLength = maxLength;
+        }
+
+        /**
+         * Encodes the formatted line.
+         *
+         * @return {@code false} if the line is too long to be written
+         */
+        private boolean encode() {
+            // every char is at least one byte, so a longer line would be dropped anyway
+            if (chars.length() > maxLength) {
+                this.chars = new StringBuilder(INITIAL_LINE_SIZE);
+                return false;
+            }
+            final int required = RequestLogFormat.maxEncodedLength(chars);
+            if (bytes.length < required) {
+                this.bytes = new byte[Math.max(required, Math.min(bytes.length * 2, maxLength * 3))];
+            }
+            this.length = RequestLogFormat.encode(chars, bytes);
+            return length <= maxLength;
+        }
+    }
+
+    /**
+     * A pooled buffer and the time its first entry was logged.
+     */
+    private static class Batch {
+        private final ByteBuffer buffer;
+        private long firstEntryTime;
+
+        private Batch(int size) {
+            this.buffer = ByteBuffer.allocateDirect(size);
+        }
+    }
+
+    private class Writer implements Runnable {
+        private volatile boolean running = true;
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    Batch batch = pending.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        batch = takeCurrentBatch();
+                    }
+                    if (batch != null) {
+                        write(batch);
+                    }
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        public void stop() {
+            this.running = false;
+        }
+    }
+
+    private final Clock clock;
+    private final RequestLogFormat format;
+    @SuppressWarnings("ThreadLocalNotStaticFinal")
+    private final ThreadLocal<LineBuffer> lineBuffer;
+    private final RollingFileChannel channel;
+    private final BlockingQueue<Batch> free;
+    private final BlockingQueue<Batch> pending;
+    private final long flushIntervalMillis;
+    @Nullable
+    private final MetricsRegistry metricsRegistry;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object lock = new Object();
+    private final Writer writer;
+    private final Thread writerThread;
+
+    @Nullable
+    private Batch current;
+
+    /**
+     * Creates a new request log.
+     *
+     * @param clock           the clock used to calculate request latency
+     * @param channel         the file to which entries are written
+     * @param timeZone        the time zone in which dates are formatted
+     * @param bufferSize      the size, in bytes, of each batch buffer
+     * @param bufferCount     the number of batch buffers in the pool
+     * @param flushInterval   the maximum amount of time an entry waits in a partial batch
+     * @param unit            the unit of {@code flushInterval}
+     * @param metricsRegistry the registry for the pool's gauges, or {@code null}
+     */
+    public ChannelRequestLog(Clock clock,
+                             RollingFileChannel channel,
+                             TimeZone timeZone,
+                             final int bufferSize,
+                             int bufferCount,
+                             long flushInterval,
+                             TimeUnit unit,
+                             @Nullable MetricsRegistry metricsRegistry) {
+        this.clock = clock;
+        this.channel = channel;
+        this.flushIntervalMillis = Math.max(1, unit.toMillis(flushInterval));
+        this.metricsRegistry = metricsRegistry;
+        this.free = new ArrayBlockingQueue<Batch>(bufferCount);
+        this.pending = new ArrayBlockingQueue<Batch>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            free.add(new Batch(bufferSize));
+        }
+
+        this.format = new RequestLogFormat(clock, timeZone);
+        this.lineBuffer = new ThreadLocal<LineBuffer>() {
+            @Override
+            protected LineBuffer initialValue() {
+                return new LineBuffer(bufferSize);
+            }
+        };
+
+        this.writer = new Writer();
+        this.writerThread = new Thread(writer);
+        writerThread.setName("channel-request-log-writer-" + THREAD_COUNTER.incrementAndGet());
+        writerThread.setDaemon(true);
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        channel.open(clock.time());
+        if (metricsRegistry != null) {
+            metricsRegistry.newGauge(ChannelRequestLog.class, "pending-buffers", new Gauge<Integer>() {
+                @Override
+                public Integer value() {
+                    return pending.size();
+                }
+            });
+            metricsRegistry.newGauge(ChannelRequestLog.class, "dropped", new Gauge<Long>() {
+                @Override
+                public Long value() {
+                    return dropped.get();
+                }
+            });
+        }
+        writerThread.start();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        // don't interrupt the writer: an interrupted FileChannel closes itself
+        writer.stop();
+        writerThread.join(flushIntervalMillis + TimeUnit.SECONDS.toMillis(1));
+
+        // write out whatever is left, in order
+        Batch batch;
+        while ((batch = pending.poll()) != null) {
+            write(batch);
+        }
+        batch = takeCurrentBatch();
+        if (batch != null) {
+            write(batch);
+        }
+        channel.close();
+    }
+
+    @Override
+    public void log(Request request, Response response) {
+        final LineBuffer line = lineBuffer.get();
+        line.chars.setLength(0);
+        format.format(line.chars, request, response);
+        line.chars.append(CoreConstants.LINE_SEPARATOR);
+        if (!line.encode()) {
+            // longer than an entire batch buffer
+            dropped.incrementAndGet();
+            return;
+        }
+
+        synchronized (lock) {
+            if (current != null && current.buffer.remaining() < line.length) {
+                if (!pending.offer(current)) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                current = null;
+            }
+            if (current == null) {
+                current = free.poll();
+                if (current == null) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                current.firstEntryTime = clock.time();
+            }
+            current.buffer.put(line.bytes, 0, line.length);
+        }
+    }
+
+    @Nullable
+    private Batch takeCurrentBatch() {
+        synchronized (lock) {
+            // full batches are queued under the lock, so checking here keeps the file in order
+            final Batch full = pending.poll();
+            if (full != null) {
+                return full;
+            }
+
+            final Batch batch = current;
+            if (batch == null || batch.buffer.position() == 0) {
+                return null;
+            }
+            current = null;
+            return batch;
+        }
+    }
+
+    private void write(Batch batch) {
+        batch.buffer.flip();
+        try {
+            channel.write(batch.buffer, batch.firstEntryTime);
+        } catch (IOException e) {
+            LOGGER.error("Unable to write request log", e);
+        } finally {
+            batch.buffer.clear();
+            free.offer(batch);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.yammer.dropwizard.jetty;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpChannelState;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A handler which limits the number of requests in flight to a limit it derives from their
+ * latency, and rejects requests beyond the limit with {@code 503 Service Unavailable} rather than
+ * letting them queue.
+ * <p>
+ * The limit follows the gradient of the latency: the ratio of the long-term average latency to
+ * the latency of the most recent window of requests. While recent requests are as fast as usual,
+ * the gradient is 1 and the limit grows by its square root each window, probing for more
+ * capacity. When recent requests slow down beyond {@code rttTolerance} times the long-term
+ * average, e.g. because a downstream dependency is struggling, the limit shrinks in proportion,
+ * by at most half each window. Each new limit is smoothed into the previous one, and the limit
+ * never leaves the configured minimum and maximum. The limit only grows while at least half of
+ * it is in use, so that an idle server doesn't accumulate a limit it has never tested.
+ * <p>
+ * Only a request's initial dispatch is counted against the limit; asynchronous requests hold
+ * their place until they complete. The handler reports {@code limit} and {@code in-flight}
+ * gauges and a {@code rejected} meter. Rejected requests never reach the handlers it wraps, so
+ * when it wraps an {@link InstrumentedHandler} the {@code rejected} meter is the only record of
+ * them: they aren't counted by its request timer or its {@code 5xx-responses} meter.
+ */
+public class ConcurrencyLimitHandler extends HandlerWrapper {
+    private static final int MIN_WINDOW_SIZE = 10;
+
+    private class Completion implements AsyncListener {
+        private final long startNanos;
+
+        private Completion(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            release(startNanos);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private final Clock clock;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double rttTolerance;
+    private final double smoothing;
+    private final Meter rejected;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong windowRttNanos = new AtomicLong();
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final Lock updateLock = new ReentrantLock();
+    private double estimatedLimit;
+    private double longRttNanos;
+    private volatile int limit;
+
+    /**
+     * Creates a new handler.
+     *
+     * @param registry     the metrics registry
+     * @param initialLimit the limit before any requests have completed
+     * @param minLimit     the smallest the limit may become
+     * @param maxLimit     the largest the limit may become
+     * @param rttTolerance how many times slower than the long-term average recent requests may
+     *                     be before the limit shrinks
+     * @param smoothing    how much of each new limit is applied, between 0 and 1
+     */
+    public ConcurrencyLimitHandler(MetricsRegistry registry,
+                                   int initialLimit,
+                                   int minLimit,
+                                   int maxLimit,
+                                   double rttTolerance,
+                                   double smoothing) {
+        this(registry, initialLimit, minLimit, maxLimit, rttTolerance, smoothing, Clock.defaultClock());
+    }
+
+    public ConcurrencyLimitHandler(MetricsRegistry registry,
+                                   int initialLimit,
+                                   int minLimit,
+                                   int maxLimit,
+                                   double rttTolerance,
+                                   double smoothing,
+                                   Clock clock) {
+        checkArgument(minLimit > 0 && minLimit <= initialLimit && initialLimit <= maxLimit,
+                      "limits must satisfy 0 < minLimit <= initialLimit <= maxLimit");
+        checkArgument(rttTolerance >= 1.0, "rttTolerance must be at least 1");
+        checkArgument(smoothing > 0.0 && smoothing <= 1.0, "smoothing must be in (0, 1]");
+        this.clock = clock;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.rttTolerance = rttTolerance;
+        this.smoothing = smoothing;
+        this.estimatedLimit = initialLimit;
+        this.limit = initialLimit;
+        this.rejected = registry.newMeter(ConcurrencyLimitHandler.class, "rejected", "requests", TimeUnit.SECONDS);
+        registry.newGauge(ConcurrencyLimitHandler.class, "limit", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return limit;
+            }
+        });
+        registry.newGauge(ConcurrencyLimitHandler.class, "in-flight", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return inFlight.get();
+            }
+        });
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void handle(String target,
+                       Request baseRequest,
+                       HttpServletRequest request,
+                       HttpServletResponse response) throws IOException, ServletException {
+        final HttpChannelState state = baseRequest.getHttpChannelState();
+        if (!state.isInitial()) {
+            // a resumed request was admitted when it was first dispatched
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+
+        if (!tryAcquire()) {
+            rejected.mark();
+            baseRequest.setHandled(true);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        final long startNanos = clock.tick();
+        try {
+            super.handle(target, baseRequest, request, response);
+        } finally {
+            if (state.isSuspended()) {
+                state.addListener(new Completion(startNanos));
+            } else {
+                release(startNanos);
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            final int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(long startNanos) {
+        final int current = inFlight.getAndDecrement();
+        onSample(clock.tick() - startNanos, current);
+    }
+
+    private void onSample(long rttNanos, int inFlightAtCompletion) {
+        windowRttNanos.addAndGet(rttNanos);
+        final int count = windowCount.incrementAndGet();
+        // a window is at least as many requests as the limit, so each covers a round of them
+        if (count < Math.max(MIN_WINDOW_SIZE, limit) || !updateLock.tryLock()) {
+            return;
+        }
+        try {
+            final int samples = windowCount.getAndSet(0);
+            final long total = windowRttNanos.getAndSet(0);
+            if (samples > 0) {
+                update((double) total / samples, inFlightAtCompletion);
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Updates the limit from a window of requests. Must hold {@code updateLock}.
+     */
+    private void update(double shortRttNanos, int inFlightNow) {
+        if (longRttNanos == 0) {
+            this.longRttNanos = shortRttNanos;
+        } else {
+            this.longRttNanos = longRttNanos * 0.95 + shortRttNanos * 0.05;
+        }
+
+        final double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRttNanos / shortRttNanos));
+        if (gradient >= 1.0 && inFlightNow < estimatedLimit / 2) {
+            // not enough load to learn anything about a higher limit
+            return;
+        }
+
+        final double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        this.estimatedLimit = Math.max(minLimit,
+                                       Math.min(maxLimit,
+                                                estimatedLimit * (1 - smoothing) + newLimit * smoothing));
+        this.limit = (int) estimatedLimit;
+
+        if (longRttNanos > shortRttNanos * 2) {
+            // the long-term average is still inflated by a past overload, so let it catch up
+            this.longRttNanos = longRttNanos * 0.95;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.component.Graceful;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.yammer.dropwizard.health.ShutdownHealthCheck;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+/**
+ * A {@link Server} which drains in phases when it's stopped:
+ * <ol>
+ *     <li>{@code fail-health-checks}: the {@link ShutdownHealthCheck} becomes unhealthy.</li>
+ *     <li>{@code deregistration}: the server keeps serving requests for the shutdown delay, while
+ *     load balancers notice the failing health check and stop sending it requests.</li>
+ *     <li>{@code stop-accepting}: the connectors stop accepting connections.</li>
+ *     <li>{@code drain}: requests in flight are given up to the stop timeout to complete.</li>
+ *     <li>{@code stop}: the connectors are stopped, closing any remaining connections, and then
+ *     the server's beans are stopped in reverse order, including the environment's managed
+ *     objects.</li>
+ * </ol>
+ * The duration of each phase is logged and recorded by a {@code shutdown-<phase>} timer.
+ */
+public class DrainingServer extends Server {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DrainingServer.class);
+
+    private final ShutdownHealthCheck healthCheck;
+    private final Duration shutdownDelay;
+    private final MetricsRegistry metrics;
+
+    public DrainingServer(@Nullable ThreadPool threadPool,
+                          ShutdownHealthCheck healthCheck,
+                          Duration shutdownDelay,
+                          MetricsRegistry metrics) {
+        super(threadPool);
+        this.healthCheck = healthCheck;
+        this.shutdownDelay = shutdownDelay;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        final long started = System.nanoTime();
+
+        long phase = System.nanoTime();
+        healthCheck.shutdownStarted();
+        phase = endPhase("fail-health-checks", phase);
+
+        if (shutdownDelay.toNanoseconds() > 0) {
+            LOGGER.info("Waiting {} for load balancers to deregister the server", shutdownDelay);
+            Thread.sleep(shutdownDelay.toMilliseconds());
+        }
+        phase = endPhase("deregistration", phase);
+
+        final List<Future<Void>> futures = Lists.newArrayList();
+        for (Connector connector : getConnectors()) {
+            futures.add(connector.shutdown());
+        }
+        phase = endPhase("stop-accepting", phase);
+
+        for (Handler handler : getChildHandlersByClass(Graceful.class)) {
+            futures.add(((Graceful) handler).shutdown());
+        }
+        final long stopTimeout = getStopTimeout();
+        if (stopTimeout > 0) {
+            // the phases are timed with nanoTime, so the drain waits by it too
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(stopTimeout);
+            for (Future<Void> future : futures) {
+                try {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    LOGGER.warn("Requests were still in flight after {}ms", stopTimeout);
+                    break;
+                } catch (Exception e) {
+                    LOGGER.warn("Error draining requests", e);
+                }
+            }
+        }
+        phase = endPhase("drain", phase);
+
+        // the requests have already had their chance to complete, so don't wait for them again
+        setStopTimeout(0);
+        try {
+            super.doStop();
+        } finally {
+            setStopTimeout(stopTimeout);
+            endPhase("stop", phase);
+            LOGGER.info("Shut down in {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    private long endPhase(String name, long start) {
+        final long now = System.nanoTime();
+        final Timer timer = metrics.newTimer(Server.class, "shutdown-" + name);
+        timer.update(now - start, TimeUnit.NANOSECONDS);
+        LOGGER.info("Shutdown phase {} took {}ms", name, TimeUnit.NANOSECONDS.toMillis(now - start));
+        return now;
+    }
+}
@@ -0,0 +1,97 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Inflater;
+
+/**
+ * A bounded pool of {@link Inflater}s, so that decompressing requests doesn't allocate and free
+ * native memory for each one. Inflaters are created when the pool is empty, and ended when they're
+ * released to a full or closed pool.
+ */
+public class InflaterPool {
+    private final boolean nowrap;
+    private final BlockingQueue<Inflater> idle;
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final AtomicLong created = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param nowrap      whether the inflaters decompress raw deflate data, as in gzip, rather
+     *                    than zlib-wrapped data
+     * @param capacity    the maximum number of idle inflaters to keep
+     */
+    public InflaterPool(boolean nowrap, int capacity) {
+        this.nowrap = nowrap;
+        this.idle = new ArrayBlockingQueue<Inflater>(Math.max(1, capacity));
+    }
+
+    public boolean isNowrap() {
+        return nowrap;
+    }
+
+    /**
+     * Takes an inflater from the pool, creating one if none are idle. It must be passed to
+     * {@link #release(Inflater)} once it's no longer used.
+     *
+     * @return a reset inflater
+     */
+    public Inflater acquire() {
+        inUse.incrementAndGet();
+        final Inflater inflater = idle.poll();
+        if (inflater != null) {
+            return inflater;
+        }
+        created.incrementAndGet();
+        return new Inflater(nowrap);
+    }
+
+    /**
+     * Returns an inflater to the pool.
+     *
+     * @param inflater an inflater from {@link #acquire()}
+     */
+    public void release(Inflater inflater) {
+        inUse.decrementAndGet();
+        // a request may have failed part of the way through, so the inflater is reset before it's reused
+        inflater.reset();
+        if (closed || !idle.offer(inflater)) {
+            inflater.end();
+        } else if (closed && idle.remove(inflater)) {
+            // raced with close()
+            inflater.end();
+        }
+    }
+
+    /**
+     * Ends the idle inflaters. Inflaters which are released afterwards are ended, rather than
+     * pooled.
+     */
+    public void close() {
+        this.closed = true;
+        Inflater inflater;
+        while ((inflater = idle.poll()) != null) {
+            inflater.end();
+        }
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    public int getInUse() {
+        return inUse.get();
+    }
+
+    /**
+     * Returns the number of inflaters the pool has created, so that a rate shows how often the
+     * pool is too small.
+     */
+    public long getCreated() {
+        return created.get();
+    }
+}
@@ -0,0 +1,85 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.ResetFrame;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * An {@link HTTP2ServerConnectionFactory} which meters the HTTP/2 streams opened and reset by
+ * clients, i.e. the requests multiplexed over each connection.
+ */
+public class InstrumentedHTTP2ServerConnectionFactory extends HTTP2ServerConnectionFactory {
+  /**
+   * The cleartext (h2c) version of {@link InstrumentedHTTP2ServerConnectionFactory}.
+   */
+  public static class Cleartext extends HTTP2CServerConnectionFactory {
+    private final StreamMetrics metrics;
+
+    public Cleartext(HttpConfiguration httpConfiguration, MetricsRegistry registry) {
+      super(httpConfiguration);
+      this.metrics = new StreamMetrics(registry, getProtocol());
+    }
+
+    @Override
+    protected ServerSessionListener newSessionListener(Connector connector, EndPoint endPoint) {
+      return new HTTPServerSessionListener(connector, endPoint) {
+        @Override
+        public Stream.Listener onNewStream(Stream stream, HeadersFrame frame) {
+          metrics.streams.mark();
+          return super.onNewStream(stream, frame);
+        }
+
+        @Override
+        public void onReset(Stream stream, ResetFrame frame) {
+          metrics.resets.mark();
+          super.onReset(stream, frame);
+        }
+      };
+    }
+  }
+
+  private static class StreamMetrics {
+    private final Meter streams;
+    private final Meter resets;
+
+    private StreamMetrics(MetricsRegistry registry, String protocol) {
+      this.streams = registry.newMeter(HTTP2ServerConnectionFactory.class, "streams", protocol, "streams", TimeUnit.SECONDS);
+      this.resets = registry.newMeter(HTTP2ServerConnectionFactory.class, "stream-resets", protocol, "streams", TimeUnit.SECONDS);
+    }
+  }
+
+  private final StreamMetrics metrics;
+
+  public InstrumentedHTTP2ServerConnectionFactory(HttpConfiguration httpConfiguration, MetricsRegistry registry) {
+    super(httpConfiguration);
+    this.metrics = new StreamMetrics(registry, getProtocol());
+  }
+
+  @Override
+  protected ServerSessionListener newSessionListener(Connector connector, EndPoint endPoint) {
+    return new HTTPServerSessionListener(connector, endPoint) {
+      @Override
+      public Stream.Listener onNewStream(Stream stream, HeadersFrame frame) {
+        metrics.streams.mark();
+        return super.onNewStream(stream, frame);
+      }
+
+      @Override
+      public void onReset(Stream stream, ResetFrame frame) {
+        metrics.resets.mark();
+        super.onReset(stream, frame);
+      }
+    };
+  }
+}
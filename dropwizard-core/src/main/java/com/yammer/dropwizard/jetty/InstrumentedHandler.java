@@ -1,6 +1,8 @@
 package com.yammer.dropwizard.jetty;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 import javax.servlet.AsyncEvent;
@@ -16,8 +18,10 @@ import org.eclipse.jetty.server.HttpChannelState;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerWrapper;
 
-import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
 import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricsRegistry;
 import com.yammer.metrics.core.Timer;
 import com.yammer.metrics.util.RatioGauge;
@@ -25,9 +29,29 @@ import com.yammer.metrics.util.RatioGauge;
 /**
  * A Jetty {@link Handler} which records various metrics about an underlying {@link Handler}
  * instance.
+ * <p>
+ * If a histogram interval is given, request and dispatch times are also measured with
+ * {@link System#nanoTime()} from when the request enters this handler, and are recorded by
+ * {@link LatencyRecorder}s, whose per-interval percentiles are registered as {@code *-latency}
+ * gauges next to the corresponding timers. The timers themselves are unaffected.
  */
 public class InstrumentedHandler extends HandlerWrapper {
+  private static final HttpMethod[] METHODS = HttpMethod.values();
+
+  // the methods with their own timers; any other method is timed by other-requests
+  private static final HttpMethod[] TIMED_METHODS = {
+      HttpMethod.GET, HttpMethod.POST, HttpMethod.HEAD, HttpMethod.PUT, HttpMethod.DELETE,
+      HttpMethod.OPTIONS, HttpMethod.TRACE, HttpMethod.CONNECT, HttpMethod.MOVE
+  };
+
+  // the index of other-requests in the per-method arrays
+  private static final int OTHER_METHODS = METHODS.length;
+
+  // the attribute holding the System.nanoTime() at which a suspended request entered the handler
+  private static final String START_NANOS_ATTRIBUTE = InstrumentedHandler.class.getName() + ".startNanos";
+
   private final MetricsRegistry metricsRegistry;
+  private final long histogramIntervalNanos;
 
   private String name;
 
@@ -38,13 +62,13 @@ public class InstrumentedHandler extends HandlerWrapper {
   private Timer dispatches;
 
   // the number of active requests
-  private Counter activeRequests;
+  private StripedCounter activeRequests;
 
   // the number of active dispatches
-  private Counter activeDispatches;
+  private StripedCounter activeDispatches;
 
   // the number of requests currently suspended.
-  private Counter activeSuspended;
+  private StripedCounter activeSuspended;
 
   // the number of requests that have been asynchronously dispatched
   private Meter asyncDispatches;
@@ -54,16 +78,13 @@ public class InstrumentedHandler extends HandlerWrapper {
 
   private Meter[] responses;
 
-  private Timer getRequests;
-  private Timer postRequests;
-  private Timer headRequests;
-  private Timer putRequests;
-  private Timer deleteRequests;
-  private Timer optionsRequests;
-  private Timer traceRequests;
-  private Timer connectRequests;
-  private Timer moveRequests;
-  private Timer otherRequests;
+  // the per-method timers, indexed by HttpMethod ordinal, with other-requests in the last slot
+  private Timer[] methodRequests;
+
+  // the latency recorders for the timers above, or null if not recording histograms
+  private LatencyRecorder requestLatencies;
+  private LatencyRecorder dispatchLatencies;
+  private LatencyRecorder[] methodLatencies;
 
   private AsyncListener listener;
 
@@ -74,7 +95,20 @@ public class InstrumentedHandler extends HandlerWrapper {
    *
    */
   public InstrumentedHandler(MetricsRegistry registry) {
+    this(registry, 0, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Create a new instrumented handler which also records nanosecond latency histograms.
+   *
+   * @param registry            the registry for the metrics
+   * @param histogramInterval   the interval over which latency percentiles are reported, or 0
+   *                            to disable latency histograms
+   * @param unit                the unit of {@code histogramInterval}
+   */
+  public InstrumentedHandler(MetricsRegistry registry, long histogramInterval, TimeUnit unit) {
     this.metricsRegistry = registry;
+    this.histogramIntervalNanos = unit.toNanos(histogramInterval);
   }
 
   public String getName() {
@@ -92,9 +126,9 @@ public class InstrumentedHandler extends HandlerWrapper {
     this.requests = metricsRegistry.newTimer(getHandler().getClass(), "requests");
     this.dispatches = metricsRegistry.newTimer(getHandler().getClass(), "dispatches");
 
-    this.activeRequests = metricsRegistry.newCounter(getHandler().getClass(), "active-requests");
-    this.activeDispatches = metricsRegistry.newCounter(getHandler().getClass(), "active-dispatches");
-    this.activeSuspended = metricsRegistry.newCounter(getHandler().getClass(), "active-suspended");
+    this.activeRequests = newStripedCounter("active-requests");
+    this.activeDispatches = newStripedCounter("active-dispatches");
+    this.activeSuspended = newStripedCounter("active-suspended");
 
     this.asyncDispatches = metricsRegistry.newMeter(getHandler().getClass(), "async-dispatches", "requests", TimeUnit.SECONDS);
     this.asyncTimeouts = metricsRegistry.newMeter(getHandler().getClass(), "async-timeouts", "requests", TimeUnit.SECONDS);
@@ -107,16 +141,21 @@ public class InstrumentedHandler extends HandlerWrapper {
         metricsRegistry.newMeter(getHandler().getClass(), "5xx-responses", "responses", TimeUnit.SECONDS)  // 5xx
     };
 
-    this.getRequests = metricsRegistry.newTimer(getHandler().getClass(), "get-requests");
-    this.postRequests = metricsRegistry.newTimer(getHandler().getClass(), "post-requests");
-    this.headRequests = metricsRegistry.newTimer(getHandler().getClass(), "head-requests");
-    this.putRequests = metricsRegistry.newTimer(getHandler().getClass(), "put-requests");
-    this.deleteRequests = metricsRegistry.newTimer(getHandler().getClass(), "delete-requests");
-    this.optionsRequests = metricsRegistry.newTimer(getHandler().getClass(), "options-requests");
-    this.traceRequests = metricsRegistry.newTimer(getHandler().getClass(), "trace-requests");
-    this.connectRequests = metricsRegistry.newTimer(getHandler().getClass(), "connect-requests");
-    this.moveRequests = metricsRegistry.newTimer(getHandler().getClass(), "move-requests");
-    this.otherRequests = metricsRegistry.newTimer(getHandler().getClass(), "other-requests");
+    this.methodRequests = new Timer[OTHER_METHODS + 1];
+    Arrays.fill(methodRequests, metricsRegistry.newTimer(getHandler().getClass(), "other-requests"));
+    for (HttpMethod method : TIMED_METHODS) {
+      methodRequests[method.ordinal()] = metricsRegistry.newTimer(getHandler().getClass(), timerName(method));
+    }
+
+    if (histogramIntervalNanos > 0) {
+      this.requestLatencies = newLatencyRecorder("requests");
+      this.dispatchLatencies = newLatencyRecorder("dispatches");
+      this.methodLatencies = new LatencyRecorder[OTHER_METHODS + 1];
+      Arrays.fill(methodLatencies, newLatencyRecorder("other-requests"));
+      for (HttpMethod method : TIMED_METHODS) {
+        methodLatencies[method.ordinal()] = newLatencyRecorder(timerName(method));
+      }
+    }
 
     metricsRegistry.newGauge(getHandler().getClass(), "percent-4xx-1m", new RatioGauge() {
       @Override
@@ -192,8 +231,6 @@ public class InstrumentedHandler extends HandlerWrapper {
 
 
     this.listener = new AsyncListener() {
-      private long startTime;
-
       @Override
       public void onTimeout(AsyncEvent event) throws IOException {
         asyncTimeouts.mark();
@@ -201,7 +238,6 @@ public class InstrumentedHandler extends HandlerWrapper {
 
       @Override
       public void onStartAsync(AsyncEvent event) throws IOException {
-        startTime = System.currentTimeMillis();
         event.getAsyncContext().addListener(this);
       }
 
@@ -211,10 +247,11 @@ public class InstrumentedHandler extends HandlerWrapper {
 
       @Override
       public void onComplete(AsyncEvent event) throws IOException {
+        // the listener is shared by every request, so the start times are kept by the request
         final AsyncContextState state = (AsyncContextState) event.getAsyncContext();
-        final HttpServletRequest request = (HttpServletRequest) state.getRequest();
-        final HttpServletResponse response = (HttpServletResponse) state.getResponse();
-        updateResponses(request, response, startTime);
+        final Request request = state.getHttpChannelState().getBaseRequest();
+        final Long startNanos = (Long) request.getAttribute(START_NANOS_ATTRIBUTE);
+        updateResponses(request, request.getTimeStamp(), startNanos == null ? 0 : startNanos);
         if (state.getHttpChannelState().getState() != HttpChannelState.State.DISPATCHED) {
           activeSuspended.dec();
         }
@@ -230,6 +267,8 @@ public class InstrumentedHandler extends HandlerWrapper {
 
     activeDispatches.inc();
 
+    // only read the nanosecond clock when recording histograms
+    final long startNanos = dispatchLatencies != null ? System.nanoTime() : 0;
     final long start;
     final HttpChannelState state = request.getHttpChannelState();
     if (state.isInitial()) {
@@ -253,57 +292,69 @@ public class InstrumentedHandler extends HandlerWrapper {
 
       activeDispatches.dec();
       dispatches.update(dispatched, TimeUnit.MILLISECONDS);
+      if (dispatchLatencies != null) {
+        dispatchLatencies.update(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+      }
 
       if (state.isSuspended()) {
         if (state.isInitial()) {
+          if (requestLatencies != null) {
+            request.setAttribute(START_NANOS_ATTRIBUTE, startNanos);
+          }
           state.addListener(listener);
         }
         activeSuspended.inc();
       } else if (state.isInitial()) {
-        updateResponses(httpRequest, httpResponse, start);
+        updateResponses(request, start, startNanos);
       }
       // else onCompletion will handle it.
     }
   }
 
-  private Timer requestTimer(String method) {
-    final HttpMethod m = HttpMethod.fromString(method);
-    if (m == null) {
-      return otherRequests;
-    } else {
-      switch (m) {
-        case GET:
-          return getRequests;
-        case POST:
-          return postRequests;
-        case PUT:
-          return putRequests;
-        case HEAD:
-          return headRequests;
-        case DELETE:
-          return deleteRequests;
-        case OPTIONS:
-          return optionsRequests;
-        case TRACE:
-          return traceRequests;
-        case CONNECT:
-          return connectRequests;
-        case MOVE:
-          return moveRequests;
-        default:
-          return otherRequests;
+  private static String timerName(HttpMethod method) {
+    return method.asString().toLowerCase(Locale.ENGLISH) + "-requests";
+  }
+
+  private static int methodIndex(String method) {
+    // Jetty's parser gives requests the constant strings of known methods, so compare those first
+    for (HttpMethod m : METHODS) {
+      if (m.asString() == method) {
+        return m.ordinal();
       }
     }
+    final HttpMethod m = HttpMethod.fromString(method);
+    return m == null ? OTHER_METHODS : m.ordinal();
+  }
+
+  private StripedCounter newStripedCounter(String name) {
+    // updated by every request thread, so spread over cache lines rather than a single AtomicLong
+    return StripedCounter.register(metricsRegistry, new MetricName(getHandler().getClass(), name));
   }
 
-  private void updateResponses(HttpServletRequest request, HttpServletResponse response, long start) {
-    final int responseStatus = response.getStatus() / 100;
+  private LatencyRecorder newLatencyRecorder(String timerName) {
+    final LatencyRecorder recorder = new LatencyRecorder(Clock.defaultClock(),
+                                                         histogramIntervalNanos,
+                                                         TimeUnit.NANOSECONDS);
+    // the registry keeps the first gauge with a given name, e.g. this handler's from a previous start
+    final Gauge<LatencyRecorder.Snapshot> registered =
+        metricsRegistry.newGauge(getHandler().getClass(), timerName + "-latency", recorder);
+    return registered instanceof LatencyRecorder ? (LatencyRecorder) registered : recorder;
+  }
+
+  private void updateResponses(Request request, long start, long startNanos) {
+    final int responseStatus = request.getResponse().getStatus() / 100;
     if (responseStatus >= 1 && responseStatus <= 5) {
       responses[responseStatus - 1].mark();
     }
     activeRequests.dec();
+    final int method = methodIndex(request.getMethod());
     final long elapsedTime = System.currentTimeMillis() - start;
     requests.update(elapsedTime, TimeUnit.MILLISECONDS);
-    requestTimer(request.getMethod()).update(elapsedTime, TimeUnit.MILLISECONDS);
+    methodRequests[method].update(elapsedTime, TimeUnit.MILLISECONDS);
+    if (requestLatencies != null) {
+      final long elapsedNanos = System.nanoTime() - startNanos;
+      requestLatencies.update(elapsedNanos, TimeUnit.NANOSECONDS);
+      methodLatencies[method].update(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
   }
 }
@@ -12,7 +12,7 @@ import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 
 import com.google.common.base.Preconditions;
-import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricName;
 import com.yammer.metrics.core.MetricsRegistry;
 import com.yammer.metrics.core.Timer;
 import com.yammer.metrics.core.TimerContext;
@@ -25,12 +25,13 @@ public class Jetty93InstrumentedConnectionFactory extends ContainerLifeCycle imp
 
   private final ConnectionFactory connectionFactory;
   private final Timer timer;
-  private final Counter counter;
+  private final StripedCounter counter;
 
   public Jetty93InstrumentedConnectionFactory(ConnectionFactory connectionFactory, MetricsRegistry metrics) {
     this.connectionFactory = connectionFactory;
     this.timer = metrics.newTimer(HttpConnectionFactory.class, "connections");
-    this.counter = metrics.newCounter(HttpConnectionFactory.class, "active-connections");
+    this.counter = StripedCounter.register(metrics,
+                                           new MetricName(HttpConnectionFactory.class, "active-connections"));
     addBean(connectionFactory);
   }
 
@@ -42,7 +43,7 @@ public class Jetty93InstrumentedConnectionFactory extends ContainerLifeCycle imp
     return timer;
   }
 
-  public Counter getCounter() {
+  public StripedCounter getCounter() {
     return counter;
   }
 
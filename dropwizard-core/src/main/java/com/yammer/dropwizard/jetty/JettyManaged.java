@@ -1,14 +1,26 @@
 package com.yammer.dropwizard.jetty;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.dropwizard.util.Duration;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A wrapper for {@link Managed} instances which ties them to a Jetty
  * {@link org.eclipse.jetty.util.component.LifeCycle}.
  */
 public class JettyManaged extends AbstractLifeCycle implements Managed {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JettyManaged.class);
+
     private final Managed managed;
+    private volatile Duration stopTimeout = Duration.seconds(0);
 
     /**
      * Creates a new JettyManaged wrapping {@code managed}.
@@ -19,6 +31,16 @@ public class JettyManaged extends AbstractLifeCycle implements Managed {
         this.managed = managed;
     }
 
+    /**
+     * Sets how long stopping the wrapped instance may take before it's abandoned, so that one
+     * stuck object doesn't hold up the rest of the shutdown. If zero, it's waited for indefinitely.
+     *
+     * @param timeout the stop timeout
+     */
+    public void setStopTimeout(Duration timeout) {
+        this.stopTimeout = timeout;
+    }
+
     @Override
     protected void doStart() throws Exception {
         managed.start();
@@ -26,7 +48,38 @@ public class JettyManaged extends AbstractLifeCycle implements Managed {
 
     @Override
     protected void doStop() throws Exception {
-        managed.stop();
+        final long start = System.nanoTime();
+        final long timeout = stopTimeout.toNanoseconds();
+        if (timeout <= 0) {
+            managed.stop();
+        } else {
+            stopWithin(timeout);
+        }
+        LOGGER.debug("Stopped {} in {}ms", managed, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void stopWithin(long timeoutNanos) throws Exception {
+        final FutureTask<Void> stop = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                managed.stop();
+                return null;
+            }
+        });
+        final Thread thread = new Thread(stop, "stop-" + managed);
+        thread.setDaemon(true);
+        thread.start();
+        try {
+            stop.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("{} did not stop within {}, abandoning it", managed, stopTimeout);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
     }
 
     @Override
@@ -0,0 +1,300 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.Gauge;
+
+/**
+ * A lock-free recorder of nanosecond latencies into high dynamic range histograms, reported one
+ * interval at a time.
+ * <p>
+ * Values are counted in log-linear buckets: exact below 128ns, and above that with 64 buckets per
+ * power of two, so every recorded value is reported within 1% of its true value. Writers
+ * increment the active histogram without locking or reading the clock. The first read after an
+ * interval has ended swaps the active histogram for an empty one, and the swapped-out histogram
+ * becomes the reported {@link Snapshot}, so percentiles describe the most recent interval rather
+ * than a decaying sample of the process's lifetime.
+ * <p>
+ * Reads drive the intervals: a snapshot holds everything recorded since the previous swap. When
+ * the gauge is read at least once per interval, e.g. by a reporter whose period is no longer
+ * than the interval, each snapshot covers a single interval; if it isn't read for several
+ * intervals, the next snapshot covers all of them.
+ * <p>
+ * The swap uses the same writer/reader phaser as HdrHistogram's {@code Recorder}: writers mark
+ * entry and exit with two counters, and the reader waits for every writer which entered the old
+ * phase to leave it before reading the swapped-out histogram.
+ */
+public class LatencyRecorder extends Gauge<LatencyRecorder.Snapshot> {
+    /**
+     * The latencies recorded during a single interval. Times are reported in milliseconds.
+     */
+    public static class Snapshot {
+        private static final long[] NO_COUNTS = new long[0];
+
+        private final long[] counts;
+        private final long count;
+        private final long min;
+        private final long max;
+        private final double mean;
+        private final long end;
+
+        private Snapshot(long end) {
+            this(NO_COUNTS, 0, 0, 0, 0.0, end);
+        }
+
+        private Snapshot(long[] counts, long count, long min, long max, double mean, long end) {
+            this.counts = counts;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.end = end;
+        }
+
+        /**
+         * Returns the clock tick, in nanoseconds, at which the interval ended. Every interval,
+         * including an empty one, ends at a later tick than the one before it, so this tells
+         * whether a new interval has ended since an earlier snapshot.
+         */
+        public long getEnd() {
+            return end;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return toMillis(min);
+        }
+
+        public double getMax() {
+            return toMillis(max);
+        }
+
+        public double getMean() {
+            return toMillis(mean);
+        }
+
+        public double getMedian() {
+            return getValue(0.5);
+        }
+
+        public double get75thPercentile() {
+            return getValue(0.75);
+        }
+
+        public double get95thPercentile() {
+            return getValue(0.95);
+        }
+
+        public double get98thPercentile() {
+            return getValue(0.98);
+        }
+
+        public double get99thPercentile() {
+            return getValue(0.99);
+        }
+
+        public double get999thPercentile() {
+            return getValue(0.999);
+        }
+
+        /**
+         * Returns the value, in milliseconds, at the given quantile.
+         *
+         * @param quantile a quantile in {@code [0..1]}
+         * @return the value at {@code quantile}
+         */
+        public double getValue(double quantile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return toMillis(Math.max(min, Math.min(max, valueOf(i))));
+                }
+            }
+            return toMillis(max);
+        }
+
+        private static double toMillis(double nanos) {
+            return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+    private static class Histogram {
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+        private void record(long value) {
+            counts.incrementAndGet(indexOf(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+
+            long current = min.get();
+            while (value < current && !min.compareAndSet(current, value)) {
+                current = min.get();
+            }
+            current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+
+        private Snapshot snapshot(long end) {
+            final long n = count.get();
+            if (n == 0) {
+                return new Snapshot(end);
+            }
+            final long[] values = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                values[i] = counts.get(i);
+            }
+            return new Snapshot(values, n, min.get(), max.get(), sum.get() / (double) n, end);
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            min.set(Long.MAX_VALUE);
+            max.set(Long.MIN_VALUE);
+        }
+    }
+
+    // values below 2^7 are counted exactly; above that, the top 7 bits select the bucket
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+
+    // latencies are clamped to about 73 minutes (2^42ns)
+    private static final int MAX_VALUE_BITS = 42;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final Clock clock;
+    private final long intervalNanos;
+    private final AtomicLong startEpoch = new AtomicLong(0);
+    private final AtomicLong evenEndEpoch = new AtomicLong(0);
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile Histogram active = new Histogram();
+    private Histogram inactive = new Histogram();
+    private volatile Snapshot snapshot;
+    private volatile long nextSwap;
+
+    /**
+     * Creates a new recorder.
+     *
+     * @param clock    the clock used to determine when an interval ends
+     * @param interval the length of each reported interval
+     * @param unit     the unit of {@code interval}
+     */
+    public LatencyRecorder(Clock clock, long interval, TimeUnit unit) {
+        this.clock = clock;
+        this.intervalNanos = unit.toNanos(interval);
+        final long now = clock.tick();
+        this.snapshot = new Snapshot(now);
+        this.nextSwap = now + intervalNanos;
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param duration the latency
+     * @param unit     the unit of {@code duration}
+     */
+    public void update(long duration, TimeUnit unit) {
+        final long value = Math.max(0, Math.min(MAX_VALUE, unit.toNanos(duration)));
+        final long epoch = startEpoch.getAndIncrement();
+        try {
+            active.record(value);
+        } finally {
+            if (epoch < 0) {
+                oddEndEpoch.getAndIncrement();
+            } else {
+                evenEndEpoch.getAndIncrement();
+            }
+        }
+    }
+
+    /**
+     * Returns the latencies recorded between the two most recent swaps, first swapping the
+     * histograms if the current interval has ended.
+     */
+    @Override
+    public Snapshot value() {
+        if (clock.tick() - nextSwap >= 0) {
+            swap();
+        }
+        return snapshot;
+    }
+
+    private synchronized void swap() {
+        final long now = clock.tick();
+        if (now - nextSwap < 0) {
+            // another reader got here first
+            return;
+        }
+
+        inactive.reset();
+        final Histogram recorded = active;
+        this.active = inactive;
+        flipPhase();
+        this.inactive = recorded;
+
+        // if no one has looked for a while, the recorded histogram spans several intervals
+        this.snapshot = recorded.snapshot(now);
+        this.nextSwap = now + intervalNanos;
+    }
+
+    private void flipPhase() {
+        final boolean nextPhaseIsEven = startEpoch.get() < 0;
+        final long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        if (nextPhaseIsEven) {
+            evenEndEpoch.set(initialStartValue);
+        } else {
+            oddEndEpoch.set(initialStartValue);
+        }
+
+        final long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        final AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+
+        // wait for every writer which may still be recording into the old histogram
+        while (previousEndEpoch.get() != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int shift = (63 - Long.numberOfLeadingZeros(value)) - (SUB_BUCKET_BITS - 1);
+        final int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF_COUNT + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    // the midpoint of the values counted in the given bucket
+    private static long valueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int offset = index - SUB_BUCKET_COUNT;
+        final int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+        final long subBucket = SUB_BUCKET_HALF_COUNT + offset % SUB_BUCKET_HALF_COUNT;
+        return (subBucket << shift) + (1L << (shift - 1));
+    }
+}
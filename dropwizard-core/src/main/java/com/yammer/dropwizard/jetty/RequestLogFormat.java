@@ -0,0 +1,207 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.eclipse.jetty.server.Authentication;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.DateCache;
+
+import com.google.common.base.Optional;
+import com.google.common.net.HttpHeaders;
+import com.yammer.metrics.core.Clock;
+
+/**
+ * Formats NCSA-style request log lines, the same way for each of the request logs, and encodes
+ * them as UTF-8 without building a {@link String}.
+ */
+class RequestLogFormat {
+    private final Clock clock;
+    @SuppressWarnings("ThreadLocalNotStaticFinal")
+    private final ThreadLocal<DateCache> dateCache;
+
+    /**
+     * Creates a new format.
+     *
+     * @param clock    the clock used to calculate request latency
+     * @param timeZone the time zone in which dates are formatted
+     */
+    RequestLogFormat(Clock clock, final TimeZone timeZone) {
+        this.clock = clock;
+        this.dateCache = new ThreadLocal<DateCache>() {
+            @Override
+            protected DateCache initialValue() {
+                return new DateCache("dd/MMM/yyyy:HH:mm:ss Z", Locale.US, timeZone);
+            }
+        };
+    }
+
+    /**
+     * Appends the log line of a request, without a line separator.
+     *
+     * @param buf      the buffer to append to
+     * @param request  the request
+     * @param response the response
+     */
+    void format(StringBuilder buf, Request request, Response response) {
+        // copied almost entirely from NCSARequestLog
+        String address = request.getHeader(HttpHeaders.X_FORWARDED_FOR);
+        if (address == null) {
+            address = request.getRemoteAddr();
+        }
+
+        buf.append(address);
+        buf.append(" - ");
+        final Authentication authentication = request.getAuthentication();
+        if (authentication instanceof Authentication.User) {
+            buf.append(((Authentication.User) authentication).getUserIdentity()
+                                                             .getUserPrincipal()
+                                                             .getName());
+        } else {
+            buf.append('-');
+        }
+
+        buf.append(" [");
+        buf.append(dateCache.get().format(request.getTimeStamp()));
+
+        buf.append("] \"");
+        buf.append(request.getMethod());
+        buf.append(' ');
+        buf.append(request.getHttpURI().toString());
+        buf.append(' ');
+        buf.append(request.getProtocol());
+        buf.append("\" ");
+
+        int status = response.getStatus();
+        if (status <= 0) {
+            status = 404;
+        }
+        buf.append((char) ('0' + ((status / 100) % 10)));
+        buf.append((char) ('0' + ((status / 10) % 10)));
+        buf.append((char) ('0' + (status % 10)));
+
+        final long responseLength = response.getContentCount();
+        if (responseLength >= 0) {
+            buf.append(' ');
+            if (responseLength > 99999) {
+                buf.append(responseLength);
+            } else {
+                if (responseLength > 9999) {
+                    buf.append((char) ('0' + ((responseLength / 10000) % 10)));
+                }
+                if (responseLength > 999) {
+                    buf.append((char) ('0' + ((responseLength / 1000) % 10)));
+                }
+                if (responseLength > 99) {
+                    buf.append((char) ('0' + ((responseLength / 100) % 10)));
+                }
+                if (responseLength > 9) {
+                    buf.append((char) ('0' + ((responseLength / 10) % 10)));
+                }
+                buf.append((char) ('0' + (responseLength % 10)));
+            }
+        } else {
+            buf.append(" -");
+        }
+
+        long queueTime = Optional.fromNullable((Long) request.getAttribute("_queue_time_millis")).or(0L);
+        long processingTime = clock.time() - request.getTimeStamp();
+
+        buf.append(' ');
+        buf.append(queueTime + processingTime);
+
+        buf.append(' ');
+        buf.append(processingTime);
+    }
+
+    /**
+     * Returns the number of bytes {@link #encode(CharSequence, byte[])} may need for a line: three
+     * per UTF-16 char, in the worst case.
+     */
+    static int maxEncodedLength(CharSequence line) {
+        return line.length() * 3;
+    }
+
+    /**
+     * Returns the number of leading chars of a line whose UTF-8 encoding fits in the given number
+     * of bytes, without splitting a surrogate pair.
+     */
+    static int encodableLength(CharSequence line, int maxBytes) {
+        final int chars = line.length();
+        int n = 0;
+        for (int i = 0; i < chars; i++) {
+            final char c = line.charAt(i);
+            final int width;
+            if (c < 0x80) {
+                width = 1;
+            } else if (c < 0x800) {
+                width = 2;
+            } else if (Character.isHighSurrogate(c) && (i + 1 < chars) &&
+                    Character.isLowSurrogate(line.charAt(i + 1))) {
+                if (n + 4 > maxBytes) {
+                    return i;
+                }
+                n += 4;
+                i++;
+                continue;
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                width = 1;
+            } else {
+                width = 3;
+            }
+            if (n + width > maxBytes) {
+                return i;
+            }
+            n += width;
+        }
+        return chars;
+    }
+
+    /**
+     * Encodes a line as UTF-8. Unpaired surrogates are encoded as {@code ?}.
+     *
+     * @param line  the line
+     * @param bytes the array to encode into, at least {@link #maxEncodedLength(CharSequence)} long
+     * @return the number of bytes written
+     */
+    static int encode(CharSequence line, byte[] bytes) {
+        return encode(line, line.length(), bytes);
+    }
+
+    /**
+     * Encodes the first {@code chars} chars of a line as UTF-8.
+     *
+     * @param line  the line
+     * @param chars the number of chars to encode, as returned by
+     *              {@link #encodableLength(CharSequence, int)}
+     * @param bytes the array to encode into
+     * @return the number of bytes written
+     */
+    static int encode(CharSequence line, int chars, byte[] bytes) {
+        int n = 0;
+        for (int i = 0; i < chars; i++) {
+            final char c = line.charAt(i);
+            if (c < 0x80) {
+                bytes[n++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[n++] = (byte) (0xC0 | (c >> 6));
+                bytes[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && (i + 1 < chars) &&
+                    Character.isLowSurrogate(line.charAt(i + 1))) {
+                final int codePoint = Character.toCodePoint(c, line.charAt(++i));
+                bytes[n++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                bytes[n++] = (byte) '?';
+            } else {
+                bytes[n++] = (byte) (0xE0 | (c >> 12));
+                bytes[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[n++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return n;
+    }
+}
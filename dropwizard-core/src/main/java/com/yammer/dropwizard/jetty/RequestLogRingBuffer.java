@@ -0,0 +1,273 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+/**
+ * A bounded, pre-allocated, multi-producer/single-consumer ring buffer of request log lines.
+ * <p>
+ * Each slot owns a fixed-size {@code byte[]} into which producers encode their line as UTF-8, so
+ * logging allocates neither queue nodes nor {@link String}s on the request thread, and the buffer
+ * never holds on to more than its size times its slot capacity. Lines which don't fit in a slot
+ * are truncated, at a character boundary, and counted. Slots are claimed and published using
+ * per-slot sequence numbers, so producers never take a lock. What happens when the buffer is full
+ * is determined by its {@link OverflowPolicy}.
+ */
+public class RequestLogRingBuffer {
+    /**
+     * What a producer does when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the entry.
+         */
+        DROP,
+
+        /**
+         * Wait until the dispatcher frees a slot.
+         */
+        BLOCK,
+
+        /**
+         * Wait for a slot for one out of every {@code sampleRate} overflowing entries and discard
+         * the rest.
+         */
+        SAMPLE;
+
+        @Override
+        @JsonValue
+        public String toString() {
+            return super.toString().toLowerCase(Locale.ENGLISH);
+        }
+
+        @JsonCreator
+        public static OverflowPolicy parse(String policy) {
+            return valueOf(policy.toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    /**
+     * Receives the contents of published slots on the dispatcher thread.
+     */
+    public interface SlotHandler {
+        /**
+         * Handles a single entry. The array is owned by the ring buffer and is reused as soon as
+         * this method returns.
+         *
+         * @param bytes  the UTF-8 encoded entry
+         * @param length the number of valid bytes in {@code bytes}
+         */
+        void handle(byte[] bytes, int length);
+    }
+
+    private static class Slot {
+        private final byte[] bytes;
+        private int length;
+
+        private Slot(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+    }
+
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+    private final AtomicLong overflows = new AtomicLong();
+    private volatile long head;
+    private volatile Thread waitingConsumer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param size           the number of slots, rounded up to the next power of two
+     * @param slotCapacity   the size, in bytes, of each slot, and so the longest line it holds
+     * @param overflowPolicy what to do when the buffer is full
+     * @param sampleRate     with {@link OverflowPolicy#SAMPLE}, keep one out of every
+     *                       {@code sampleRate} overflowing entries
+     */
+    public RequestLogRingBuffer(int size,
+                                int slotCapacity,
+                                OverflowPolicy overflowPolicy,
+                                int sampleRate) {
+        final int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        this.slots = new Slot[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot(slotCapacity);
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = Math.max(sampleRate, 1);
+    }
+
+    /**
+     * Encodes the given line into the next free slot.
+     *
+     * @param line the request log line
+     * @return {@code true} if the line was published, {@code false} if it was dropped
+     */
+    public boolean publish(CharSequence line) {
+        final long position = claim();
+        if (position < 0) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        final int index = (int) (position & mask);
+        if (!encode(slots[index], line)) {
+            truncated.incrementAndGet();
+        }
+        sequences.lazySet(index, position + 1);
+
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Passes up to {@code max} published entries to {@code handler}, in order. Must only be
+     * called from a single consumer thread.
+     *
+     * @param handler the entry handler
+     * @param max     the maximum number of entries to drain
+     * @return the number of entries drained
+     */
+    public int drain(SlotHandler handler, int max) {
+        int count = 0;
+        long position = head;
+        while (count < max) {
+            final int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            final Slot slot = slots[index];
+            handler.handle(slot.bytes, slot.length);
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+            count++;
+            this.head = position;
+        }
+        return count;
+    }
+
+    /**
+     * Parks the calling consumer thread until an entry is published or the timeout elapses.
+     *
+     * @param timeout the maximum amount of time to wait
+     * @param unit    the unit of {@code timeout}
+     */
+    public void awaitEntries(long timeout, TimeUnit unit) {
+        this.waitingConsumer = Thread.currentThread();
+        try {
+            if (isEmpty() && !closed) {
+                LockSupport.parkNanos(this, unit.toNanos(timeout));
+            }
+        } finally {
+            this.waitingConsumer = null;
+        }
+    }
+
+    /**
+     * Releases any producers blocked on a full buffer; from then on, overflowing entries are
+     * dropped regardless of the overflow policy.
+     */
+    public void close() {
+        this.closed = true;
+        final Thread consumer = waitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    public boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public int getDepth() {
+        return (int) Math.max(0, Math.min(tail.get() - head, slots.length));
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getTruncated() {
+        return truncated.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private long claim() {
+        boolean mayBlock = false;
+        boolean decided = false;
+        while (true) {
+            final long position = tail.get();
+            final long available = sequences.get((int) (position & mask)) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (available < 0) {
+                // the slot still holds an entry from the previous lap: the buffer is full
+                if (!decided) {
+                    mayBlock = shouldBlock();
+                    decided = true;
+                }
+                if (!mayBlock || closed) {
+                    return -1;
+                }
+                LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+            }
+            // otherwise another producer claimed this position first, so retry
+        }
+    }
+
+    private boolean shouldBlock() {
+        switch (overflowPolicy) {
+            case BLOCK:
+                return true;
+            case SAMPLE:
+                return overflows.incrementAndGet() % sampleRate == 0;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Encodes as much of the line as fits into the slot.
+     *
+     * @return {@code false} if the line was truncated
+     */
+    private static boolean encode(Slot slot, CharSequence line) {
+        if (RequestLogFormat.maxEncodedLength(line) <= slot.bytes.length) {
+            slot.length = RequestLogFormat.encode(line, slot.bytes);
+            return true;
+        }
+        final int chars = RequestLogFormat.encodableLength(line, slot.bytes.length);
+        slot.length = RequestLogFormat.encode(line, chars, slot.bytes);
+        return chars == line.length();
+    }
+}
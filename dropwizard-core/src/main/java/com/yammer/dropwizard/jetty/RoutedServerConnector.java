@@ -0,0 +1,47 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.concurrent.Executor;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * A {@link ServerConnector} which carries the handler its requests are routed to, so that
+ * {@link RoutingHandler} can find it without searching.
+ */
+public class RoutedServerConnector extends ServerConnector {
+    private Handler routedHandler;
+
+    public RoutedServerConnector(Server server,
+                                 @Nullable Executor executor,
+                                 @Nullable Scheduler scheduler,
+                                 @Nullable ByteBufferPool bufferPool,
+                                 int acceptors,
+                                 int selectors,
+                                 ConnectionFactory... factories) {
+        super(server, executor, scheduler, bufferPool, acceptors, selectors, factories);
+    }
+
+    /**
+     * Returns the handler requests from this connector are routed to, or {@code null} if it
+     * hasn't been added to a {@link RoutingHandler}.
+     */
+    @Nullable
+    public Handler getRoutedHandler() {
+        return routedHandler;
+    }
+
+    /**
+     * Sets the handler requests from this connector are routed to. This is set when the server
+     * is built, before the connector is started.
+     */
+    public void setRoutedHandler(Handler routedHandler) {
+        this.routedHandler = routedHandler;
+    }
+}
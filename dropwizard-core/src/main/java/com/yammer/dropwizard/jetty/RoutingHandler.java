@@ -1,7 +1,9 @@
 package com.yammer.dropwizard.jetty;
 
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -12,6 +14,13 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 
+/**
+ * Routes requests to a handler depending on the connector they were received on.
+ * <p>
+ * Each {@link RoutedServerConnector} is given its handler when the routing handler is built, so
+ * its requests are routed without a lookup; requests from other connectors fall back to a scan of
+ * the connectors. Several connectors may share a handler.
+ */
 public class RoutingHandler extends HandlerCollection {
   /**
    * We use an array of entries instead of a map here for performance reasons. We're only ever
@@ -36,9 +45,14 @@ public class RoutingHandler extends HandlerCollection {
     int i = 0;
     for (Map.Entry<Connector, Handler> entry : handlers.entrySet()) {
       this.entries[i++] = new Entry(entry.getKey(), entry.getValue());
+      if (entry.getKey() instanceof RoutedServerConnector) {
+        ((RoutedServerConnector) entry.getKey()).setRoutedHandler(entry.getValue());
+      }
       addBean(entry.getValue());
     }
-    setHandlers(handlers.values().toArray(new Handler[handlers.size()]));
+    // connectors can share a handler, but it should only be added once
+    final Set<Handler> distinct = new LinkedHashSet<Handler>(handlers.values());
+    setHandlers(distinct.toArray(new Handler[distinct.size()]));
   }
 
   @Override
@@ -47,6 +61,13 @@ public class RoutingHandler extends HandlerCollection {
                      HttpServletRequest request,
                      HttpServletResponse response) throws IOException, ServletException {
     final Connector connector = baseRequest.getHttpChannel().getConnector();
+    if (connector instanceof RoutedServerConnector) {
+      final Handler handler = ((RoutedServerConnector) connector).getRoutedHandler();
+      if (handler != null) {
+        handler.handle(target, baseRequest, request, response);
+        return;
+      }
+    }
     for (Entry entry : entries) {
       // reference equality works fine — none of the connectors implement #equals(Object)
       if (entry.connector == connector) {
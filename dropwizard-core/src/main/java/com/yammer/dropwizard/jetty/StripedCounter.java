@@ -0,0 +1,100 @@
+package com.yammer.dropwizard.jetty;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * A counter which spreads its updates over a number of cells, each on its own cache line, so
+ * threads incrementing and decrementing it concurrently don't all contend on a single
+ * {@link java.util.concurrent.atomic.AtomicLong}.
+ * <p>
+ * Each thread always updates the same cell, chosen by its id. Reading the count sums every cell,
+ * so it's more expensive than an update and is only a moment-in-time estimate while updates are
+ * in progress. It's registered as a {@link Gauge} because metrics 2.x's
+ * {@link com.yammer.metrics.core.Counter} can't be subclassed outside of its package.
+ */
+public class StripedCounter extends Gauge<Long> {
+    // 8 longs is 64 bytes, so no two cells share a cache line
+    private static final int PADDING = 8;
+
+    /**
+     * Registers a striped counter as a gauge, or returns the one already registered with the given
+     * name.
+     *
+     * @param registry the registry
+     * @param name     the name of the gauge
+     * @return the registered counter
+     * @throws ClassCastException if a metric other than a striped counter has the given name
+     */
+    public static StripedCounter register(MetricsRegistry registry, MetricName name) {
+        return (StripedCounter) registry.newGauge(name, new StripedCounter());
+    }
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    /**
+     * Creates a counter with a cell per available processor.
+     */
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a counter with the given number of cells.
+     *
+     * @param stripes the number of cells, rounded up to the next power of two
+     */
+    public StripedCounter(int stripes) {
+        final int size = Integer.highestOneBit(Math.max(stripes - 1, 1)) << 1;
+        this.cells = new AtomicLongArray(size * PADDING);
+        this.mask = size - 1;
+    }
+
+    public void inc() {
+        inc(1);
+    }
+
+    public void inc(long n) {
+        cells.getAndAdd(cell(), n);
+    }
+
+    public void dec() {
+        inc(-1);
+    }
+
+    public void dec(long n) {
+        inc(-n);
+    }
+
+    public long count() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    public void clear() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+
+    @Override
+    public Long value() {
+        return count();
+    }
+
+    private int cell() {
+        // spread sequential thread ids over the cells
+        long id = Thread.currentThread().getId();
+        id ^= id >>> 16;
+        id *= 0x85ebca6bL;
+        id ^= id >>> 13;
+        return ((int) id & mask) * PADDING;
+    }
+}
@@ -0,0 +1,281 @@
+package com.yammer.dropwizard.jetty;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.util.RatioGauge;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link ThreadPool} which runs each job on its own virtual thread, for JDKs which support them.
+ * <p>
+ * At most {@code maxConcurrency} jobs run at once; further jobs wait in a queue of at most
+ * {@code maxQueued} jobs (or an unbounded one, if it's negative) and are run by the next thread to
+ * finish its job. Jobs beyond that are rejected. The connectors' acceptors and selectors also run
+ * on the pool, and each holds one of its slots for as long as the connector is running.
+ * <p>
+ * The pool reports the same {@code utilization}, {@code utilization-max}, {@code size} and
+ * {@code jobs} gauges as {@link InstrumentedQueuedThreadPool}. As a virtual thread only exists
+ * while it's running a job, both utilization gauges are the fraction of {@code maxConcurrency}
+ * in use, and the size is the number of running jobs.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreadPool.class);
+
+    @Nullable
+    private static final Method NEW_VIRTUAL_THREAD_FACTORY = findVirtualThreadFactory();
+
+    @Nullable
+    private static Method findVirtualThreadFactory() {
+        try {
+            final Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            final Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            final Method factory = builder.getMethod("factory");
+            // make sure the JDK will actually let us create them
+            factory.invoke(ofVirtual.invoke(null));
+            return ofVirtual;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the running JDK supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_FACTORY != null;
+    }
+
+    private static ThreadFactory newVirtualThreadFactory(String prefix) {
+        checkState(isSupported(), "virtual threads are not supported by this JDK");
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object builder = builderClass.getMethod("name", String.class, long.class)
+                                               .invoke(NEW_VIRTUAL_THREAD_FACTORY.invoke(null), prefix, 0L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            throw new IllegalStateException("unable to create virtual threads", e);
+        }
+    }
+
+    private class Worker implements Runnable {
+        private Runnable job;
+
+        private Worker(Runnable job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            final Thread thread = Thread.currentThread();
+            threads.add(thread);
+            try {
+                while (job != null) {
+                    try {
+                        job.run();
+                    } catch (Throwable e) {
+                        LOGGER.warn("Error running job", e);
+                    }
+                    // take over a queued job rather than freeing the slot
+                    job = isRunning() ? queue.poll() : null;
+                    if (job != null) {
+                        queued.decrementAndGet();
+                    }
+                }
+            } finally {
+                threads.remove(thread);
+                release();
+                // a job may have been queued while we were giving up the slot
+                drainQueue();
+            }
+        }
+    }
+
+    private final MetricsRegistry metricsRegistry;
+    private final int maxConcurrency;
+    private final int maxQueued;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private String name = "dw";
+    private ThreadFactory threadFactory;
+
+    /**
+     * Creates a new pool.
+     *
+     * @param registry       the metrics registry
+     * @param maxConcurrency the maximum number of jobs run at once
+     * @param maxQueued      the maximum number of jobs waiting to run, or -1 for no limit
+     */
+    public VirtualThreadPool(MetricsRegistry registry, int maxConcurrency, int maxQueued) {
+        checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+        this.metricsRegistry = registry;
+        this.maxConcurrency = maxConcurrency;
+        this.maxQueued = maxQueued;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        checkState(!isRunning(), "the pool is running");
+        this.name = name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void execute(Runnable job) {
+        if (!isRunning()) {
+            throw new RejectedExecutionException("the pool is not running");
+        }
+        if (tryAcquire()) {
+            startThread(job);
+            return;
+        }
+
+        if (maxQueued >= 0 && queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            throw new RejectedExecutionException("the pool's queue is full");
+        } else if (maxQueued < 0) {
+            queued.incrementAndGet();
+        }
+        queue.offer(job);
+
+        // a slot may have been freed while we were queueing
+        drainQueue();
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public int getThreads() {
+        return active.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return maxConcurrency - active.get();
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return active.get() >= maxConcurrency && queued.get() > 0;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        this.threadFactory = newVirtualThreadFactory(name + "-");
+        super.doStart();
+        metricsRegistry.newGauge(QueuedThreadPool.class, "utilization", new RatioGauge() {
+            @Override
+            protected double getNumerator() {
+                return active.get();
+            }
+
+            @Override
+            protected double getDenominator() {
+                return maxConcurrency;
+            }
+        });
+        metricsRegistry.newGauge(QueuedThreadPool.class, "utilization-max", new RatioGauge() {
+            @Override
+            protected double getNumerator() {
+                return active.get();
+            }
+
+            @Override
+            protected double getDenominator() {
+                return maxConcurrency;
+            }
+        });
+        metricsRegistry.newGauge(QueuedThreadPool.class, "size", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return active.get();
+            }
+        });
+        metricsRegistry.newGauge(QueuedThreadPool.class, "jobs", new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return queued.get();
+            }
+        });
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        queue.clear();
+        queued.set(0);
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        stopped.countDown();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            final int current = active.get();
+            if (current >= maxConcurrency) {
+                return false;
+            }
+            if (active.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release() {
+        active.decrementAndGet();
+    }
+
+    private void drainQueue() {
+        while (isRunning() && !queue.isEmpty() && tryAcquire()) {
+            final Runnable next = queue.poll();
+            if (next == null) {
+                release();
+                return;
+            }
+            queued.decrementAndGet();
+            startThread(next);
+        }
+    }
+
+    private void startThread(Runnable job) {
+        try {
+            threadFactory.newThread(new Worker(job)).start();
+        } catch (RuntimeException e) {
+            release();
+            throw e;
+        }
+    }
+}
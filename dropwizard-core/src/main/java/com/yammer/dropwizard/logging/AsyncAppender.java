@@ -1,25 +1,103 @@
 package com.yammer.dropwizard.logging;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import ch.qos.logback.core.encoder.Encoder;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Queues;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
-public class AsyncAppender extends AppenderBase<ILoggingEvent> implements Runnable {
+import static com.yammer.dropwizard.config.LoggingConfiguration.AsyncConfiguration;
+
+/**
+ * An appender which hands events off to a dispatcher thread, which passes them to a delegate
+ * appender in batches.
+ * <p>
+ * By default the queue between callers and the dispatcher is unbounded. With a bounded queue,
+ * events below {@code WARN} are discarded once the queue is fuller than the discarding
+ * threshold, and callers either wait for room or, if configured never to block, discard the
+ * event. When the appender is stopped, the dispatcher drains the queue for up to the shutdown
+ * timeout before the delegate is stopped.
+ * <p>
+ * If batched writes are enabled and the delegate is an {@link OutputStreamAppender} with a
+ * layout, its encoder is replaced with a {@link BatchingEncoder}, so each dispatched batch is
+ * written to the delegate's stream with a single write and flush, or held for up to the maximum
+ * flush latency to be combined with the following batches.
+ */
+public class AsyncAppender extends UnsynchronizedAppenderBase<ILoggingEvent> implements Runnable {
     private static final int BATCH_SIZE = 1000;
+    private static final long POLL_MILLIS = 100;
 
     public static Appender<ILoggingEvent> wrap(Appender<ILoggingEvent> delegate) {
-        final AsyncAppender appender = new AsyncAppender(delegate);
+        return wrap(delegate, new AsyncConfiguration(), null, null);
+    }
+
+    /**
+     * Wraps the given appender in a started {@link AsyncAppender}.
+     *
+     * @param delegate the appender to which events are dispatched
+     * @param config   the queue configuration
+     * @param name     the name used as the scope of the appender's metrics
+     * @param metrics  the registry for the appender's metrics, or {@code null}
+     * @return a started {@link AsyncAppender}
+     */
+    public static Appender<ILoggingEvent> wrap(Appender<ILoggingEvent> delegate,
+                                               AsyncConfiguration config,
+                                               @Nullable String name,
+                                               @Nullable MetricsRegistry metrics) {
+        final BatchingEncoder<ILoggingEvent> encoder = config.isBatchWrites() ?
+                installBatchingEncoder(delegate, (int) config.getMaxBatchSize().toBytes()) : null;
+        final AsyncAppender appender = new AsyncAppender(delegate,
+                                                         config.getQueueSize(),
+                                                         config.getDiscardingThreshold(),
+                                                         config.isNeverBlock(),
+                                                         config.getShutdownTimeout().toMilliseconds(),
+                                                         encoder,
+                                                         config.getMaxFlushLatency().toNanoseconds());
+        if (metrics != null) {
+            appender.instrument(metrics, name);
+        }
         appender.start();
         return appender;
     }
 
+    @Nullable
+    private static BatchingEncoder<ILoggingEvent> installBatchingEncoder(Appender<ILoggingEvent> delegate,
+                                                                        int maxBatchSize) {
+        if (delegate instanceof OutputStreamAppender) {
+            final OutputStreamAppender<ILoggingEvent> appender = (OutputStreamAppender<ILoggingEvent>) delegate;
+            final Encoder<ILoggingEvent> encoder = appender.getEncoder();
+            if (encoder instanceof LayoutWrappingEncoder) {
+                final BatchingEncoder<ILoggingEvent> batchingEncoder =
+                        new BatchingEncoder<ILoggingEvent>(((LayoutWrappingEncoder<ILoggingEvent>) encoder).getLayout(),
+                                                           maxBatchSize);
+                batchingEncoder.setContext(appender.getContext());
+                batchingEncoder.start();
+
+                appender.stop();
+                appender.setEncoder(batchingEncoder);
+                appender.start();
+                return batchingEncoder;
+            }
+        }
+        return null;
+    }
+
     private static final ThreadFactory THREAD_FACTORY =
             new ThreadFactoryBuilder().setNameFormat("async-log-appender-%d")
                                       .setDaemon(true)
@@ -29,20 +107,97 @@ public class AsyncAppender extends AppenderBase<ILoggingEvent> implements Runnab
     private final BlockingQueue<ILoggingEvent> queue;
     private final List<ILoggingEvent> batch;
     private final Thread dispatcher;
+    private final int discardingCapacity;
+    private final boolean neverBlock;
+    private final long shutdownTimeoutMillis;
+    @Nullable
+    private final BatchingEncoder<ILoggingEvent> encoder;
+    private final long pollMillis;
+    private final long maxFlushLatencyNanos;
     private volatile boolean running;
+    @Nullable
+    private Meter discarded;
+    @Nullable
+    private MetricsRegistry metrics;
+    @Nullable
+    private MetricName queueDepthName;
+    @Nullable
+    private Gauge<Integer> queueDepth;
 
-    private AsyncAppender(Appender<ILoggingEvent> delegate) {
+    private AsyncAppender(Appender<ILoggingEvent> delegate,
+                          int queueSize,
+                          int discardingThreshold,
+                          boolean neverBlock,
+                          long shutdownTimeoutMillis,
+                          @Nullable BatchingEncoder<ILoggingEvent> encoder,
+                          long maxFlushLatencyNanos) {
         this.delegate = delegate;
-        this.queue = Queues.newLinkedBlockingQueue();
+        if (queueSize > 0) {
+            this.queue = Queues.newArrayBlockingQueue(queueSize);
+            // discard low-priority events once the remaining capacity falls below this
+            this.discardingCapacity = discardingThreshold > 0 ?
+                    (int) (queueSize * (100L - discardingThreshold) / 100) : -1;
+        } else {
+            this.queue = Queues.newLinkedBlockingQueue();
+            this.discardingCapacity = -1;
+        }
+        this.neverBlock = neverBlock;
+        this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+        this.encoder = encoder;
+        this.maxFlushLatencyNanos = maxFlushLatencyNanos;
+        // with no flush latency every batch is written as soon as it is dispatched
+        this.pollMillis = (encoder == null || maxFlushLatencyNanos <= 0) ? POLL_MILLIS :
+                Math.max(1, Math.min(POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(maxFlushLatencyNanos)));
         this.batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
         this.dispatcher = THREAD_FACTORY.newThread(this);
         setContext(delegate.getContext());
     }
 
+    private void instrument(MetricsRegistry metrics, @Nullable String scope) {
+        // the registry returns an existing gauge of the same name, which would still report the
+        // queue of the appender this one replaces, so the newest appender's gauge always wins
+        final MetricName name = new MetricName(AsyncAppender.class, "queue-depth", scope);
+        metrics.removeMetric(name);
+        this.queueDepth = metrics.newGauge(name, new Gauge<Integer>() {
+            @Override
+            public Integer value() {
+                return queue.size();
+            }
+        });
+        this.metrics = metrics;
+        this.queueDepthName = name;
+        this.discarded = metrics.newMeter(AsyncAppender.class, "discarded", scope, "events", TimeUnit.SECONDS);
+    }
+
     @Override
     protected void append(ILoggingEvent eventObject) {
+        if (queue.remainingCapacity() < discardingCapacity &&
+                !eventObject.getLevel().isGreaterOrEqual(Level.WARN)) {
+            discard();
+            return;
+        }
+
+        // only pay for capturing the caller's state once we know the event will be kept
         eventObject.prepareForDeferredProcessing();
-        queue.add(eventObject);
+
+        if (neverBlock) {
+            if (!queue.offer(eventObject)) {
+                discard();
+            }
+        } else {
+            try {
+                queue.put(eventObject);
+            } catch (InterruptedException e) {
+                discard();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void discard() {
+        if (discarded != null) {
+            discarded.mark();
+        }
     }
 
     @Override
@@ -56,22 +211,52 @@ public class AsyncAppender extends AppenderBase<ILoggingEvent> implements Runnab
     public void stop() {
         this.running = false;
         super.stop();
+        try {
+            dispatcher.join(shutdownTimeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (dispatcher.isAlive()) {
+            addWarn("Unable to flush " + queue.size() + " queued events within " +
+                            shutdownTimeoutMillis + "ms");
+        }
+        delegate.stop();
+
+        // unless a newer appender has already replaced it
+        if (metrics != null && metrics.allMetrics().get(queueDepthName) == queueDepth) {
+            metrics.removeMetric(queueDepthName);
+        }
     }
 
     @Override
     public void run() {
-        while (running) {
+        while (running || !queue.isEmpty()) {
             try {
-                batch.add(queue.take());
-                queue.drainTo(batch, BATCH_SIZE - 1);
+                final ILoggingEvent first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, BATCH_SIZE - 1);
 
-                for (ILoggingEvent event : batch) {
-                    delegate.doAppend(event);
-                }
+                    for (ILoggingEvent event : batch) {
+                        delegate.doAppend(event);
+                    }
 
-                batch.clear();
+                    batch.clear();
+                }
+                flushBatch();
             } catch (InterruptedException ignored) {
                 Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flushBatch() {
+        if (encoder != null) {
+            try {
+                encoder.flushIfOlderThan(maxFlushLatencyNanos);
+            } catch (IOException e) {
+                addError("Unable to write batch", e);
             }
         }
     }
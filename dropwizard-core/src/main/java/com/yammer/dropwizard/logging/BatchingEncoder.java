@@ -0,0 +1,102 @@
+package com.yammer.dropwizard.logging;
+
+import ch.qos.logback.core.Layout;
+import ch.qos.logback.core.encoder.EncoderBase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * An encoder which lays out events into an in-memory buffer and writes the whole buffer to the
+ * appender's output stream in a single write, followed by a single flush.
+ * <p>
+ * The buffer is written when it grows past its maximum size, when {@link #flush()} or
+ * {@link #flushIfOlderThan(long)} is called (which {@link AsyncAppender} does after each batch it
+ * dispatches), and before the appender closes or rolls over its output stream.
+ *
+ * @param <E> the event type
+ */
+public class BatchingEncoder<E> extends EncoderBase<E> {
+    private final Layout<E> layout;
+    private final Charset charset;
+    private final int maxBufferSize;
+    private final ByteArrayOutputStream buffer;
+    private long firstBufferedAt;
+
+    /**
+     * Creates a new batching encoder.
+     *
+     * @param layout        the layout used to format each event
+     * @param maxBufferSize the number of buffered bytes at which the buffer is written out
+     */
+    public BatchingEncoder(Layout<E> layout, int maxBufferSize) {
+        this.layout = layout;
+        // the same charset LayoutWrappingEncoder uses when none is configured
+        this.charset = Charset.defaultCharset();
+        this.maxBufferSize = maxBufferSize;
+        this.buffer = new ByteArrayOutputStream(maxBufferSize);
+    }
+
+    public Layout<E> getLayout() {
+        return layout;
+    }
+
+    @Override
+    public synchronized void init(OutputStream os) throws IOException {
+        super.init(os);
+    }
+
+    @Override
+    public synchronized void doEncode(E event) throws IOException {
+        if (buffer.size() == 0) {
+            this.firstBufferedAt = System.nanoTime();
+        }
+        buffer.write(layout.doLayout(event).getBytes(charset));
+        if (buffer.size() >= maxBufferSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes and flushes the buffer if its oldest content was buffered at least
+     * {@code maxLatencyNanos} ago.
+     *
+     * @param maxLatencyNanos the maximum amount of time, in nanoseconds, to hold buffered bytes
+     * @throws IOException if the buffer cannot be written
+     */
+    public synchronized void flushIfOlderThan(long maxLatencyNanos) throws IOException {
+        if (buffer.size() > 0 && (System.nanoTime() - firstBufferedAt) >= maxLatencyNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffer to the output stream in a single write and flushes the stream.
+     *
+     * @throws IOException if the buffer cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (outputStream == null || buffer.size() == 0) {
+            return;
+        }
+        try {
+            buffer.writeTo(outputStream);
+            outputStream.flush();
+        } finally {
+            buffer.reset();
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return buffer.size() == 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // the appender closes the stream right after this, e.g. when rolling over
+        flush();
+        this.outputStream = null;
+    }
+}
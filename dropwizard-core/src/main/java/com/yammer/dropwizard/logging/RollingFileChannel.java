@@ -0,0 +1,354 @@
+package com.yammer.dropwizard.logging;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A {@link FileChannel}-backed log file which is rolled over on time boundaries, following the
+ * same conventions as Logback's {@code TimeBasedRollingPolicy}: the archive file name pattern
+ * must contain a {@code %d} or {@code %d{date-format}} token (which defaults to
+ * {@code yyyy-MM-dd}), the smallest unit in the date format determines how often the file is
+ * rolled, and archives whose names end in {@code .gz} or {@code .zip} are compressed.
+ * <p>
+ * Not thread-safe: all writes are expected to come from a single writer thread. Compression of
+ * rolled files happens on a separate daemon thread so it never stalls the writer.
+ */
+public class RollingFileChannel implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollingFileChannel.class);
+    private static final Pattern DATE_TOKEN = Pattern.compile("%d(\\{([^}]+)\\})?");
+    private static final String DEFAULT_DATE_FORMAT = "yyyy-MM-dd";
+
+    private final File currentFile;
+    @Nullable
+    private final String archivePattern;
+    private final int archivedFileCount;
+    private final TimeZone timeZone;
+    @Nullable
+    private final SimpleDateFormat dateFormat;
+    private final int rolloverField;
+    private final ExecutorService compressor;
+
+    private FileChannel channel;
+    private long periodStart;
+    private long nextRollover = Long.MAX_VALUE;
+
+    /**
+     * Creates a new rolling file channel.
+     *
+     * @param currentLogFilename         the file to which entries are written
+     * @param archivedLogFilenamePattern the pattern for archived files, or {@code null} if the
+     *                                   file should never be rolled
+     * @param archivedFileCount          the maximum number of archived files to keep
+     * @param timeZone                   the time zone used to determine rollover boundaries
+     */
+    public RollingFileChannel(String currentLogFilename,
+                              @Nullable String archivedLogFilenamePattern,
+                              int archivedFileCount,
+                              TimeZone timeZone) {
+        this.currentFile = new File(currentLogFilename);
+        this.archivePattern = archivedLogFilenamePattern;
+        this.archivedFileCount = archivedFileCount;
+        this.timeZone = timeZone;
+
+        if (archivedLogFilenamePattern == null) {
+            this.dateFormat = null;
+            this.rolloverField = -1;
+        } else {
+            final Matcher matcher = DATE_TOKEN.matcher(archivedLogFilenamePattern);
+            checkArgument(matcher.find(), "archive pattern must contain %d: %s", archivedLogFilenamePattern);
+            final String format = matcher.group(2) == null ? DEFAULT_DATE_FORMAT : matcher.group(2);
+            this.dateFormat = new SimpleDateFormat(format, Locale.US);
+            dateFormat.setTimeZone(timeZone);
+            this.rolloverField = rolloverField(format);
+        }
+
+        this.compressor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("log-compressor-%d")
+                                          .setDaemon(true)
+                                          .build());
+    }
+
+    /**
+     * Opens the current log file for appending.
+     *
+     * @param now the current time, in milliseconds
+     * @throws IOException if the file cannot be opened
+     */
+    public void open(long now) throws IOException {
+        final File parent = currentFile.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+
+        if (dateFormat != null) {
+            // like Logback, a file left over from a previous period is rolled on the first write
+            final long lastModified = currentFile.exists() ? currentFile.lastModified() : now;
+            this.periodStart = truncate(Math.min(lastModified, now));
+            this.nextRollover = next(periodStart);
+        }
+
+        this.channel = new FileOutputStream(currentFile, true).getChannel();
+    }
+
+    /**
+     * Writes the buffer's remaining bytes to the file, rolling it over first if a time boundary
+     * has passed.
+     *
+     * @param buffer the bytes to write
+     * @param time   the time the bytes were logged, in milliseconds, which decides the period
+     *               they belong to
+     * @throws IOException if the bytes cannot be written
+     */
+    public void write(ByteBuffer buffer, long time) throws IOException {
+        if (time >= nextRollover) {
+            rollover(time);
+        }
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            compressor.shutdown();
+            try {
+                compressor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void rollover(long now) throws IOException {
+        channel.close();
+
+        final String archiveName = archiveName(periodStart);
+        final boolean gzip = archiveName.endsWith(".gz");
+        final boolean zip = archiveName.endsWith(".zip");
+        final File archive = new File(archiveName);
+        final File renamed = (gzip || zip) ? new File(archiveName + ".tmp") : archive;
+
+        final File parent = archive.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            LOGGER.warn("Unable to create {}", parent);
+        }
+
+        if (!currentFile.renameTo(renamed)) {
+            LOGGER.warn("Unable to rename {} to {}", currentFile, renamed);
+        }
+
+        this.periodStart = truncate(now);
+        this.nextRollover = next(periodStart);
+        this.channel = new FileOutputStream(currentFile, true).getChannel();
+
+        compressor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (gzip || zip) {
+                        compress(renamed, archive, zip);
+                    }
+                    deleteOldArchives();
+                } catch (IOException e) {
+                    LOGGER.warn("Unable to archive {}", renamed, e);
+                }
+            }
+        });
+    }
+
+    private String archiveName(long time) {
+        final Matcher matcher = DATE_TOKEN.matcher(archivePattern);
+        return matcher.replaceFirst(Matcher.quoteReplacement(dateFormat.format(new Date(time))));
+    }
+
+    private void compress(File source, File target, boolean zip) throws IOException {
+        final InputStream input = new FileInputStream(source);
+        try {
+            final OutputStream output;
+            if (zip) {
+                final ZipOutputStream zipOutput = new ZipOutputStream(new FileOutputStream(target));
+                zipOutput.putNextEntry(new ZipEntry(currentFile.getName()));
+                output = zipOutput;
+            } else {
+                output = new GZIPOutputStream(new FileOutputStream(target), 64 * 1024);
+            }
+            try {
+                ByteStreams.copy(input, output);
+            } finally {
+                output.close();
+            }
+        } finally {
+            Closeables.closeQuietly(input);
+        }
+
+        if (!source.delete()) {
+            LOGGER.warn("Unable to delete {}", source);
+        }
+    }
+
+    private void deleteOldArchives() {
+        // the date format may contain slashes, so archives can be in directories of their own:
+        // match paths relative to the last directory before the first date token
+        final String pattern = new File(archivePattern).getAbsolutePath().replace(File.separatorChar, '/');
+        final Matcher token = DATE_TOKEN.matcher(pattern);
+        if (!token.find()) {
+            return;
+        }
+        final int root = pattern.lastIndexOf('/', token.start());
+        final File directory = new File(pattern.substring(0, root + 1));
+        final String relative = pattern.substring(root + 1);
+        final Pattern archiveFiles = archiveFilePattern(relative);
+
+        final List<File> found = Lists.newArrayList();
+        findArchives(directory, "", CharMatcher.is('/').countIn(relative), archiveFiles, found);
+
+        final File[] archives = found.toArray(new File[found.size()]);
+        Arrays.sort(archives, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                final long x = b.lastModified();
+                final long y = a.lastModified();
+                return (x < y) ? -1 : ((x == y) ? 0 : 1);
+            }
+        });
+
+        for (int i = archivedFileCount; i < archives.length; i++) {
+            if (!archives[i].delete()) {
+                LOGGER.warn("Unable to delete {}", archives[i]);
+                continue;
+            }
+            // remove the directories which only held the deleted archive
+            File parent = archives[i].getParentFile();
+            while (parent != null && !parent.equals(directory) && parent.delete()) {
+                parent = parent.getParentFile();
+            }
+        }
+    }
+
+    private static void findArchives(File directory,
+                                     String prefix,
+                                     int depth,
+                                     Pattern archiveFiles,
+                                     List<File> found) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            final String path = prefix + file.getName();
+            if (file.isDirectory()) {
+                if (depth > 0) {
+                    findArchives(file, path + '/', depth - 1, archiveFiles, found);
+                }
+            } else if (archiveFiles.matcher(path).matches()) {
+                found.add(file);
+            }
+        }
+    }
+
+    private static Pattern archiveFilePattern(String path) {
+        final Matcher matcher = DATE_TOKEN.matcher(path);
+        final StringBuilder regex = new StringBuilder();
+        int last = 0;
+        while (matcher.find()) {
+            regex.append(Pattern.quote(path.substring(last, matcher.start()))).append(".+");
+            last = matcher.end();
+        }
+        regex.append(Pattern.quote(path.substring(last)));
+        return Pattern.compile(regex.toString());
+    }
+
+    private static int rolloverField(String format) {
+        final String letters = format.replaceAll("'[^']*'", "");
+        if (letters.contains("m")) {
+            return Calendar.MINUTE;
+        }
+        if (letters.contains("H") || letters.contains("h") || letters.contains("k") || letters.contains("K")) {
+            return Calendar.HOUR_OF_DAY;
+        }
+        if (letters.contains("d") || letters.contains("D") || letters.contains("E")) {
+            return Calendar.DAY_OF_MONTH;
+        }
+        if (letters.contains("w") || letters.contains("W")) {
+            return Calendar.WEEK_OF_YEAR;
+        }
+        if (letters.contains("M")) {
+            return Calendar.MONTH;
+        }
+        return Calendar.YEAR;
+    }
+
+    private long truncate(long time) {
+        final Calendar calendar = Calendar.getInstance(timeZone, Locale.US);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.MILLISECOND, 0);
+        calendar.set(Calendar.SECOND, 0);
+        if (rolloverField == Calendar.MINUTE) {
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.MINUTE, 0);
+        if (rolloverField == Calendar.HOUR_OF_DAY) {
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        if (rolloverField == Calendar.DAY_OF_MONTH) {
+            return calendar.getTimeInMillis();
+        }
+        if (rolloverField == Calendar.WEEK_OF_YEAR) {
+            calendar.set(Calendar.DAY_OF_WEEK, calendar.getFirstDayOfWeek());
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        if (rolloverField == Calendar.MONTH) {
+            return calendar.getTimeInMillis();
+        }
+        calendar.set(Calendar.MONTH, Calendar.JANUARY);
+        return calendar.getTimeInMillis();
+    }
+
+    private long next(long start) {
+        final Calendar calendar = Calendar.getInstance(timeZone, Locale.US);
+        calendar.setTimeInMillis(start);
+        calendar.add(rolloverField, 1);
+        return calendar.getTimeInMillis();
+    }
+}
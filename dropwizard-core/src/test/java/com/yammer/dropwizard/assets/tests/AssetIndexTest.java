@@ -0,0 +1,78 @@
+package com.yammer.dropwizard.assets.tests;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Resources;
+import com.yammer.dropwizard.assets.AssetIndex;
+import com.yammer.dropwizard.util.Size;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AssetIndexTest {
+    private final AssetIndex index;
+
+    public AssetIndexTest() throws Exception {
+        this.index = AssetIndex.scan("/assets/", "index.htm", Size.megabytes(1));
+    }
+
+    @Test
+    public void indexesFiles() throws Exception {
+        final AssetIndex.Entry entry = index.get("example.txt");
+
+        assertThat(entry.getURL())
+                .isEqualTo(Resources.getResource("assets/example.txt"));
+        assertThat(entry.getLength())
+                .isEqualTo(11);
+        assertThat(entry.getMimeType())
+                .isEqualTo("text/plain");
+        assertThat(entry.getETag())
+                .isEqualTo(Hashing.murmur3_128()
+                                  .hashBytes(Resources.toByteArray(entry.getURL()))
+                                  .toString());
+    }
+
+    @Test
+    public void indexesFilesInDirectories() throws Exception {
+        assertThat(index.get("some_directory/example.txt"))
+                .isNotNull();
+    }
+
+    @Test
+    public void resolvesDirectoriesToTheirIndexFiles() throws Exception {
+        assertThat(index.get("").getURL())
+                .isEqualTo(Resources.getResource("assets/index.htm"));
+        assertThat(index.get("some_directory").getURL())
+                .isEqualTo(Resources.getResource("assets/some_directory/index.htm"));
+    }
+
+    @Test
+    public void doesNotResolveDirectoriesWithoutAnIndexFile() throws Exception {
+        final AssetIndex noIndex = AssetIndex.scan("/assets/", null, Size.megabytes(1));
+
+        assertThat(noIndex.get("some_directory"))
+                .isNull();
+    }
+
+    @Test
+    public void doesNotHaveMissingFiles() throws Exception {
+        assertThat(index.get("doesnotexist.txt"))
+                .isNull();
+    }
+
+    @Test
+    public void findsPrecompressedCopies() throws Exception {
+        assertThat(index.get("compressible.txt").getGzippedURL())
+                .isEqualTo(Resources.getResource("assets/compressible.txt.gz"));
+        assertThat(index.get("example.txt").getGzippedURL())
+                .isNull();
+    }
+
+    @Test
+    public void usesTheStreamingETagsForLargeFiles() throws Exception {
+        final AssetIndex streaming = AssetIndex.scan("/assets/", "index.htm", Size.bytes(1));
+        final AssetIndex.Entry entry = streaming.get("example.txt");
+
+        assertThat(entry.getETag())
+                .isEqualTo(Long.toHexString(entry.getLastModifiedTime()) + "-b");
+    }
+}
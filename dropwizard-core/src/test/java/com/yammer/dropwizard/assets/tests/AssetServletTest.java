@@ -1,6 +1,12 @@
 package com.yammer.dropwizard.assets.tests;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletConfig;
 
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.http.MimeTypes;
@@ -9,14 +15,25 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Resources;
 import com.google.common.net.HttpHeaders;
+import com.yammer.dropwizard.assets.AssetIndex;
 import com.yammer.dropwizard.assets.AssetServlet;
+import com.yammer.dropwizard.util.Size;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
 
 public class AssetServletTest {
     private static final String DUMMY_SERVLET = "/dummy_servlet/";
     private static final String NOINDEX_SERVLET = "/noindex_servlet/";
     private static final String NOCHARSET_SERVLET = "/nocharset_servlet/";
     private static final String ROOT_SERVLET = "/";
+    private static final String STREAMING_SERVLET = "/streaming_servlet/";
+    private static final String INDEXED_SERVLET = "/indexed_servlet/";
     private static final String RESOURCE_PATH = "/assets";
 
     // ServletTester expects to be able to instantiate the servlet with zero arguments
@@ -49,6 +66,20 @@ public class AssetServletTest {
         }
     }
 
+    public static class StreamingAssetServlet extends AssetServlet {
+        public StreamingAssetServlet() {
+            super(RESOURCE_PATH, STREAMING_SERVLET, null);
+            setStreamingThreshold(Size.bytes(100));
+        }
+    }
+
+    public static class IndexedAssetServlet extends AssetServlet {
+        public IndexedAssetServlet() throws Exception {
+            super(RESOURCE_PATH, INDEXED_SERVLET, "index.htm");
+            setIndex(AssetIndex.scan(RESOURCE_PATH, "index.htm", getStreamingThreshold()));
+        }
+    }
+
     private final ServletTester servletTester = new ServletTester();
     private final HttpTester.Request request = HttpTester.newRequest();
     private HttpTester.Response response;
@@ -59,6 +90,8 @@ public class AssetServletTest {
         servletTester.addServlet(NoIndexAssetServlet.class, NOINDEX_SERVLET + '*');
         servletTester.addServlet(NoCharsetAssetServlet.class, NOCHARSET_SERVLET + '*');
         servletTester.addServlet(RootAssetServlet.class, ROOT_SERVLET + '*');
+        servletTester.addServlet(StreamingAssetServlet.class, STREAMING_SERVLET + '*');
+        servletTester.addServlet(IndexedAssetServlet.class, INDEXED_SERVLET + '*');
         servletTester.start();
 
         request.setMethod("GET");
@@ -293,4 +326,215 @@ public class AssetServletTest {
         assertThat(response.getStatus())
                 .isEqualTo(404);
     }
+
+    @Test
+    public void servesGzippedAssetsWhenAccepted() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        final String identityEtag = response.get(HttpHeaders.ETAG);
+        final String identityContent = response.getContent();
+
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING))
+                .isEqualTo("gzip");
+        assertThat(response.get(HttpHeaders.VARY))
+                .isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(response.get(HttpHeaders.ETAG))
+                .isNotEqualTo(identityEtag);
+        assertThat(gunzip(response.getContentBytes()))
+                .isEqualTo(identityContent);
+    }
+
+    @Test
+    public void doesNotServeGzippedAssetsWhenRefused() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, identity");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING))
+                .isNull();
+        assertThat(response.getContent())
+                .startsWith("line 0 of a compressible asset");
+    }
+
+    @Test
+    public void doesNotGzipSmallAssets() throws Exception {
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING))
+                .isNull();
+        assertThat(response.get(HttpHeaders.VARY))
+                .isNull();
+        assertThat(response.getContent())
+                .isEqualTo("HELLO THERE");
+    }
+
+    @Test
+    public void servesByteRanges() throws Exception {
+        request.setHeader(HttpHeaders.RANGE, "bytes=0-4");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(206);
+        assertThat(response.get(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes 0-4/11");
+        assertThat(response.getContent())
+                .isEqualTo("HELLO");
+    }
+
+    @Test
+    public void servesSuffixByteRanges() throws Exception {
+        request.setHeader(HttpHeaders.RANGE, "bytes=-5");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(206);
+        assertThat(response.getContent())
+                .isEqualTo("THERE");
+    }
+
+    @Test
+    public void rejectsUnsatisfiableByteRanges() throws Exception {
+        request.setHeader(HttpHeaders.RANGE, "bytes=20-");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(416);
+        assertThat(response.get(HttpHeaders.CONTENT_RANGE))
+                .isEqualTo("bytes */11");
+    }
+
+    @Test
+    public void servesTheWholeAssetIfTheRangeIsStale() throws Exception {
+        request.setHeader(HttpHeaders.RANGE, "bytes=0-4");
+        request.setHeader(HttpHeaders.IF_RANGE, "not-the-etag");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.getContent())
+                .isEqualTo("HELLO THERE");
+    }
+
+    @Test
+    public void streamsLargeAssets() throws Exception {
+        request.setURI(DUMMY_SERVLET + "compressible.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        final String content = response.getContent();
+
+        request.setURI(STREAMING_SERVLET + "compressible.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING))
+                .isNull();
+        assertThat(response.getContent())
+                .isEqualTo(content);
+
+        request.setHeader(HttpHeaders.RANGE, "bytes=5-10");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.getStatus())
+                .isEqualTo(206);
+        assertThat(response.getContent())
+                .isEqualTo(content.substring(5, 11));
+    }
+
+    @Test
+    public void servesIndexedAssets() throws Exception {
+        request.setURI(INDEXED_SERVLET + "example.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        assertThat(response.getContent())
+                .isEqualTo("HELLO THERE");
+
+        request.setURI(INDEXED_SERVLET + "some_directory");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getContent())
+                .contains("/assets/some_directory Index File");
+
+        request.setURI(INDEXED_SERVLET + "doesnotexist.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus())
+                .isEqualTo(404);
+    }
+
+    @Test
+    public void answersConditionalRequestsFromTheIndex() throws Exception {
+        request.setURI(INDEXED_SERVLET + "example.txt");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        final String eTag = response.get(HttpHeaders.ETAG);
+
+        request.setHeader(HttpHeaders.IF_NONE_MATCH, eTag);
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+        assertThat(response.getStatus())
+                .isEqualTo(304);
+    }
+
+    @Test
+    public void servesPrecompressedCopiesOfIndexedAssets() throws Exception {
+        request.setURI(INDEXED_SERVLET + "compressible.txt");
+        request.setHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        response = HttpTester.parseResponse(servletTester.getResponses(request.generate()));
+
+        assertThat(response.get(HttpHeaders.CONTENT_ENCODING))
+                .isEqualTo("gzip");
+        assertThat(response.getContentBytes())
+                .isEqualTo(Resources.toByteArray(Resources.getResource("assets/compressible.txt.gz")));
+    }
+
+    @Test
+    public void reportsTheCacheOfTheLatestServletWithItsPath() throws Exception {
+        final MetricsRegistry metrics = new MetricsRegistry();
+        final MetricName cacheSize = new MetricName(AssetServlet.class, "cache-size", "/shared");
+        final AssetServlet first = new AssetServlet(RESOURCE_PATH, AssetServlet.DEFAULT_CACHE_SPEC,
+                                                    Size.kilobytes(1), "/shared", null, metrics);
+        final AssetServlet second = new AssetServlet(RESOURCE_PATH, AssetServlet.DEFAULT_CACHE_SPEC,
+                                                     Size.kilobytes(1), "/shared", null, metrics);
+
+        first.init(mock(ServletConfig.class));
+        final Metric firstGauge = metrics.allMetrics().get(cacheSize);
+        second.init(mock(ServletConfig.class));
+        final Metric secondGauge = metrics.allMetrics().get(cacheSize);
+
+        assertThat(secondGauge)
+                .isNotNull()
+                .isNotSameAs(firstGauge);
+
+        first.destroy();
+
+        assertThat(metrics.allMetrics().get(cacheSize))
+                .isSameAs(secondGauge);
+
+        second.destroy();
+
+        assertThat(metrics.allMetrics())
+                .isEmpty();
+    }
+
+    @Test
+    public void canBoundTheCacheByItsNumberOfAssets() throws Exception {
+        final AssetServlet servlet = new AssetServlet(RESOURCE_PATH, CacheBuilderSpec.parse("maximumSize=1"),
+                                                      null, DUMMY_SERVLET, null, new MetricsRegistry());
+
+        assertThat(servlet.getUriPath())
+                .isEqualTo("/dummy_servlet");
+    }
+
+    private static String gunzip(byte[] bytes) throws Exception {
+        final GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return new String(ByteStreams.toByteArray(input), Charsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
 }
@@ -146,4 +146,23 @@ public class ResourceURLTest {
         assertThat(lastModified)
                 .isZero();
     }
+
+    @Test
+    public void getContentLengthReturnsTheSizeOfAFile() throws Exception {
+        final URL url = file.toURI().toURL();
+
+        assertThat(ResourceURL.getContentLength(url))
+                .isEqualTo(file.length());
+    }
+
+    @Test
+    public void getContentLengthReturnsTheSizeOfAJarEntry() throws Exception {
+        final URL url = Resources.getResource("META-INF/MANIFEST.MF");
+
+        final JarURLConnection jarConnection = (JarURLConnection) url.openConnection();
+        final JarEntry entry = jarConnection.getJarEntry();
+
+        assertThat(ResourceURL.getContentLength(url))
+                .isEqualTo(entry.getSize());
+    }
 }
@@ -41,6 +41,58 @@ public class GzipConfigurationTest {
                 .isEqualTo(Size.kilobytes(32));
     }
 
+    @Test
+    public void hasAnInflaterPoolSize() throws Exception {
+        assertThat(gzip.getInflaterPoolSize())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void hasInflationLimits() throws Exception {
+        assertThat(gzip.getMaxInflatedEntitySize())
+                .isEqualTo(Size.megabytes(1));
+        assertThat(gzip.getMaxInflationRatio())
+                .isEqualTo(20.0);
+    }
+
+    @Test
+    public void maxInflationRatioMustNotBeNegative() throws Exception {
+        gzip.setMaxInflationRatio(-1);
+
+        assertThat(gzip.isMaxInflationRatioValid())
+                .isFalse();
+    }
+
+    @Test
+    public void hasACompressionLevel() throws Exception {
+        assertThat(gzip.getCompressionLevel())
+                .isEqualTo(4);
+    }
+
+    @Test
+    public void hasAdaptiveCompression() throws Exception {
+        assertThat(gzip.isAdaptiveCompression())
+                .isTrue();
+        assertThat(gzip.getAdaptiveThreshold())
+                .isEqualTo(0.5);
+        assertThat(gzip.getMinimumCompressionLevel())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void hasExcludedPaths() throws Exception {
+        assertThat(gzip.getExcludedPaths())
+                .isEqualTo(ImmutableSet.of("/downloads/*"));
+    }
+
+    @Test
+    public void adaptiveThresholdMustBeARatio() throws Exception {
+        gzip.setAdaptiveThreshold(1.5);
+
+        assertThat(gzip.isAdaptiveThresholdValid())
+                .isFalse();
+    }
+
     @Test
     public void hasExcludedUserAgents() throws Exception {
         assertThat(gzip.getExcludedUserAgents())
@@ -3,17 +3,26 @@ package com.yammer.dropwizard.config.tests;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
+import com.yammer.dropwizard.config.BufferPoolConfiguration;
+import com.yammer.dropwizard.config.ConcurrencyLimitConfiguration;
 import com.yammer.dropwizard.config.ConfigurationFactory;
+import com.yammer.dropwizard.config.HealthCheckConfiguration;
 import com.yammer.dropwizard.config.HttpConfiguration;
+import com.yammer.dropwizard.config.ThreadPoolConfiguration;
+import com.yammer.dropwizard.jetty.VirtualThreadPool;
 import com.yammer.dropwizard.util.Duration;
 import com.yammer.dropwizard.util.Size;
 import com.yammer.dropwizard.validation.Validator;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
 
 public class HttpConfigurationTest {
     private HttpConfiguration http;
@@ -49,6 +58,25 @@ public class HttpConfigurationTest {
                 .isEqualTo(9081);
     }
 
+    @Test
+    public void hasNamedApplicationConnectors() throws Exception {
+        assertThat(http.getApplicationConnectors())
+                .isEqualTo(ImmutableMap.of("tenant-a", 9090, "tenant-b", 9091));
+    }
+
+    @Test
+    public void applicationConnectorsMustNotShareAPort() throws Exception {
+        http.setApplicationConnectors(ImmutableMap.of("tenant-a", 9090, "tenant-b", 9090));
+
+        assertThat(http.isApplicationConnectorPortsValid())
+                .isFalse();
+
+        http.setApplicationConnectors(ImmutableMap.of("tenant-a", 9081));
+
+        assertThat(http.isApplicationConnectorPortsValid())
+                .isFalse();
+    }
+
     @Test
     public void hasAMaximumNumberOfThreads() throws Exception {
         assertThat(http.getMaxThreads())
@@ -73,6 +101,85 @@ public class HttpConfigurationTest {
                 .isEqualTo(HttpConfiguration.ConnectorType.LEGACY);
     }
 
+    @Test
+    public void parsesHttp2ConnectorTypes() throws Exception {
+        assertThat(HttpConfiguration.ConnectorType.parse("h2c"))
+                .isEqualTo(HttpConfiguration.ConnectorType.H2C);
+
+        assertThat(HttpConfiguration.ConnectorType.parse("h2"))
+                .isEqualTo(HttpConfiguration.ConnectorType.H2);
+    }
+
+    @Test
+    public void requiresAnSslConfigurationForHttp2OverTls() throws Exception {
+        final HttpConfiguration config = new HttpConfiguration();
+        config.setConnectorType(HttpConfiguration.ConnectorType.H2);
+
+        assertThat(config.isSslConfigured())
+                .isFalse();
+
+        config.setConnectorType(HttpConfiguration.ConnectorType.H2C);
+
+        assertThat(config.isSslConfigured())
+                .isTrue();
+    }
+
+    @Test
+    public void reservesThreadsForAdminRequests() throws Exception {
+        assertThat(http.getReservedAdminThreads())
+                .isEqualTo(4);
+
+        assertThat(http.getMaxQueuedAppRequests())
+                .isEqualTo(8);
+
+        assertThat(http.getAppQueueTimeout())
+                .isEqualTo(Duration.milliseconds(500));
+
+        // less three connectors' acceptor and selector threads, and the queued requests
+        assertThat(http.getMaxAppDispatches())
+                .isEqualTo(65);
+    }
+
+    @Test
+    public void doesNotLimitAppDispatchesByDefault() throws Exception {
+        assertThat(new HttpConfiguration().getMaxAppDispatches())
+                .isZero();
+    }
+
+    @Test
+    public void limitsAppDispatchesByTheVirtualThreadPoolsConcurrency() throws Exception {
+        final ThreadPoolConfiguration threadPool = http.getThreadPoolConfiguration();
+        threadPool.setType(ThreadPoolConfiguration.PoolType.VIRTUAL);
+        threadPool.setMaxConcurrency(1000);
+
+        assertThat(http.getMaxAppDispatches())
+                .isEqualTo(1000 - 24 - 4 - 8);
+    }
+
+    @Test
+    public void limitsAppDispatchesByTheBuiltThreadPool() throws Exception {
+        assertThat(http.getMaxAppDispatches(new QueuedThreadPool(51)))
+                .isEqualTo(51 - 24 - 4 - 8);
+
+        assertThat(http.getMaxAppDispatches(new VirtualThreadPool(new MetricsRegistry(), 200, -1)))
+                .isEqualTo(200 - 24 - 4 - 8);
+
+        assertThat(http.getMaxAppDispatches(mock(ThreadPool.class)))
+                .isZero();
+    }
+
+    @Test
+    public void hasAShutdownDelay() throws Exception {
+        assertThat(http.getShutdownDelay())
+                .isEqualTo(Duration.seconds(15));
+    }
+
+    @Test
+    public void hasAManagedStopTimeout() throws Exception {
+        assertThat(http.getManagedStopTimeout())
+                .isEqualTo(Duration.seconds(10));
+    }
+
     @Test
     public void hasAMaxIdleTime() throws Exception {
         assertThat(http.getMaxIdleTime())
@@ -85,6 +192,30 @@ public class HttpConfigurationTest {
                 .isEqualTo(2);
     }
 
+    @Test
+    public void hasASelectorThreadCount() throws Exception {
+        assertThat(http.getSelectorThreadCount())
+                .isEqualTo(6);
+    }
+
+    @Test
+    public void defaultsToTwoSelectorsPerAcceptor() throws Exception {
+        final HttpConfiguration defaults = new HttpConfiguration();
+        defaults.setAcceptorThreads(3);
+
+        assertThat(defaults.getSelectorThreadCount())
+                .isEqualTo(6);
+    }
+
+    @Test
+    public void canUseOneSelectorPerProcessor() throws Exception {
+        final HttpConfiguration auto = new HttpConfiguration();
+        auto.setSelectorThreads(-1);
+
+        assertThat(auto.getSelectorThreadCount())
+                .isEqualTo(Runtime.getRuntime().availableProcessors());
+    }
+
     @Test
     public void hasAnAcceptorThreadPriorityOffset() throws Exception {
         assertThat(http.getAcceptorThreadPriorityOffset())
@@ -181,6 +312,92 @@ public class HttpConfigurationTest {
                 .isFalse();
     }
 
+    @Test
+    public void hasABufferPoolConfiguration() throws Exception {
+        final BufferPoolConfiguration bufferPool = http.getBufferPoolConfiguration();
+
+        assertThat(bufferPool.getType())
+                .isEqualTo(BufferPoolConfiguration.PoolType.CACHED);
+
+        assertThat(bufferPool.getMaxBufferSize())
+                .isEqualTo(Size.kilobytes(32));
+
+        assertThat(bufferPool.getMaxRetainedPerBucket())
+                .isEqualTo(Size.kilobytes(512));
+
+        assertThat(bufferPool.getThreadCacheSize())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void usesJettysBufferPoolByDefault() throws Exception {
+        assertThat(new HttpConfiguration().getBufferPoolConfiguration().getType())
+                .isEqualTo(BufferPoolConfiguration.PoolType.ARRAY);
+    }
+
+    @Test
+    public void hasAThreadPoolConfiguration() throws Exception {
+        final ThreadPoolConfiguration threadPool = http.getThreadPoolConfiguration();
+
+        assertThat(threadPool.getType())
+                .isEqualTo(ThreadPoolConfiguration.PoolType.ADAPTIVE);
+
+        assertThat(threadPool.getIdleTimeout())
+                .isEqualTo(Duration.seconds(30));
+
+        assertThat(threadPool.getTargetQueueLatency())
+                .isEqualTo(Duration.milliseconds(5));
+
+        assertThat(threadPool.getAdjustmentInterval())
+                .isEqualTo(Duration.seconds(1));
+    }
+
+    @Test
+    public void hasAHealthCheckConfiguration() throws Exception {
+        final HealthCheckConfiguration healthChecks = http.getHealthCheckConfiguration();
+
+        assertThat(healthChecks.isBackground())
+                .isTrue();
+
+        assertThat(healthChecks.getInterval("database-db"))
+                .isEqualTo(Duration.seconds(30));
+
+        assertThat(healthChecks.getTimeout("database-db"))
+                .isEqualTo(Duration.seconds(2));
+
+        assertThat(healthChecks.getInterval("deadlocks"))
+                .isEqualTo(Duration.seconds(10));
+
+        assertThat(healthChecks.getTimeout("deadlocks"))
+                .isEqualTo(Duration.seconds(5));
+    }
+
+    @Test
+    public void hasAConcurrencyLimitConfiguration() throws Exception {
+        final ConcurrencyLimitConfiguration concurrencyLimit = http.getConcurrencyLimitConfiguration();
+
+        assertThat(concurrencyLimit.isEnabled())
+                .isTrue();
+
+        assertThat(concurrencyLimit.getMaxLimit())
+                .isEqualTo(200);
+
+        assertThat(concurrencyLimit.getMinLimit())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void hasALatencyHistogramInterval() throws Exception {
+        assertThat(http.getLatencyHistogramInterval())
+                .isEqualTo(Duration.minutes(1));
+    }
+
+    @Test
+    public void hasAMaximumNumberOfInstrumentedRoutes() throws Exception {
+        assertThat(http.getMaxInstrumentedRoutes())
+                .isEqualTo(50);
+    }
+
     @Test
     public void hasABindHost() throws Exception {
         assertThat(http.getBindHost())
@@ -5,12 +5,15 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import com.yammer.dropwizard.config.ConfigurationFactory;
 import com.yammer.dropwizard.config.LoggingConfiguration;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.dropwizard.util.Size;
 import com.yammer.dropwizard.validation.Validator;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
 
+import static com.yammer.dropwizard.config.LoggingConfiguration.AsyncConfiguration;
 import static com.yammer.dropwizard.config.LoggingConfiguration.ConsoleConfiguration;
 import static com.yammer.dropwizard.config.LoggingConfiguration.FileConfiguration;
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -71,6 +74,32 @@ public class LoggingConfigurationTest {
                 .isEqualTo(5);
     }
 
+    @Test
+    public void hasAsyncConfiguration() throws Exception {
+        final AsyncConfiguration async = config.getAsyncConfiguration();
+
+        assertThat(async.getQueueSize())
+                .isEqualTo(1024);
+
+        assertThat(async.getDiscardingThreshold())
+                .isEqualTo(90);
+
+        assertThat(async.isNeverBlock())
+                .isTrue();
+
+        assertThat(async.getShutdownTimeout())
+                .isEqualTo(Duration.seconds(5));
+
+        assertThat(async.isBatchWrites())
+                .isTrue();
+
+        assertThat(async.getMaxBatchSize())
+                .isEqualTo(Size.kilobytes(128));
+
+        assertThat(async.getMaxFlushLatency())
+                .isEqualTo(Duration.milliseconds(50));
+    }
+
     @Test
     public void defaultFileConfigurationIsValid() throws Exception {
         final FileConfiguration file = new FileConfiguration();
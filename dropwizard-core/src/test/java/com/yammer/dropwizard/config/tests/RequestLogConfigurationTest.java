@@ -3,6 +3,7 @@ package com.yammer.dropwizard.config.tests;
 import com.google.common.io.Resources;
 import com.yammer.dropwizard.config.ConfigurationFactory;
 import com.yammer.dropwizard.config.RequestLogConfiguration;
+import com.yammer.dropwizard.jetty.RequestLogRingBuffer;
 import com.yammer.dropwizard.validation.Validator;
 import org.junit.Before;
 import org.junit.Test;
@@ -34,4 +35,21 @@ public class RequestLogConfigurationTest {
             .isTrue();
     }
 
+    @Test
+    public void ringBufferCanBeConfigured() throws Exception {
+        final RequestLogConfiguration.RingBufferConfiguration ringBuffer =
+                requestLog.getRingBufferConfiguration();
+
+        assertThat(ringBuffer.isEnabled())
+            .isTrue();
+
+        assertThat(ringBuffer.getSize())
+            .isEqualTo(1024);
+
+        assertThat(ringBuffer.getOverflowPolicy())
+            .isEqualTo(RequestLogRingBuffer.OverflowPolicy.SAMPLE);
+
+        assertThat(ringBuffer.getSampleRate())
+            .isEqualTo(5);
+    }
 }
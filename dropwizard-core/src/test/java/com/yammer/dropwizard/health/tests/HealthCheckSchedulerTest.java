@@ -0,0 +1,127 @@
+package com.yammer.dropwizard.health.tests;
+
+import com.yammer.dropwizard.health.HealthCheckScheduler;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.metrics.core.HealthCheck;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class HealthCheckSchedulerTest {
+    private static class CountingHealthCheck extends HealthCheck {
+        private final AtomicInteger runs = new AtomicInteger();
+        private final CountDownLatch firstRun = new CountDownLatch(1);
+
+        private CountingHealthCheck() {
+            super("counting");
+        }
+
+        @Override
+        protected Result check() throws Exception {
+            runs.incrementAndGet();
+            firstRun.countDown();
+            return Result.healthy();
+        }
+    }
+
+    private static class HangingHealthCheck extends HealthCheck {
+        private HangingHealthCheck() {
+            super("hanging");
+        }
+
+        @Override
+        protected Result check() throws Exception {
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return Result.healthy();
+        }
+    }
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final HealthCheckScheduler scheduler =
+            new HealthCheckScheduler(Executors.newScheduledThreadPool(2), Executors.newFixedThreadPool(2), metrics);
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.stop();
+    }
+
+    @Test
+    public void keepsTheNameOfTheCheck() throws Exception {
+        assertThat(scheduler.schedule(new CountingHealthCheck(), Duration.minutes(1), Duration.seconds(1)).getName())
+                .isEqualTo("counting");
+    }
+
+    @Test
+    public void runsTheCheckInPlaceUntilItHasRun() throws Exception {
+        final CountingHealthCheck check = new CountingHealthCheck();
+        final HealthCheck scheduled = scheduler.schedule(check, Duration.minutes(1), Duration.seconds(1));
+
+        assertThat(scheduled.execute().isHealthy())
+                .isTrue();
+
+        assertThat(check.runs.get())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void returnsTheCachedResultOnceItHasRun() throws Exception {
+        final CountingHealthCheck check = new CountingHealthCheck();
+        final HealthCheck scheduled = scheduler.schedule(check, Duration.minutes(1), Duration.seconds(1));
+        scheduler.start();
+
+        assertThat(check.firstRun.await(5, TimeUnit.SECONDS))
+                .isTrue();
+
+        awaitResult(scheduled);
+        for (int i = 0; i < 10; i++) {
+            scheduled.execute();
+        }
+
+        assertThat(check.runs.get())
+                .isEqualTo(1);
+
+        final Timer duration = (Timer) metrics.allMetrics()
+                                              .get(new MetricName(HealthCheck.class, "duration", "counting"));
+        assertThat(duration.count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void reportsChecksWhichTimeOutAsUnhealthy() throws Exception {
+        final HealthCheck scheduled = scheduler.schedule(new HangingHealthCheck(),
+                                                         Duration.minutes(1),
+                                                         Duration.milliseconds(50));
+        scheduler.start();
+
+        final HealthCheck.Result result = awaitResult(scheduled);
+
+        assertThat(result.isHealthy())
+                .isFalse();
+
+        assertThat(result.getMessage())
+                .startsWith("Timed out after");
+    }
+
+    private HealthCheck.Result awaitResult(HealthCheck scheduled) throws Exception {
+        // the timer is stopped once the result is cached
+        final MetricName name = new MetricName(HealthCheck.class, "duration", scheduled.getName());
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (System.currentTimeMillis() < deadline) {
+            final Timer timer = (Timer) metrics.allMetrics().get(name);
+            if (timer.count() > 0) {
+                return scheduled.execute();
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("the check never ran");
+    }
+}
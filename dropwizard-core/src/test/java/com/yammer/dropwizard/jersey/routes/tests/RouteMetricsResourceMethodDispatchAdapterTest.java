@@ -0,0 +1,206 @@
+package com.yammer.dropwizard.jersey.routes.tests;
+
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.model.AbstractResource;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.server.impl.modelapi.annotation.IntrospectionModeller;
+import com.sun.jersey.spi.container.ResourceMethodDispatchProvider;
+import com.sun.jersey.spi.dispatch.RequestDispatcher;
+import com.sun.jersey.test.framework.AppDescriptor;
+import com.sun.jersey.test.framework.JerseyTest;
+import com.sun.jersey.test.framework.LowLevelAppDescriptor;
+import com.yammer.dropwizard.jersey.DropwizardResourceConfig;
+import com.yammer.dropwizard.jersey.routes.RouteMetricsResourceMethodDispatchAdapter;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.junit.Test;
+import org.slf4j.bridge.SLF4JBridgeHandler;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RouteMetricsResourceMethodDispatchAdapterTest extends JerseyTest {
+    static {
+        SLF4JBridgeHandler.removeHandlersForRootLogger();
+        SLF4JBridgeHandler.install();
+    }
+
+    @Path("/things/")
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class ThingResource {
+        @GET
+        @Path("{id}")
+        public String show(@PathParam("id") String id) {
+            if ("missing".equals(id)) {
+                throw new WebApplicationException(404);
+            }
+            if ("invalid".equals(id)) {
+                throw new IllegalStateException("invalid");
+            }
+            return id;
+        }
+
+        @GET
+        @Path("{name: [a-z]{2}}/{path: .*/.*}")
+        public String nested(@PathParam("name") String name, @PathParam("path") String path) {
+            return name + path;
+        }
+    }
+
+    @Provider
+    public static class IllegalStateExceptionMapper implements ExceptionMapper<IllegalStateException> {
+        @Override
+        public Response toResponse(IllegalStateException exception) {
+            return Response.status(409).build();
+        }
+    }
+
+    @Path("/others")
+    @Produces(MediaType.TEXT_PLAIN)
+    public static class OtherResource {
+        @GET
+        public String list() {
+            return "list";
+        }
+
+        @POST
+        public String create() {
+            return "created";
+        }
+    }
+
+    // assigned in configure(), which JerseyTest calls from its constructor
+    private MetricsRegistry registry;
+
+    @Override
+    protected AppDescriptor configure() {
+        this.registry = new MetricsRegistry();
+        final DropwizardResourceConfig config = new DropwizardResourceConfig(true);
+        final RouteMetricsResourceMethodDispatchAdapter adapter = new RouteMetricsResourceMethodDispatchAdapter(registry, 1000);
+        adapter.register(config);
+        config.getSingletons().add(new ThingResource());
+        config.getSingletons().add(new IllegalStateExceptionMapper());
+        config.getSingletons().add(new OtherResource());
+        return new LowLevelAppDescriptor.Builder(config).build();
+    }
+
+    @Test
+    public void timesEachRouteByItsTemplatedPath() throws Exception {
+        client().resource("/things/1").get(String.class);
+        client().resource("/things/2").get(String.class);
+        client().resource("/things/missing").get(ClientResponse.class);
+        client().resource("/things/invalid").get(ClientResponse.class);
+
+        final Timer requests = (Timer) registry.allMetrics()
+                                               .get(new MetricName("routes", "GET.things.$id", "requests"));
+        assertThat(requests.count())
+                .isEqualTo(4);
+
+        assertThat(meter("GET.things.$id", "2xx-responses").count())
+                .isEqualTo(2);
+
+        // the mapped exception is counted by the status it was mapped to
+        assertThat(meter("GET.things.$id", "4xx-responses").count())
+                .isEqualTo(2);
+
+        assertThat(meter("GET.things.$id", "5xx-responses").count())
+                .isZero();
+
+        final Counter active = (Counter) registry.allMetrics()
+                                                 .get(new MetricName("routes", "GET.things.$id", "active-requests"));
+        assertThat(active.count())
+                .isZero();
+    }
+
+    @Test
+    public void namesRoutesSafelyForJmxAndGraphite() throws Exception {
+        assertThat(client().resource("/things/ab/c/d").get(String.class))
+                .isEqualTo("abc/d");
+
+        assertThat(registry.allMetrics())
+                .containsKey(new MetricName("routes", "GET.things.$name.$path", "requests"));
+
+        client().resource("/others").get(String.class);
+
+        assertThat(registry.allMetrics())
+                .containsKey(new MetricName("routes", "GET.others", "requests"));
+    }
+
+    @Test
+    public void sharesMetricsOnceTheRouteLimitIsReached() throws Exception {
+        final ResourceMethodDispatchProvider delegate = mock(ResourceMethodDispatchProvider.class);
+        when(delegate.create(any(AbstractResourceMethod.class))).thenReturn(mock(RequestDispatcher.class));
+
+        final MetricsRegistry limited = new MetricsRegistry();
+        final ResourceMethodDispatchProvider provider =
+                new RouteMetricsResourceMethodDispatchAdapter(limited, 2).adapt(delegate);
+
+        final AbstractResource things = IntrospectionModeller.createResource(ThingResource.class);
+        final AbstractResource others = IntrospectionModeller.createResource(OtherResource.class);
+        provider.create(things.getSubResourceMethods().get(0));
+        for (AbstractResourceMethod method : others.getResourceMethods()) {
+            provider.create(method);
+        }
+
+        long routes = 0;
+        long shared = 0;
+        for (MetricName name : limited.allMetrics().keySet()) {
+            if ("requests".equals(name.getName())) {
+                routes++;
+                if ("other".equals(name.getType())) {
+                    shared++;
+                }
+            }
+        }
+
+        // three routes, but only two with their own metrics
+        assertThat(routes)
+                .isEqualTo(3);
+
+        assertThat(shared)
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void countsEachRouteOnceTowardsTheLimit() throws Exception {
+        final ResourceMethodDispatchProvider delegate = mock(ResourceMethodDispatchProvider.class);
+        when(delegate.create(any(AbstractResourceMethod.class))).thenReturn(mock(RequestDispatcher.class));
+
+        final MetricsRegistry limited = new MetricsRegistry();
+        final ResourceMethodDispatchProvider provider =
+                new RouteMetricsResourceMethodDispatchAdapter(limited, 2).adapt(delegate);
+
+        final AbstractResource others = IntrospectionModeller.createResource(OtherResource.class);
+        for (int i = 0; i < 3; i++) {
+            for (AbstractResourceMethod method : others.getResourceMethods()) {
+                provider.create(method);
+            }
+        }
+
+        // both routes keep their own metrics however many times their dispatchers are created
+        assertThat(limited.allMetrics())
+                .containsKey(new MetricName("routes", "GET.others", "requests"))
+                .containsKey(new MetricName("routes", "POST.others", "requests"))
+                .doesNotContainKey(new MetricName("routes", "other", "requests"));
+    }
+
+    private Meter meter(String route, String name) {
+        return (Meter) registry.allMetrics().get(new MetricName("routes", route, name));
+    }
+}
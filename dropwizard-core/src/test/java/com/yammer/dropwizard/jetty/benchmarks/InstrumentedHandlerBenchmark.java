@@ -0,0 +1,108 @@
+package com.yammer.dropwizard.jetty.benchmarks;
+
+import com.yammer.dropwizard.jetty.InstrumentedHandler;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the heap allocated per request by {@link InstrumentedHandler}, by serving the same
+ * requests with and without it and comparing the bytes allocated by every thread, as reported by
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long[])}.
+ * <p>
+ * It isn't a test; run its {@code main} method with the test classpath on a HotSpot JVM.
+ */
+public class InstrumentedHandlerBenchmark {
+    private static class OkHandler extends AbstractHandler {
+        @Override
+        public void handle(String target,
+                           Request baseRequest,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+            baseRequest.setHandled(true);
+            response.setStatus(200);
+        }
+    }
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int WARMUP_BATCHES = 50;
+    private static final int MEASURED_BATCHES = 200;
+    private static final String REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    private static final String LAST_REQUEST = "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+
+    public static void main(String[] args) throws Exception {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final double bare = run(threads, new OkHandler());
+
+        final InstrumentedHandler instrumented = new InstrumentedHandler(new MetricsRegistry());
+        instrumented.setHandler(new OkHandler());
+        final double timed = run(threads, instrumented);
+
+        final InstrumentedHandler histograms = new InstrumentedHandler(new MetricsRegistry(), 1, TimeUnit.MINUTES);
+        histograms.setHandler(new OkHandler());
+        final double recorded = run(threads, histograms);
+
+        System.out.printf("%-36s %12s%n", "handler", "bytes/request");
+        System.out.printf("%-36s %12.1f%n", "bare", bare);
+        System.out.printf("%-36s %12.1f%n", "instrumented", timed);
+        System.out.printf("%-36s %12.1f%n", "instrumented with latency histograms", recorded);
+        System.out.printf("%-36s %12.1f%n", "instrumentation overhead", timed - bare);
+        System.out.printf("%-36s %12.1f%n", "histogram overhead", recorded - timed);
+    }
+
+    /**
+     * Serves requests with the given handler and returns the number of bytes allocated per request
+     * by all threads, once warmed up.
+     */
+    private static double run(com.sun.management.ThreadMXBean threads, Handler handler) throws Exception {
+        final Server server = new Server();
+        final LocalConnector connector = new LocalConnector(server);
+        server.addConnector(connector);
+        server.setHandler(handler);
+        server.start();
+        try {
+            // each batch is pipelined on one connection, which the last request closes
+            final StringBuilder requests = new StringBuilder();
+            for (int i = 1; i < BATCH_SIZE; i++) {
+                requests.append(REQUEST);
+            }
+            final String batch = requests.append(LAST_REQUEST).toString();
+
+            for (int i = 0; i < WARMUP_BATCHES; i++) {
+                connector.getResponses(batch);
+            }
+
+            final long before = allocatedBytes(threads);
+            for (int i = 0; i < MEASURED_BATCHES; i++) {
+                connector.getResponses(batch);
+            }
+            final long after = allocatedBytes(threads);
+            return (double) (after - before) / (MEASURED_BATCHES * BATCH_SIZE);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            // -1 for threads which have died since their ids were read
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,96 @@
+package com.yammer.dropwizard.jetty.benchmarks;
+
+import com.yammer.dropwizard.jetty.StripedCounter;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of {@link StripedCounter} with metrics' {@link Counter}, which is a
+ * single {@link java.util.concurrent.atomic.AtomicLong}, when many threads increment and
+ * decrement the same counter, as request threads do with the handler's active-requests count.
+ * <p>
+ * It isn't a test; run its {@code main} method with the test classpath.
+ */
+public class StripedCounterBenchmark {
+    private interface Updater {
+        void update();
+    }
+
+    private static final long WARMUP_MILLIS = 2000;
+    private static final long MEASUREMENT_MILLIS = 5000;
+
+    public static void main(String[] args) throws Exception {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final Counter counter = new MetricsRegistry().newCounter(StripedCounterBenchmark.class, "counter");
+        final StripedCounter striped = new StripedCounter();
+
+        final Updater counterUpdater = new Updater() {
+            @Override
+            public void update() {
+                counter.inc();
+                counter.dec();
+            }
+        };
+        final Updater stripedUpdater = new Updater() {
+            @Override
+            public void update() {
+                striped.inc();
+                striped.dec();
+            }
+        };
+
+        System.out.printf("%8s %24s %24s%n", "threads", "Counter (ops/ms)", "StripedCounter (ops/ms)");
+        for (int threads = 1; threads <= processors * 2; threads *= 2) {
+            run(counterUpdater, threads, WARMUP_MILLIS);
+            final double counterOps = run(counterUpdater, threads, MEASUREMENT_MILLIS);
+            run(stripedUpdater, threads, WARMUP_MILLIS);
+            final double stripedOps = run(stripedUpdater, threads, MEASUREMENT_MILLIS);
+            System.out.printf("%8d %24.0f %24.0f%n", threads, counterOps, stripedOps);
+        }
+    }
+
+    /**
+     * Runs the updater on the given number of threads for the given time and returns the number of
+     * updates per millisecond across all of them.
+     */
+    private static double run(final Updater updater, int threadCount, long millis) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final long[] counts = new long[threadCount];
+        final Thread[] threads = new Thread[threadCount];
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        for (int i = 0; i < threadCount; i++) {
+            final int index = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        for (int j = 0; j < 1000; j++) {
+                            updater.update();
+                        }
+                        count += 1000;
+                    }
+                    counts[index] = count;
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+        long total = 0;
+        for (int i = 0; i < threadCount; i++) {
+            threads[i].join();
+            total += counts[i];
+        }
+        return (double) total / millis;
+    }
+}
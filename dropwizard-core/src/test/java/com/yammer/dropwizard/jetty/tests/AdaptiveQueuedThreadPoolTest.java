@@ -0,0 +1,124 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.AdaptiveQueuedThreadPool;
+import com.yammer.dropwizard.jetty.LatencyRecorder;
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AdaptiveQueuedThreadPoolTest {
+    private static class ManualClock extends Clock {
+        private long tick;
+
+        @Override
+        public long tick() {
+            return tick;
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private final AdaptiveQueuedThreadPool pool =
+            new AdaptiveQueuedThreadPool(new MetricsRegistry(), 20, 8, 60000,
+                                         new BlockingArrayQueue<Runnable>(8, 20, 100),
+                                         10, 1000, TimeUnit.MILLISECONDS, clock);
+
+    @Test
+    public void growsWhenJobsWaitLongerThanTheTarget() throws Exception {
+        pool.adjust(interval(50));
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(10);
+
+        assertThat(pool.getMinThreads())
+                .isEqualTo(10);
+    }
+
+    @Test
+    public void neverGrowsPastTheMaximum() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            pool.adjust(interval(50));
+        }
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(20);
+    }
+
+    @Test
+    public void holdsNearTheTarget() throws Exception {
+        pool.adjust(interval(50));
+        pool.adjust(interval(8));
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(10);
+    }
+
+    @Test
+    public void shrinksBackToTheMinimumWhenJobsDoNotWait() throws Exception {
+        pool.adjust(interval(50));
+        pool.adjust(interval(50));
+        pool.adjust(interval(1));
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(11);
+
+        for (int i = 0; i < 10; i++) {
+            pool.adjust(interval(1));
+        }
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void ignoresAnIntervalItHasAlreadySeen() throws Exception {
+        final LatencyRecorder.Snapshot snapshot = interval(50);
+        pool.adjust(snapshot);
+        pool.adjust(snapshot);
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(10);
+    }
+
+    @Test
+    public void shrinksThroughConsecutiveIntervalsWithNoJobs() throws Exception {
+        pool.adjust(interval(50));
+        pool.adjust(interval(50));
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(12);
+
+        for (int i = 0; i < 4; i++) {
+            clock.tick += TimeUnit.SECONDS.toNanos(1);
+            pool.adjust();
+        }
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(8);
+    }
+
+    @Test
+    public void waitsForAnEmptyIntervalToEnd() throws Exception {
+        pool.adjust(interval(50));
+        pool.adjust(interval(50));
+
+        clock.tick += TimeUnit.SECONDS.toNanos(1);
+        pool.adjust();
+        pool.adjust();
+        pool.adjust();
+
+        assertThat(pool.getCoreThreads())
+                .isEqualTo(11);
+    }
+
+    private LatencyRecorder.Snapshot interval(long queueLatencyMillis) {
+        final LatencyRecorder recorder = new LatencyRecorder(clock, 1, TimeUnit.SECONDS);
+        recorder.update(queueLatencyMillis, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.SECONDS.toNanos(1);
+        return recorder.value();
+    }
+}
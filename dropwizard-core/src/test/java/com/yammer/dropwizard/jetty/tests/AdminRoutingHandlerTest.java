@@ -0,0 +1,321 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.AdminRoutingHandler;
+import com.yammer.dropwizard.jetty.ConcurrencyLimitHandler;
+import com.yammer.dropwizard.jetty.InstrumentedHandler;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AdminRoutingHandlerTest {
+    private class CountingFilter implements Filter {
+        @Override
+        public void init(FilterConfig filterConfig) throws ServletException {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request,
+                             ServletResponse response,
+                             FilterChain chain) throws IOException, ServletException {
+            filtered.incrementAndGet();
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    private class BlockingServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+            dispatcherTypes.add(req.getDispatcherType());
+            inFlight.add(limitHandler.getInFlight());
+            if (req.getRequestURI().startsWith("/block")) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    throw new ServletException(e);
+                }
+            }
+            resp.getWriter().write("app");
+        }
+    }
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Server server = new Server();
+    private final LocalConnector connector = new LocalConnector(server);
+    private final ExecutorService clients = Executors.newCachedThreadPool();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final AtomicInteger filtered = new AtomicInteger();
+    private final List<DispatcherType> dispatcherTypes = new CopyOnWriteArrayList<DispatcherType>();
+    private final List<Integer> inFlight = new CopyOnWriteArrayList<Integer>();
+    private final ConcurrencyLimitHandler limitHandler =
+            new ConcurrencyLimitHandler(metrics, 10, 1, 10, 2.0, 1.0);
+    private AdminRoutingHandler routingHandler;
+
+    @After
+    public void tearDown() throws Exception {
+        unblock.countDown();
+        clients.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void routesAdminRequestsToTheAdminHandler() throws Exception {
+        start(0, 0, 0);
+
+        assertThat(get("/admin/ping").getContent())
+                .isEqualTo("admin");
+
+        assertThat(get("/things").getContent())
+                .isEqualTo("app");
+    }
+
+    @Test
+    public void doesNotLimitAppRequestsByDefault() throws Exception {
+        start(0, 0, 0);
+
+        final Future<HttpTester.Response> first = getLater("/block");
+        final Future<HttpTester.Response> second = getLater("/block");
+        awaitDispatches(2);
+
+        assertThat(routingHandler.getAppDispatches())
+                .isZero();
+
+        unblock.countDown();
+
+        assertThat(first.get().getStatus())
+                .isEqualTo(200);
+
+        assertThat(second.get().getStatus())
+                .isEqualTo(200);
+    }
+
+    @Test
+    public void answersAdminRequestsWhileTheAppIsSaturated() throws Exception {
+        start(1, 1, 10000);
+
+        final Future<HttpTester.Response> running = getLater("/block");
+        awaitDispatches(1);
+        final Future<HttpTester.Response> queued = getLater("/block");
+        awaitQueued(1);
+
+        assertThat(get("/admin/ping").getContent())
+                .isEqualTo("admin");
+
+        unblock.countDown();
+        running.get();
+        queued.get();
+    }
+
+    @Test
+    public void rejectsAppRequestsBeyondTheQueue() throws Exception {
+        start(1, 1, 10000);
+
+        final Future<HttpTester.Response> running = getLater("/block");
+        awaitDispatches(1);
+        final Future<HttpTester.Response> queued = getLater("/block");
+        awaitQueued(1);
+
+        assertThat(get("/things").getStatus())
+                .isEqualTo(503);
+
+        unblock.countDown();
+        running.get();
+        queued.get();
+
+        // the rejected request never reached the application
+        assertThat(filtered.get())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void rejectsAppRequestsWhichWaitTooLong() throws Exception {
+        start(1, 1, 50);
+
+        final Future<HttpTester.Response> running = getLater("/block");
+        awaitDispatches(1);
+
+        assertThat(get("/things").getStatus())
+                .isEqualTo(503);
+
+        assertThat(routingHandler.getQueuedAppRequests())
+                .isZero();
+
+        unblock.countDown();
+
+        assertThat(running.get().getStatus())
+                .isEqualTo(200);
+    }
+
+    @Test
+    public void handsTheSlotOverToTheNextQueuedRequest() throws Exception {
+        start(1, 2, 10000);
+
+        final Future<HttpTester.Response> running = getLater("/block");
+        awaitDispatches(1);
+        final Future<HttpTester.Response> first = getLater("/things/1");
+        awaitQueued(1);
+        final Future<HttpTester.Response> second = getLater("/things/2");
+        awaitQueued(2);
+
+        unblock.countDown();
+
+        assertThat(running.get().getStatus())
+                .isEqualTo(200);
+
+        assertThat(first.get().getStatus())
+                .isEqualTo(200);
+
+        assertThat(second.get().getStatus())
+                .isEqualTo(200);
+
+        assertThat(routingHandler.getAppDispatches())
+                .isZero();
+
+        assertThat(routingHandler.getQueuedAppRequests())
+                .isZero();
+    }
+
+    @Test
+    public void filtersInstrumentsAndLimitsQueuedRequests() throws Exception {
+        start(1, 1, 10000);
+
+        final Future<HttpTester.Response> running = getLater("/block");
+        awaitDispatches(1);
+        final Future<HttpTester.Response> queued = getLater("/things");
+        awaitQueued(1);
+
+        unblock.countDown();
+        running.get();
+
+        assertThat(queued.get().getContent())
+                .isEqualTo("app");
+
+        assertThat(filtered.get())
+                .isEqualTo(2);
+
+        assertThat(dispatcherTypes)
+                .containsExactly(DispatcherType.REQUEST, DispatcherType.REQUEST);
+
+        // each request was counted against the concurrency limit while it ran
+        assertThat(inFlight)
+                .containsExactly(1, 1);
+
+        assertThat(requests().count())
+                .isEqualTo(2);
+
+        assertThat(limitHandler.getInFlight())
+                .isZero();
+    }
+
+    private void start(int maxAppDispatches, int maxQueuedAppRequests, long queueTimeoutMillis) throws Exception {
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addFilter(new FilterHolder(new CountingFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addServlet(new ServletHolder(new BlockingServlet()), "/*");
+
+        final InstrumentedHandler instrumented = new InstrumentedHandler(metrics);
+        instrumented.setHandler(context);
+        limitHandler.setHandler(instrumented);
+
+        final AbstractHandler adminHandler = new AbstractHandler() {
+            @Override
+            public void handle(String target,
+                               Request baseRequest,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                baseRequest.setHandled(true);
+                response.getWriter().write("admin");
+            }
+        };
+
+        this.routingHandler = new AdminRoutingHandler(limitHandler,
+                                                      adminHandler,
+                                                      maxAppDispatches,
+                                                      maxQueuedAppRequests,
+                                                      queueTimeoutMillis,
+                                                      TimeUnit.MILLISECONDS);
+        limitHandler.setServer(server);
+        adminHandler.setServer(server);
+        server.addConnector(connector);
+        server.setHandler(routingHandler);
+        server.start();
+    }
+
+    private Timer requests() {
+        return (Timer) metrics.allMetrics().get(new MetricName(ServletContextHandler.class, "requests"));
+    }
+
+    private void awaitDispatches(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcherTypes.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(dispatcherTypes.size())
+                .isEqualTo(count);
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (routingHandler.getQueuedAppRequests() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(routingHandler.getQueuedAppRequests())
+                .isEqualTo(count);
+    }
+
+    private Future<HttpTester.Response> getLater(final String uri) {
+        return clients.submit(new Callable<HttpTester.Response>() {
+            @Override
+            public HttpTester.Response call() throws Exception {
+                return get(uri);
+            }
+        });
+    }
+
+    private HttpTester.Response get(String uri) throws Exception {
+        final HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI(uri);
+        request.setVersion("HTTP/1.1");
+        request.setHeader("Host", "localhost");
+        request.setHeader("Connection", "close");
+
+        return HttpTester.parseResponse(connector.getResponses(request.generate()));
+    }
+}
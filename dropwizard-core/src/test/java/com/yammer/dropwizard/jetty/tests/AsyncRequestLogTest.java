@@ -22,7 +22,9 @@ import org.mockito.ArgumentCaptor;
 
 import com.google.common.net.HttpHeaders;
 import com.yammer.dropwizard.jetty.AsyncRequestLog;
+import com.yammer.dropwizard.jetty.RequestLogRingBuffer;
 import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.MetricsRegistry;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -110,6 +112,34 @@ public class AsyncRequestLogTest {
                 .isEqualTo("10.0.0.1 - coda [16/Nov/2012:05:00:47 +0000] \"GET /test/things?yay HTTP/1.1\" 200 8290 2000 2000");
     }
 
+    @Test
+    public void logsRequestsThroughARingBuffer() throws Exception {
+        asyncRequestLog.stop();
+
+        final RequestLogRingBuffer ringBuffer =
+                new RequestLogRingBuffer(16, 256, RequestLogRingBuffer.OverflowPolicy.BLOCK, 1);
+        final AsyncRequestLog ringBufferLog = new AsyncRequestLog(clock,
+                                                                  appenders,
+                                                                  TimeZone.getTimeZone("UTC"),
+                                                                  ringBuffer,
+                                                                  new MetricsRegistry());
+        ringBufferLog.start();
+        try {
+            ringBufferLog.log(request, response);
+
+            final ArgumentCaptor<ILoggingEvent> captor = ArgumentCaptor.forClass(ILoggingEvent.class);
+            verify(appender, timeout(1000)).doAppend(captor.capture());
+
+            assertThat(captor.getValue().getFormattedMessage())
+                    .isEqualTo("10.0.0.1 - - [16/Nov/2012:05:00:47 +0000] \"GET /test/things?yay HTTP/1.1\" 200 8290 2000 2000");
+
+            assertThat(captor.getValue().getLevel())
+                    .isEqualTo(Level.INFO);
+        } finally {
+            ringBufferLog.stop();
+        }
+    }
+
     private ILoggingEvent logAndCapture() {
         asyncRequestLog.log(request, response);
 
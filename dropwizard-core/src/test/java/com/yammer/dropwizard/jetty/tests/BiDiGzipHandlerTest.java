@@ -0,0 +1,309 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.yammer.dropwizard.jetty.BiDiGzipHandler;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BiDiGzipHandlerTest {
+    private static final String ENTITY = "Hello, compressed world! Hello, compressed world!";
+    private static final String RESPONSE = Strings.repeat("A compressible response. ", 100);
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Server server = new Server();
+    private final LocalConnector connector = new LocalConnector(server);
+    private final BiDiGzipHandler gzipHandler = new BiDiGzipHandler(metrics);
+
+    @Before
+    public void setUp() throws Exception {
+        gzipHandler.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target,
+                               Request baseRequest,
+                               HttpServletRequest request,
+                               HttpServletResponse response) throws IOException, ServletException {
+                baseRequest.setHandled(true);
+                response.setContentType("text/plain");
+                if (target.startsWith("/async")) {
+                    echoLater(request, response);
+                } else if ("GET".equals(request.getMethod())) {
+                    response.getWriter().write(RESPONSE);
+                } else {
+                    response.getWriter().write(CharStreams.toString(request.getReader()));
+                }
+            }
+        });
+        gzipHandler.setExcludedPaths("/downloads/*");
+        server.addConnector(connector);
+        server.setHandler(gzipHandler);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void decompressesGzippedRequests() throws Exception {
+        assertThat(post("gzip", gzip(ENTITY)))
+                .isEqualTo(ENTITY);
+    }
+
+    @Test
+    public void decompressesConcatenatedGzipMembers() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(gzip("Hello, "));
+        output.write(gzip("world!"));
+
+        assertThat(post("gzip", output.toByteArray()))
+                .isEqualTo("Hello, world!");
+    }
+
+    @Test
+    public void decompressesDeflatedRequests() throws Exception {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final DeflaterOutputStream deflate = new DeflaterOutputStream(output, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+        deflate.write(ENTITY.getBytes(Charsets.UTF_8));
+        deflate.close();
+
+        assertThat(post("deflate", output.toByteArray()))
+                .isEqualTo(ENTITY);
+    }
+
+    @Test
+    public void reusesInflatersAcrossRequests() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            post("gzip", gzip(ENTITY));
+        }
+
+        assertThat(gauge("inflaters-created"))
+                .isEqualTo(1L);
+        assertThat(gauge("inflaters-in-use"))
+                .isEqualTo(0);
+        assertThat(gauge("inflaters-idle"))
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void releasesTheInflatersOfAsyncRequestsWhenTheyComplete() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertThat(send("/async", "gzip", gzip(ENTITY)).getContent())
+                    .isEqualTo(ENTITY);
+        }
+
+        // the listener runs just after the response is sent
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!Integer.valueOf(0).equals(gauge("inflaters-in-use")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThat(gauge("inflaters-in-use"))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void rejectsEntitiesWhichInflateToMoreThanTheMaximumSize() throws Exception {
+        gzipHandler.setMaxInflatedEntitySize(1024);
+
+        assertThat(post("gzip", gzip(ENTITY)))
+                .isEqualTo(ENTITY);
+
+        final HttpTester.Response response = send("gzip", gzip(Strings.repeat("A", 1025)));
+
+        assertThat(response.getStatus())
+                .isEqualTo(413);
+        assertThat(rejectedEntities())
+                .isEqualTo(1);
+        assertThat(gauge("inflaters-in-use"))
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void rejectsEntitiesWhichInflateByMoreThanTheMaximumRatio() throws Exception {
+        gzipHandler.setMaxInflationRatio(100);
+
+        final HttpTester.Response response = send("gzip", gzip(Strings.repeat("A", 4 * 1024 * 1024)));
+
+        assertThat(response.getStatus())
+                .isEqualTo(413);
+        assertThat(rejectedEntities())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotCheckTheRatioOfSmallEntities() throws Exception {
+        gzipHandler.setMaxInflationRatio(2);
+        final String entity = Strings.repeat("A", 64 * 1024);
+
+        assertThat(post("gzip", gzip(entity)))
+                .isEqualTo(entity);
+        assertThat(rejectedEntities())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void compressesResponsesAndRecordsTheirSizes() throws Exception {
+        final HttpTester.Response response = get("/");
+
+        assertThat(response.get("Content-Encoding"))
+                .isEqualTo("gzip");
+        assertThat(gunzip(response.getContentBytes()))
+                .isEqualTo(RESPONSE);
+
+        final Meter bytesIn = (Meter) metrics.allMetrics().get(new MetricName(BiDiGzipHandler.class, "bytes-in"));
+        final Meter bytesOut = (Meter) metrics.allMetrics().get(new MetricName(BiDiGzipHandler.class, "bytes-out"));
+        final Timer compression = (Timer) metrics.allMetrics().get(new MetricName(BiDiGzipHandler.class, "compression"));
+
+        // the deflater is recycled, and its sizes recorded, just after the response is sent
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (compression.count() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+
+        assertThat(bytesIn.count())
+                .isEqualTo(RESPONSE.length());
+        assertThat(bytesOut.count())
+                .isGreaterThan(0)
+                .isLessThan(RESPONSE.length());
+        assertThat(compression.count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotCompressExcludedPaths() throws Exception {
+        final HttpTester.Response response = get("/downloads/file.txt");
+
+        assertThat(response.get("Content-Encoding"))
+                .isNull();
+        assertThat(response.getContent())
+                .isEqualTo(RESPONSE);
+    }
+
+    @Test
+    public void lowersTheCompressionLevelWhenBusy() throws Exception {
+        gzipHandler.setCompressionLevel(9);
+        gzipHandler.setMinimumCompressionLevel(1);
+        gzipHandler.setAdaptiveThreshold(0.5);
+
+        assertThat(gzipHandler.getCompressionLevel(1.0))
+                .isEqualTo(9);
+
+        gzipHandler.setAdaptiveCompression(true);
+
+        assertThat(gzipHandler.getCompressionLevel(0.5))
+                .isEqualTo(9);
+        assertThat(gzipHandler.getCompressionLevel(0.75))
+                .isEqualTo(5);
+        assertThat(gzipHandler.getCompressionLevel(1.0))
+                .isEqualTo(1);
+    }
+
+    private HttpTester.Response get(String uri) throws Exception {
+        final HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI(uri);
+        request.setVersion("HTTP/1.1");
+        request.setHeader("Host", "localhost");
+        request.setHeader("Connection", "close");
+        request.setHeader("Accept-Encoding", "gzip");
+
+        return HttpTester.parseResponse(connector.getResponses(request.generate()));
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        final GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return new String(ByteStreams.toByteArray(input), Charsets.UTF_8);
+        } finally {
+            input.close();
+        }
+    }
+
+    private String post(String encoding, byte[] entity) throws Exception {
+        final HttpTester.Response response = send(encoding, entity);
+        assertThat(response.getStatus())
+                .isEqualTo(200);
+        return response.getContent();
+    }
+
+    private HttpTester.Response send(String encoding, byte[] entity) throws Exception {
+        return send("/", encoding, entity);
+    }
+
+    private HttpTester.Response send(String uri, String encoding, byte[] entity) throws Exception {
+        final HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("POST");
+        request.setURI(uri);
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Content-Type", "text/plain; charset=UTF-8");
+        request.setHeader("Content-Encoding", encoding);
+        request.setContent(entity);
+
+        return HttpTester.parseResponse(connector.getResponses(request.generate()));
+    }
+
+    // reads the entity on another thread, without closing it, and completes the request; the
+    // handler has no servlet context, so AsyncContext.start can't be used
+    private static void echoLater(final HttpServletRequest request, final HttpServletResponse response) {
+        final AsyncContext context = request.startAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final byte[] entity = new byte[ENTITY.length()];
+                    ByteStreams.readFully(request.getInputStream(), entity);
+                    response.getOutputStream().write(entity);
+                } catch (IOException e) {
+                    response.setStatus(500);
+                } finally {
+                    context.complete();
+                }
+            }
+        }).start();
+    }
+
+    private long rejectedEntities() {
+        return ((Meter) metrics.allMetrics().get(new MetricName(BiDiGzipHandler.class, "rejected-entities"))).count();
+    }
+
+    private Object gauge(String name) {
+        return ((Gauge<?>) metrics.allMetrics().get(new MetricName(BiDiGzipHandler.class, name))).value();
+    }
+
+    private static byte[] gzip(String entity) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final GZIPOutputStream gzip = new GZIPOutputStream(output);
+        gzip.write(entity.getBytes(Charsets.UTF_8));
+        gzip.close();
+        return output.toByteArray();
+    }
+}
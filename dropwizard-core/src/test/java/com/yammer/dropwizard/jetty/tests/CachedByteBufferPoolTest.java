@@ -0,0 +1,145 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.CachedByteBufferPool;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CachedByteBufferPoolTest {
+    private final CachedByteBufferPool pool = new CachedByteBufferPool(64, 1024, 8192, 2, 1024 * 1024, 1, true);
+
+    @Test
+    public void roundsSizesUpToTheIncrement() throws Exception {
+        final ByteBuffer buffer = pool.acquire(1500, false);
+
+        assertThat(buffer.capacity())
+                .isEqualTo(2048);
+
+        assertThat(buffer.remaining())
+                .isZero();
+    }
+
+    @Test
+    public void reusesReleasedBuffers() throws Exception {
+        final ByteBuffer buffer = pool.acquire(1024, true);
+        pool.release(buffer);
+
+        assertThat(pool.acquire(1000, true))
+                .isSameAs(buffer);
+
+        assertThat(pool.getHits())
+                .isEqualTo(1);
+
+        assertThat(pool.getMisses())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void keepsHeapAndDirectBuffersApart() throws Exception {
+        final ByteBuffer buffer = pool.acquire(1024, true);
+        pool.release(buffer);
+
+        assertThat(pool.acquire(1024, false).isDirect())
+                .isFalse();
+    }
+
+    @Test
+    public void retainsABoundedNumberOfBuffersPerBucket() throws Exception {
+        final ByteBuffer[] buffers = new ByteBuffer[5];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = pool.acquire(4096, false);
+        }
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+
+        // one in the thread's cache, two in the shared bucket, and the rest dropped
+        assertThat(pool.getRetainedBytes())
+                .isEqualTo(3 * 4096);
+    }
+
+    @Test
+    public void countsThreadCachedBuffersAgainstTheRetainedTotal() throws Exception {
+        final CachedByteBufferPool small = new CachedByteBufferPool(64, 1024, 1024, 1, 1024 * 1024, 4, false);
+        final ByteBuffer[] buffers = new ByteBuffer[4];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = small.acquire(1024, false);
+        }
+        for (ByteBuffer buffer : buffers) {
+            small.release(buffer);
+        }
+
+        // the thread's cache has room for four, but the pool only retains as much as its buckets
+        assertThat(small.getMaxRetainedBytes())
+                .isEqualTo(1024);
+
+        assertThat(small.getRetainedBytes())
+                .isEqualTo(1024);
+    }
+
+    @Test
+    public void boundsTheBuffersCachedByManyThreads() throws Exception {
+        final CachedByteBufferPool small = new CachedByteBufferPool(64, 1024, 1024, 2, 1024 * 1024, 4, false);
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    small.release(small.acquire(1024, false));
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(small.getRetainedBytes())
+                .isLessThanOrEqualTo(2 * 1024);
+    }
+
+    @Test
+    public void releasesTheBuffersCachedByDeadThreads() throws Exception {
+        final Thread thread = new Thread() {
+            @Override
+            public void run() {
+                pool.release(pool.acquire(4096, false));
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertThat(pool.getRetainedBytes())
+                .isEqualTo(4096);
+
+        for (int i = 0; i < 100 && pool.getRetainedBytes() > 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(pool.getRetainedBytes())
+                .isZero();
+    }
+
+    @Test
+    public void doesNotPoolSmallOrLargeBuffers() throws Exception {
+        pool.release(pool.acquire(32, false));
+        pool.release(pool.acquire(16384, false));
+
+        assertThat(pool.acquire(16384, false).capacity())
+                .isEqualTo(16384);
+
+        assertThat(pool.getHits())
+                .isZero();
+    }
+
+    @Test
+    public void usesHeapBuffersIfDirectBuffersAreDisabled() throws Exception {
+        final CachedByteBufferPool heapOnly = new CachedByteBufferPool(64, 1024, 8192, 2, 1024 * 1024, 1, false);
+
+        assertThat(heapOnly.acquire(1024, true).isDirect())
+                .isFalse();
+    }
+}
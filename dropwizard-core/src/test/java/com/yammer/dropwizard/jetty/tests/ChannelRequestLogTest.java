@@ -0,0 +1,125 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import com.yammer.dropwizard.jetty.ChannelRequestLog;
+import com.yammer.dropwizard.logging.RollingFileChannel;
+import com.yammer.metrics.core.Clock;
+
+public class ChannelRequestLogTest {
+    private static final String LINE =
+            "10.0.0.1 - - [16/Nov/2012:05:00:47 +0000] \"GET /test/things?yay HTTP/1.1\" 200 8290 2000 2000";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Clock clock = mock(Clock.class);
+    private final Request request = mock(Request.class);
+    private final Response response = mock(Response.class);
+
+    @Before
+    public void setUp() throws Exception {
+        when(request.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(request.getTimeStamp()).thenReturn(TimeUnit.SECONDS.toMillis(1353042047));
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getHttpURI()).thenReturn(new HttpURI("/test/things?yay"));
+        when(request.getProtocol()).thenReturn("HTTP/1.1");
+
+        when(response.getStatus()).thenReturn(200);
+        when(response.getContentCount()).thenReturn(8290L);
+
+        when(clock.time()).thenReturn(TimeUnit.SECONDS.toMillis(1353042049));
+    }
+
+    @Test
+    public void writesRequestsToTheFile() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final ChannelRequestLog log = newLog(new RollingFileChannel(file.getPath(),
+                                                                    null,
+                                                                    5,
+                                                                    TimeZone.getTimeZone("UTC")));
+        log.start();
+        log.log(request, response);
+        log.log(request, response);
+        log.stop();
+
+        assertThat(Files.readLines(file, Charsets.UTF_8))
+                .containsExactly(LINE, LINE);
+    }
+
+    @Test
+    public void rollsTheFileOverAtTimeBoundaries() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final File archive = new File(folder.getRoot(), "requests-2012-11-16.log");
+        final ChannelRequestLog log = newLog(new RollingFileChannel(file.getPath(),
+                                                                    new File(folder.getRoot(), "requests-%d.log").getPath(),
+                                                                    5,
+                                                                    TimeZone.getTimeZone("UTC")));
+        log.start();
+        log.log(request, response);
+
+        // each line fills a batch of its own, so the second rolls the file over whenever it's written
+        when(clock.time()).thenReturn(TimeUnit.SECONDS.toMillis(1353042049) + TimeUnit.DAYS.toMillis(1));
+        log.log(request, response);
+        log.stop();
+
+        assertThat(Files.readLines(archive, Charsets.UTF_8))
+                .containsExactly(LINE);
+
+        assertThat(Files.readLines(file, Charsets.UTF_8))
+                .hasSize(1);
+    }
+
+    @Test
+    public void dropsLinesLongerThanABatchBuffer() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final ChannelRequestLog log = newLog(new RollingFileChannel(file.getPath(),
+                                                                    null,
+                                                                    5,
+                                                                    TimeZone.getTimeZone("UTC")));
+        final Request longRequest = mock(Request.class);
+        when(longRequest.getRemoteAddr()).thenReturn("10.0.0.1");
+        when(longRequest.getTimeStamp()).thenReturn(TimeUnit.SECONDS.toMillis(1353042047));
+        when(longRequest.getMethod()).thenReturn("GET");
+        when(longRequest.getHttpURI()).thenReturn(new HttpURI("/" + Strings.repeat("a", 2048)));
+        when(longRequest.getProtocol()).thenReturn("HTTP/1.1");
+
+        log.start();
+        log.log(longRequest, response);
+        log.log(request, response);
+        log.stop();
+
+        assertThat(log.getDropped())
+                .isEqualTo(1);
+        assertThat(Files.readLines(file, Charsets.UTF_8))
+                .containsExactly(LINE);
+    }
+
+    private ChannelRequestLog newLog(RollingFileChannel channel) {
+        return new ChannelRequestLog(clock,
+                                     channel,
+                                     TimeZone.getTimeZone("UTC"),
+                                     128,
+                                     4,
+                                     10,
+                                     TimeUnit.MILLISECONDS,
+                                     null);
+    }
+}
@@ -0,0 +1,128 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.ConcurrencyLimitHandler;
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.eclipse.jetty.server.HttpChannelState;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ConcurrencyLimitHandlerTest {
+    private static class ManualClock extends Clock {
+        private long tick;
+
+        @Override
+        public long tick() {
+            return tick;
+        }
+    }
+
+    private class SlowHandler extends AbstractHandler {
+        private long latencyMillis = 10;
+        private boolean nested;
+        private ConcurrencyLimitHandler outer;
+
+        @Override
+        public void handle(String target,
+                           Request baseRequest,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException, ServletException {
+            if (nested) {
+                nested = false;
+                outer.handle(target, nestedRequest, nestedRequest, nestedResponse);
+            }
+            clock.tick += TimeUnit.MILLISECONDS.toNanos(latencyMillis);
+            baseRequest.setHandled(true);
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private final SlowHandler slowHandler = new SlowHandler();
+    private final ConcurrencyLimitHandler handler =
+            new ConcurrencyLimitHandler(new MetricsRegistry(), 20, 1, 100, 2.0, 1.0, clock);
+    private final Request request = mockRequest();
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+    private final Request nestedRequest = mockRequest();
+    private final HttpServletResponse nestedResponse = mock(HttpServletResponse.class);
+
+    @Before
+    public void setUp() throws Exception {
+        handler.setHandler(slowHandler);
+        handler.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        handler.stop();
+    }
+
+    @Test
+    public void admitsRequestsUnderTheLimit() throws Exception {
+        handler.handle("/", request, request, response);
+
+        verify(response, never()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+        assertThat(handler.getInFlight())
+                .isZero();
+    }
+
+    @Test
+    public void shrinksTheLimitWhenRequestsSlowDown() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            handler.handle("/", request, request, response);
+        }
+
+        slowHandler.latencyMillis = 100;
+        for (int i = 0; i < 100; i++) {
+            handler.handle("/", request, request, response);
+        }
+
+        assertThat(handler.getLimit())
+                .isLessThan(20);
+    }
+
+    @Test
+    public void rejectsRequestsOverTheLimit() throws Exception {
+        final ConcurrencyLimitHandler limited =
+                new ConcurrencyLimitHandler(new MetricsRegistry(), 1, 1, 1, 2.0, 1.0, clock);
+        limited.setHandler(slowHandler);
+        limited.start();
+        try {
+            slowHandler.outer = limited;
+            slowHandler.nested = true;
+            limited.handle("/", request, request, response);
+
+            verify(response, never()).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            verify(nestedResponse).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+            assertThat(limited.getInFlight())
+                    .isZero();
+        } finally {
+            limited.stop();
+        }
+    }
+
+    private static Request mockRequest() {
+        final HttpChannelState state = mock(HttpChannelState.class);
+        when(state.isInitial()).thenReturn(true);
+
+        final Request request = mock(Request.class);
+        when(request.getHttpChannelState()).thenReturn(state);
+        return request;
+    }
+}
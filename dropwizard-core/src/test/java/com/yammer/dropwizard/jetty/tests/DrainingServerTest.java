@@ -0,0 +1,218 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.health.ShutdownHealthCheck;
+import com.yammer.dropwizard.jetty.DrainingServer;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DrainingServerTest {
+    private class BlockingHandler extends AbstractHandler {
+        @Override
+        public void handle(String target,
+                           Request baseRequest,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException, ServletException {
+            events.add("request started");
+            requestStarted.countDown();
+            if (target.startsWith("/block")) {
+                try {
+                    unblock.await();
+                } catch (InterruptedException e) {
+                    throw new ServletException(e);
+                }
+            }
+            baseRequest.setHandled(true);
+            response.getWriter().write("done");
+            events.add("request finished");
+        }
+    }
+
+    private class ManagedBean extends AbstractLifeCycle {
+        @Override
+        protected void doStop() throws Exception {
+            events.add("bean stopped");
+            healthyWhenBeanStopped = healthCheck.execute().isHealthy();
+        }
+    }
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ShutdownHealthCheck healthCheck = new ShutdownHealthCheck();
+    private final List<String> events = new CopyOnWriteArrayList<String>();
+    private final CountDownLatch requestStarted = new CountDownLatch(1);
+    private final CountDownLatch unblock = new CountDownLatch(1);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private volatile boolean healthyWhenBeanStopped = true;
+    private DrainingServer server;
+    private LocalConnector connector;
+
+    @After
+    public void tearDown() throws Exception {
+        unblock.countDown();
+        executor.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void failsTheHealthCheckBeforeDrainingRequests() throws Exception {
+        start(Duration.milliseconds(0), 5000);
+
+        final Future<HttpTester.Response> response = getLater("/block");
+        requestStarted.await();
+
+        assertThat(healthCheck.execute().isHealthy())
+                .isTrue();
+
+        final Future<Void> stopped = stopLater();
+        awaitShutdownStarted();
+
+        // the request is still in flight when the health check fails
+        assertThat(healthCheck.execute().isHealthy())
+                .isFalse();
+
+        assertThat(events)
+                .containsExactly("request started");
+
+        unblock.countDown();
+        stopped.get();
+
+        assertThat(response.get().getContent())
+                .isEqualTo("done");
+
+        assertThat(events)
+                .containsExactly("request started", "request finished", "bean stopped");
+
+        assertThat(healthyWhenBeanStopped)
+                .isFalse();
+    }
+
+    @Test
+    public void keepsServingRequestsDuringTheShutdownDelay() throws Exception {
+        start(Duration.milliseconds(500), 5000);
+
+        final Future<Void> stopped = stopLater();
+        awaitShutdownStarted();
+
+        assertThat(get("/").getContent())
+                .isEqualTo("done");
+
+        stopped.get();
+
+        assertThat(timer("deregistration").max())
+                .isGreaterThanOrEqualTo(500.0);
+    }
+
+    @Test
+    public void stopsAfterTheGracePeriodEvenIfRequestsAreInFlight() throws Exception {
+        start(Duration.milliseconds(0), 100);
+
+        getLater("/block");
+        requestStarted.await();
+
+        final long started = System.nanoTime();
+        server.stop();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(elapsed)
+                .isLessThan(5000);
+
+        assertThat(timer("drain").max())
+                .isGreaterThanOrEqualTo(100.0);
+
+        assertThat(events)
+                .containsExactly("request started", "bean stopped");
+    }
+
+    @Test
+    public void timesEachPhase() throws Exception {
+        start(Duration.milliseconds(0), 1000);
+
+        server.stop();
+
+        for (String phase : new String[]{ "fail-health-checks", "deregistration", "stop-accepting", "drain", "stop" }) {
+            assertThat(timer(phase).count())
+                    .isEqualTo(1);
+        }
+    }
+
+    private void start(Duration shutdownDelay, long stopTimeoutMillis) throws Exception {
+        this.server = new DrainingServer(null, healthCheck, shutdownDelay, metrics);
+        this.connector = new LocalConnector(server);
+        server.addConnector(connector);
+
+        final StatisticsHandler statistics = new StatisticsHandler();
+        statistics.setHandler(new BlockingHandler());
+        server.setHandler(statistics);
+        server.addBean(new ManagedBean());
+        server.setStopTimeout(stopTimeoutMillis);
+        server.start();
+    }
+
+    private void awaitShutdownStarted() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!healthCheck.isShuttingDown() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(healthCheck.isShuttingDown())
+                .isTrue();
+    }
+
+    private Timer timer(String phase) {
+        return (Timer) metrics.allMetrics().get(new MetricName(Server.class, "shutdown-" + phase));
+    }
+
+    private Future<Void> stopLater() {
+        return executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                server.stop();
+                return null;
+            }
+        });
+    }
+
+    private Future<HttpTester.Response> getLater(final String uri) {
+        return executor.submit(new Callable<HttpTester.Response>() {
+            @Override
+            public HttpTester.Response call() throws Exception {
+                return get(uri);
+            }
+        });
+    }
+
+    private HttpTester.Response get(String uri) throws Exception {
+        final HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI(uri);
+        request.setVersion("HTTP/1.1");
+        request.setHeader("Host", "localhost");
+        request.setHeader("Connection", "close");
+
+        return HttpTester.parseResponse(connector.getResponses(request.generate()));
+    }
+}
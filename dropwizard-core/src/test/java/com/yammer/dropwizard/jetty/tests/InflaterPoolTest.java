@@ -0,0 +1,54 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.InflaterPool;
+import org.junit.Test;
+
+import java.util.zip.Inflater;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class InflaterPoolTest {
+    private final InflaterPool pool = new InflaterPool(true, 1);
+
+    @Test
+    public void reusesReleasedInflaters() throws Exception {
+        final Inflater inflater = pool.acquire();
+
+        assertThat(pool.getInUse())
+                .isEqualTo(1);
+
+        pool.release(inflater);
+
+        assertThat(pool.acquire())
+                .isSameAs(inflater);
+
+        assertThat(pool.getCreated())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void onlyKeepsUpToItsCapacity() throws Exception {
+        final Inflater first = pool.acquire();
+        final Inflater second = pool.acquire();
+
+        pool.release(first);
+        pool.release(second);
+
+        assertThat(pool.getIdle())
+                .isEqualTo(1);
+        assertThat(pool.getInUse())
+                .isZero();
+    }
+
+    @Test
+    public void endsInflatersReleasedAfterItsClosed() throws Exception {
+        final Inflater inflater = pool.acquire();
+        pool.close();
+        pool.release(inflater);
+
+        assertThat(pool.getIdle())
+                .isZero();
+        assertThat(pool.acquire())
+                .isNotSameAs(inflater);
+    }
+}
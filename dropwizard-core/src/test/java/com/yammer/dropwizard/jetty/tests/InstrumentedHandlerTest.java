@@ -0,0 +1,264 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.InstrumentedHandler;
+import com.yammer.dropwizard.jetty.LatencyRecorder;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class InstrumentedHandlerTest {
+    public static class OkHandler extends AbstractHandler {
+        @Override
+        public void handle(String target,
+                           Request baseRequest,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException, ServletException {
+            baseRequest.setHandled(true);
+            if (target.startsWith("/async")) {
+                final AsyncContext context = request.startAsync();
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(ASYNC_DELAY_MILLIS);
+                            context.getResponse().getWriter().write("ok");
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        } finally {
+                            context.complete();
+                        }
+                    }
+                }).start();
+            } else {
+                response.getWriter().write("ok");
+            }
+        }
+    }
+
+    /**
+     * Replaces the request's method with the value of the {@code X-Method} header, which is a
+     * string of its own rather than one of the constants Jetty's parser uses for known methods.
+     */
+    private static class MethodOverrideHandler extends HandlerWrapper {
+        @Override
+        public void handle(String target,
+                           Request baseRequest,
+                           HttpServletRequest request,
+                           HttpServletResponse response) throws IOException, ServletException {
+            final String method = request.getHeader("X-Method");
+            if (method != null) {
+                baseRequest.setMethod(new String(method));
+            }
+            super.handle(target, baseRequest, request, response);
+        }
+    }
+
+    private static final long ASYNC_DELAY_MILLIS = 100;
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final Server server = new Server();
+    private final LocalConnector connector = new LocalConnector(server);
+
+    @Before
+    public void setUp() throws Exception {
+        final InstrumentedHandler instrumented = new InstrumentedHandler(registry, 50, TimeUnit.MILLISECONDS);
+        instrumented.setHandler(new OkHandler());
+
+        final MethodOverrideHandler override = new MethodOverrideHandler();
+        override.setHandler(instrumented);
+
+        server.addConnector(connector);
+        server.setHandler(override);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void timesKnownMethodsWithTheirOwnTimers() throws Exception {
+        for (String method : new String[]{ "GET", "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS" }) {
+            assertThat(request(method, null).getStatus())
+                    .isEqualTo(200);
+        }
+
+        assertThat(timer("get-requests").count())
+                .isEqualTo(2);
+
+        for (String name : new String[]{ "post-requests", "put-requests", "delete-requests",
+                                         "head-requests", "options-requests" }) {
+            assertThat(timer(name).count())
+                    .isEqualTo(1);
+        }
+
+        assertThat(timer("other-requests").count())
+                .isZero();
+
+        assertThat(timer("requests").count())
+                .isEqualTo(7);
+    }
+
+    @Test
+    public void timesUnknownMethodsAsOtherRequests() throws Exception {
+        request("PROPFIND", null);
+        request("PATCH", null);
+
+        assertThat(timer("other-requests").count())
+                .isEqualTo(2);
+
+        assertThat(timer("get-requests").count())
+                .isZero();
+
+        assertThat(timer("requests").count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void timesKnownMethodsWithoutTheirOwnTimersAsOtherRequests() throws Exception {
+        request("GET", "PROXY");
+
+        assertThat(timer("other-requests").count())
+                .isEqualTo(1);
+
+        assertThat(timer("get-requests").count())
+                .isZero();
+    }
+
+    @Test
+    public void looksUpMethodsWhichAreNotJettysConstants() throws Exception {
+        request("GET", "GET");
+        request("GET", "PUT");
+
+        assertThat(timer("get-requests").count())
+                .isEqualTo(1);
+
+        assertThat(timer("put-requests").count())
+                .isEqualTo(1);
+
+        assertThat(timer("other-requests").count())
+                .isZero();
+    }
+
+    @Test
+    public void looksUpMethodsRegardlessOfCase() throws Exception {
+        request("GET", "post");
+
+        assertThat(timer("post-requests").count())
+                .isEqualTo(1);
+
+        assertThat(timer("other-requests").count())
+                .isZero();
+    }
+
+    @Test
+    public void recordsTheLatencyOfSynchronousRequests() throws Exception {
+        assertThat(request("GET", null).getContent())
+                .isEqualTo("ok");
+
+        assertThat(awaitLatencies("requests").getCount())
+                .isEqualTo(1);
+
+        assertThat(awaitLatencies("get-requests").getCount())
+                .isEqualTo(1);
+
+        assertThat(awaitLatencies("dispatches").getCount())
+                .isEqualTo(1);
+
+        assertThat(latencies("other-requests").getCount())
+                .isZero();
+    }
+
+    @Test
+    public void recordsTheLatencyOfAsynchronousRequestsUntilTheyComplete() throws Exception {
+        assertThat(requestAsync().getContent())
+                .isEqualTo("ok");
+
+        final LatencyRecorder.Snapshot requests = awaitLatencies("requests");
+        final LatencyRecorder.Snapshot dispatches = awaitLatencies("dispatches");
+
+        assertThat(requests.getCount())
+                .isEqualTo(1);
+
+        // measured from when the request entered the handler until it completed on another thread
+        assertThat(requests.getMax())
+                .isGreaterThanOrEqualTo(ASYNC_DELAY_MILLIS);
+
+        assertThat(awaitLatencies("get-requests").getMax())
+                .isGreaterThanOrEqualTo(ASYNC_DELAY_MILLIS);
+
+        // the initial dispatch returned without waiting for the request to complete
+        assertThat(dispatches.getCount())
+                .isEqualTo(1);
+
+        assertThat(dispatches.getMax())
+                .isLessThan(ASYNC_DELAY_MILLIS);
+    }
+
+    private LatencyRecorder latencyRecorder(String timerName) {
+        return (LatencyRecorder) registry.allMetrics().get(new MetricName(OkHandler.class, timerName + "-latency"));
+    }
+
+    private LatencyRecorder.Snapshot latencies(String timerName) {
+        return latencyRecorder(timerName).value();
+    }
+
+    /**
+     * Reads the gauge until an interval which recorded something has ended.
+     */
+    private LatencyRecorder.Snapshot awaitLatencies(String timerName) throws InterruptedException {
+        final LatencyRecorder recorder = latencyRecorder(timerName);
+        final long deadline = System.currentTimeMillis() + 5000;
+        LatencyRecorder.Snapshot snapshot = recorder.value();
+        while (snapshot.getCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+            snapshot = recorder.value();
+        }
+        return snapshot;
+    }
+
+    private Timer timer(String name) {
+        return (Timer) registry.allMetrics().get(new MetricName(OkHandler.class, name));
+    }
+
+    private HttpTester.Response requestAsync() throws Exception {
+        return request("GET", "/async", null);
+    }
+
+    private HttpTester.Response request(String method, String override) throws Exception {
+        return request(method, "/", override);
+    }
+
+    private HttpTester.Response request(String method, String uri, String override) throws Exception {
+        final HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod(method);
+        request.setURI(uri);
+        request.setVersion("HTTP/1.1");
+        request.setHeader("Host", "localhost");
+        request.setHeader("Connection", "close");
+        if (override != null) {
+            request.setHeader("X-Method", override);
+        }
+
+        return HttpTester.parseResponse(connector.getResponses(request.generate()));
+    }
+}
@@ -2,9 +2,13 @@ package com.yammer.dropwizard.jetty.tests;
 
 import com.yammer.dropwizard.jetty.JettyManaged;
 import com.yammer.dropwizard.lifecycle.Managed;
+import com.yammer.dropwizard.util.Duration;
 import org.junit.Test;
 import org.mockito.InOrder;
 
+import java.util.concurrent.CountDownLatch;
+
+import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 
@@ -21,4 +25,28 @@ public class JettyManagedTest {
         inOrder.verify(managed).start();
         inOrder.verify(managed).stop();
     }
+
+    @Test
+    public void abandonsObjectsWhichTakeTooLongToStop() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final JettyManaged stuck = new JettyManaged(new Managed() {
+            @Override
+            public void start() throws Exception {
+            }
+
+            @Override
+            public void stop() throws Exception {
+                release.await();
+            }
+        });
+        stuck.setStopTimeout(Duration.milliseconds(50));
+
+        stuck.start();
+        stuck.stop();
+
+        assertThat(stuck.isStopped())
+                .isTrue();
+
+        release.countDown();
+    }
 }
@@ -0,0 +1,230 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.LatencyRecorder;
+import com.yammer.metrics.core.Clock;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+
+public class LatencyRecorderTest {
+    private static class ManualClock extends Clock {
+        private long tick;
+
+        @Override
+        public long tick() {
+            return tick;
+        }
+    }
+
+    private final ManualClock clock = new ManualClock();
+    private final LatencyRecorder recorder = new LatencyRecorder(clock, 1, TimeUnit.MINUTES);
+
+    @Test
+    public void reportsNothingUntilTheFirstIntervalEnds() throws Exception {
+        recorder.update(1, TimeUnit.MILLISECONDS);
+
+        assertThat(recorder.value().getCount())
+                .isZero();
+    }
+
+    @Test
+    public void reportsSubMillisecondPercentilesForTheLastInterval() throws Exception {
+        for (int i = 1; i <= 1000; i++) {
+            recorder.update(i, TimeUnit.MICROSECONDS);
+        }
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        final LatencyRecorder.Snapshot snapshot = recorder.value();
+
+        assertThat(snapshot.getCount())
+                .isEqualTo(1000);
+
+        assertThat(snapshot.getMin())
+                .isEqualTo(0.001, offset(0.00001));
+
+        assertThat(snapshot.getMax())
+                .isEqualTo(1.0, offset(0.00001));
+
+        assertThat(snapshot.getMean())
+                .isEqualTo(0.5005, offset(0.00001));
+
+        assertThat(snapshot.getMedian())
+                .isEqualTo(0.5, offset(0.005));
+
+        assertThat(snapshot.get999thPercentile())
+                .isEqualTo(0.999, offset(0.01));
+    }
+
+    @Test
+    public void startsEachIntervalEmpty() throws Exception {
+        recorder.update(5, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        assertThat(recorder.value().getCount())
+                .isEqualTo(1);
+
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        assertThat(recorder.value().getCount())
+                .isZero();
+    }
+
+    @Test
+    public void reportsEveryMagnitudeWithinOnePercent() throws Exception {
+        final long[] values = {
+                10, 127, 128, 1000, 12345, 999999, 4567890, 1234567890L, 3000000000000L
+        };
+        for (long value : values) {
+            final LatencyRecorder single = new LatencyRecorder(clock, 1, TimeUnit.MINUTES);
+            // the median is the middle value's bucket, within the min and max
+            single.update(value / 2, TimeUnit.NANOSECONDS);
+            single.update(value, TimeUnit.NANOSECONDS);
+            single.update(value * 2, TimeUnit.NANOSECONDS);
+            clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+            final double expected = value / 1000000.0;
+            assertThat(single.value().getMedian())
+                    .isEqualTo(expected, offset(expected * 0.01));
+        }
+    }
+
+    @Test
+    public void countsSmallValuesExactly() throws Exception {
+        for (int i = 0; i < 128; i++) {
+            recorder.update(i, TimeUnit.NANOSECONDS);
+        }
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        final LatencyRecorder.Snapshot snapshot = recorder.value();
+
+        assertThat(snapshot.getValue(0.5))
+                .isEqualTo(63 / 1000000.0, offset(1e-12));
+        assertThat(snapshot.getValue(1.0))
+                .isEqualTo(127 / 1000000.0, offset(1e-12));
+    }
+
+    @Test
+    public void clampsVeryLongLatencies() throws Exception {
+        recorder.update(10, TimeUnit.DAYS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        assertThat(recorder.value().getMax())
+                .isEqualTo(((1L << 42) - 1) / 1000000.0, offset(0.001));
+    }
+
+    @Test
+    public void reportsOnlyTheLatestInterval() throws Exception {
+        recorder.update(1, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+        recorder.value();
+
+        recorder.update(100, TimeUnit.MILLISECONDS);
+        recorder.update(100, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        final LatencyRecorder.Snapshot snapshot = recorder.value();
+
+        assertThat(snapshot.getCount())
+                .isEqualTo(2);
+        assertThat(snapshot.getMin())
+                .isEqualTo(100.0, offset(0.00001));
+    }
+
+    @Test
+    public void reportsEverythingSinceTheLastReadWhenReadLessThanOncePerInterval() throws Exception {
+        recorder.update(1, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+        recorder.update(2, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        assertThat(recorder.value().getCount())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void keepsReportingAnIntervalUntilItEnds() throws Exception {
+        recorder.update(1, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+        final LatencyRecorder.Snapshot snapshot = recorder.value();
+
+        recorder.update(1, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.SECONDS.toNanos(30);
+
+        assertThat(recorder.value())
+                .isSameAs(snapshot);
+    }
+
+    @Test
+    public void reportsConsecutiveEmptyIntervals() throws Exception {
+        recorder.update(1, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) {
+            clock.tick += TimeUnit.MINUTES.toNanos(1);
+            recorder.value();
+        }
+
+        assertThat(recorder.value().getCount())
+                .isZero();
+        assertThat(recorder.value().getMedian())
+                .isZero();
+
+        recorder.update(2, TimeUnit.MILLISECONDS);
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+
+        assertThat(recorder.value().getCount())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void endsEachEmptyIntervalLaterThanTheLast() throws Exception {
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+        final LatencyRecorder.Snapshot first = recorder.value();
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+        final LatencyRecorder.Snapshot second = recorder.value();
+
+        assertThat(first.getCount())
+                .isZero();
+
+        assertThat(second.getCount())
+                .isZero();
+
+        assertThat(second.getEnd())
+                .isGreaterThan(first.getEnd());
+
+        assertThat(recorder.value().getEnd())
+                .isEqualTo(second.getEnd());
+    }
+
+    @Test
+    public void losesNoUpdatesWhileSwapping() throws Exception {
+        final int writers = 4;
+        final int updates = 100000;
+        final CountDownLatch done = new CountDownLatch(writers);
+        for (int i = 0; i < writers; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < updates; j++) {
+                        recorder.update(j, TimeUnit.MICROSECONDS);
+                    }
+                    done.countDown();
+                }
+            }).start();
+        }
+
+        long count = 0;
+        while (done.getCount() > 0) {
+            clock.tick += TimeUnit.MINUTES.toNanos(1);
+            count += recorder.value().getCount();
+        }
+        done.await();
+        clock.tick += TimeUnit.MINUTES.toNanos(1);
+        count += recorder.value().getCount();
+
+        assertThat(count)
+                .isEqualTo((long) writers * updates);
+    }
+}
@@ -0,0 +1,169 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.yammer.dropwizard.jetty.RequestLogRingBuffer;
+import com.yammer.dropwizard.jetty.RequestLogRingBuffer.OverflowPolicy;
+
+public class RequestLogRingBufferTest {
+    private static class CollectingHandler implements RequestLogRingBuffer.SlotHandler {
+        private final List<String> lines = Lists.newArrayList();
+
+        @Override
+        public void handle(byte[] bytes, int length) {
+            lines.add(new String(bytes, 0, length, Charsets.UTF_8));
+        }
+    }
+
+    private final CollectingHandler handler = new CollectingHandler();
+
+    @Test
+    public void roundsTheCapacityUpToAPowerOfTwo() throws Exception {
+        assertThat(new RequestLogRingBuffer(1000, 16, OverflowPolicy.DROP, 1).getCapacity())
+                .isEqualTo(1024);
+
+        assertThat(new RequestLogRingBuffer(1024, 16, OverflowPolicy.DROP, 1).getCapacity())
+                .isEqualTo(1024);
+    }
+
+    @Test
+    public void drainsEntriesInOrder() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(4, 16, OverflowPolicy.DROP, 1);
+        buffer.publish("one");
+        buffer.publish("two");
+
+        assertThat(buffer.getDepth())
+                .isEqualTo(2);
+
+        assertThat(buffer.drain(handler, 10))
+                .isEqualTo(2);
+
+        assertThat(handler.lines)
+                .containsExactly("one", "two");
+
+        assertThat(buffer.isEmpty())
+                .isTrue();
+    }
+
+    @Test
+    public void reusesSlotsAcrossLaps() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 16, OverflowPolicy.DROP, 1);
+        for (int i = 0; i < 5; i++) {
+            assertThat(buffer.publish("entry-" + i))
+                    .isTrue();
+            buffer.drain(handler, 10);
+        }
+
+        assertThat(handler.lines)
+                .containsExactly("entry-0", "entry-1", "entry-2", "entry-3", "entry-4");
+    }
+
+    @Test
+    public void encodesNonAsciiCharactersAsUtf8() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 16, OverflowPolicy.DROP, 1);
+        buffer.publish("/café/☃/😀");
+        buffer.drain(handler, 1);
+
+        assertThat(handler.lines)
+                .containsExactly("/café/☃/😀");
+
+        assertThat(buffer.getTruncated())
+                .isZero();
+    }
+
+    @Test
+    public void truncatesLinesLongerThanASlot() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 8, OverflowPolicy.DROP, 1);
+        assertThat(buffer.publish("0123456789"))
+                .isTrue();
+        buffer.publish("01234567");
+        buffer.drain(handler, 10);
+
+        assertThat(handler.lines)
+                .containsExactly("01234567", "01234567");
+
+        assertThat(buffer.getTruncated())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotTruncateInTheMiddleOfACharacter() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 8, OverflowPolicy.DROP, 1);
+        // 6 bytes, then a 4-byte surrogate pair
+        buffer.publish("/café😀");
+        // 7 bytes, then a 3-byte char
+        buffer.publish("/cafés☃");
+        buffer.drain(handler, 10);
+
+        assertThat(handler.lines)
+                .containsExactly("/café", "/cafés");
+
+        assertThat(buffer.getTruncated())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void dropsEntriesWhenFull() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 16, OverflowPolicy.DROP, 1);
+        assertThat(buffer.publish("one")).isTrue();
+        assertThat(buffer.publish("two")).isTrue();
+        assertThat(buffer.publish("three")).isFalse();
+
+        assertThat(buffer.getDropped())
+                .isEqualTo(1);
+
+        buffer.drain(handler, 10);
+        assertThat(handler.lines)
+                .containsExactly("one", "two");
+    }
+
+    @Test
+    public void blockedProducersAreReleasedWhenClosed() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 16, OverflowPolicy.BLOCK, 1);
+        buffer.publish("one");
+        buffer.publish("two");
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                buffer.publish("three");
+            }
+        });
+        producer.start();
+        buffer.close();
+        producer.join(1000);
+
+        assertThat(producer.isAlive())
+                .isFalse();
+
+        assertThat(buffer.getDropped())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void blockedProducersResumeWhenSlotsAreFreed() throws Exception {
+        final RequestLogRingBuffer buffer = new RequestLogRingBuffer(2, 16, OverflowPolicy.BLOCK, 1);
+        buffer.publish("one");
+        buffer.publish("two");
+
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                buffer.publish("three");
+            }
+        });
+        producer.start();
+        buffer.drain(handler, 1);
+        producer.join(1000);
+        buffer.drain(handler, 10);
+
+        assertThat(handler.lines)
+                .containsExactly("one", "two", "three");
+    }
+}
@@ -0,0 +1,74 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.google.common.collect.ImmutableMap;
+import com.yammer.dropwizard.jetty.RoutedServerConnector;
+import com.yammer.dropwizard.jetty.RoutingHandler;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RoutingHandlerTest {
+    private final Server server = new Server();
+    private final RoutedServerConnector tenantA = new RoutedServerConnector(server, null, null, null, 1, 1);
+    private final RoutedServerConnector tenantB = new RoutedServerConnector(server, null, null, null, 1, 1);
+    private final Connector admin = mock(Connector.class);
+
+    private final Handler application = mock(Handler.class);
+    private final Handler adminHandler = mock(Handler.class);
+
+    private final RoutingHandler handler = new RoutingHandler(ImmutableMap.<Connector, Handler>of(
+            tenantA, application,
+            tenantB, application,
+            admin, adminHandler));
+
+    private final HttpServletRequest request = mock(HttpServletRequest.class);
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+
+    @Test
+    public void attachesHandlersToRoutedConnectors() throws Exception {
+        assertThat(tenantA.getRoutedHandler())
+                .isSameAs(application);
+
+        assertThat(tenantB.getRoutedHandler())
+                .isSameAs(application);
+    }
+
+    @Test
+    public void addsSharedHandlersOnce() throws Exception {
+        assertThat(handler.getHandlers())
+                .containsOnly(application, adminHandler);
+    }
+
+    @Test
+    public void routesRequestsByConnector() throws Exception {
+        final Request fromTenant = requestFrom(tenantB);
+        handler.handle("/", fromTenant, request, response);
+
+        verify(application).handle("/", fromTenant, request, response);
+
+        final Request fromAdmin = requestFrom(admin);
+        handler.handle("/", fromAdmin, request, response);
+
+        verify(adminHandler).handle("/", fromAdmin, request, response);
+    }
+
+    private Request requestFrom(Connector connector) {
+        final HttpChannel channel = mock(HttpChannel.class);
+        when(channel.getConnector()).thenReturn(connector);
+
+        final Request baseRequest = mock(Request.class);
+        when(baseRequest.getHttpChannel()).thenReturn(channel);
+        return baseRequest;
+    }
+}
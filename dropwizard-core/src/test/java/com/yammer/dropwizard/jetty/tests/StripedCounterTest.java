@@ -0,0 +1,96 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.StripedCounter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class StripedCounterTest {
+    private final StripedCounter counter = new StripedCounter(4);
+
+    @Test
+    public void startsAtZero() throws Exception {
+        assertThat(counter.count())
+                .isZero();
+    }
+
+    @Test
+    public void incrementsAndDecrements() throws Exception {
+        counter.inc();
+        counter.inc();
+        counter.dec();
+        counter.inc(10);
+
+        assertThat(counter.count())
+                .isEqualTo(11);
+
+        counter.dec(11);
+
+        assertThat(counter.count())
+                .isZero();
+    }
+
+    @Test
+    public void canBeCleared() throws Exception {
+        counter.inc(5);
+        counter.clear();
+
+        assertThat(counter.count())
+                .isZero();
+    }
+
+    @Test
+    public void isRegisteredAsAGauge() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final MetricName name = new MetricName(StripedCounterTest.class, "active");
+
+        final StripedCounter counter = StripedCounter.register(registry, name);
+        counter.inc(3);
+
+        assertThat(registry.allMetrics().get(name))
+                .isSameAs(counter);
+
+        assertThat(counter.value())
+                .isEqualTo(3L);
+
+        assertThat(StripedCounter.register(registry, name))
+                .isSameAs(counter);
+    }
+
+    @Test
+    public void sumsUpdatesFromManyThreads() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int j = 0; j < 10000; j++) {
+                        counter.inc();
+                        counter.inc();
+                        counter.dec();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(counter.count())
+                .isEqualTo(16 * 10000);
+    }
+}
@@ -0,0 +1,95 @@
+package com.yammer.dropwizard.jetty.tests;
+
+import com.yammer.dropwizard.jetty.VirtualThreadPool;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.junit.Assume.assumeTrue;
+
+public class VirtualThreadPoolTest {
+    private final VirtualThreadPool pool = new VirtualThreadPool(new MetricsRegistry(), 2, 1);
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue(VirtualThreadPool.isSupported());
+        pool.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pool.stop();
+    }
+
+    @Test
+    public void runsJobsOnNamedThreads() throws Exception {
+        final CountDownLatch ran = new CountDownLatch(1);
+        final StringBuilder name = new StringBuilder();
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                name.append(Thread.currentThread().getName());
+                ran.countDown();
+            }
+        });
+
+        assertThat(ran.await(5, TimeUnit.SECONDS))
+                .isTrue();
+
+        assertThat(name.toString())
+                .startsWith("dw-");
+    }
+
+    @Test
+    public void queuesJobsBeyondTheConcurrencyLimit() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(3);
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                final int now = running.incrementAndGet();
+                maxRunning.set(Math.max(maxRunning.get(), now));
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    running.decrementAndGet();
+                    finished.countDown();
+                }
+            }
+        };
+
+        pool.execute(job);
+        pool.execute(job);
+        pool.execute(job);
+
+        assertThat(pool.isLowOnThreads())
+                .isTrue();
+
+        try {
+            pool.execute(job);
+            failBecauseExceptionWasNotThrown(RejectedExecutionException.class);
+        } catch (RejectedExecutionException ignored) {
+            // the queue only holds one job
+        }
+
+        release.countDown();
+
+        assertThat(finished.await(5, TimeUnit.SECONDS))
+                .isTrue();
+
+        assertThat(maxRunning.get())
+                .isLessThanOrEqualTo(2);
+    }
+}
@@ -0,0 +1,240 @@
+package com.yammer.dropwizard.logging.tests;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.LayoutBase;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.LayoutWrappingEncoder;
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.yammer.dropwizard.logging.AsyncAppender;
+import com.yammer.dropwizard.util.Duration;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Meter;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.yammer.dropwizard.config.LoggingConfiguration.AsyncConfiguration;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AsyncAppenderTest {
+    private static class RecordingAppender extends AppenderBase<ILoggingEvent> {
+        private final List<ILoggingEvent> events = Lists.newCopyOnWriteArrayList();
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch gate;
+
+        private RecordingAppender(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        protected void append(ILoggingEvent eventObject) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(eventObject);
+        }
+    }
+
+    private static class CountingOutputStream extends ByteArrayOutputStream {
+        private int writes;
+        private int flushes;
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            flushes++;
+        }
+    }
+
+    private final LoggerContext context = new LoggerContext();
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    public void flushesQueuedEventsOnStop() throws Exception {
+        final RecordingAppender delegate = newDelegate(new CountDownLatch(0));
+        final Appender<ILoggingEvent> appender = AsyncAppender.wrap(delegate, new AsyncConfiguration(), "test", registry);
+
+        for (int i = 0; i < 100; i++) {
+            appender.doAppend(event(Level.INFO));
+        }
+        appender.stop();
+
+        assertThat(delegate.events)
+                .hasSize(100);
+
+        assertThat(delegate.isStarted())
+                .isFalse();
+    }
+
+    @Test
+    public void reportsTheQueueDepthOfTheLatestAppender() throws Exception {
+        final MetricName name = new MetricName(AsyncAppender.class, "queue-depth", "test");
+        final Appender<ILoggingEvent> first = AsyncAppender.wrap(newDelegate(new CountDownLatch(0)),
+                                                                 new AsyncConfiguration(),
+                                                                 "test",
+                                                                 registry);
+        final Gauge<?> firstGauge = (Gauge<?>) registry.allMetrics().get(name);
+
+        final CountDownLatch gate = new CountDownLatch(1);
+        final RecordingAppender delegate = newDelegate(gate);
+        final Appender<ILoggingEvent> second = AsyncAppender.wrap(delegate,
+                                                                  new AsyncConfiguration(),
+                                                                  "test",
+                                                                  registry);
+        first.stop();
+
+        // the first event is taken by the dispatcher, which then blocks in the delegate
+        second.doAppend(event(Level.INFO));
+        delegate.entered.await();
+        second.doAppend(event(Level.INFO));
+        second.doAppend(event(Level.INFO));
+
+        final Gauge<?> secondGauge = (Gauge<?>) registry.allMetrics().get(name);
+        assertThat((Object) secondGauge)
+                .isNotSameAs(firstGauge);
+        assertThat(secondGauge.value())
+                .isEqualTo(2);
+
+        gate.countDown();
+        second.stop();
+
+        assertThat(registry.allMetrics().get(name))
+                .isNull();
+    }
+
+    @Test
+    public void discardsLowPriorityEventsWhenTheQueueIsNearlyFull() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final RecordingAppender delegate = newDelegate(gate);
+
+        final AsyncConfiguration config = new AsyncConfiguration();
+        config.setQueueSize(10);
+        config.setDiscardingThreshold(50);
+        config.setNeverBlock(true);
+        config.setShutdownTimeout(Duration.seconds(5));
+        final Appender<ILoggingEvent> appender = AsyncAppender.wrap(delegate, config, "test", registry);
+
+        // the first event is taken by the dispatcher, which then blocks in the delegate
+        appender.doAppend(event(Level.INFO));
+        delegate.entered.await();
+
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(event(Level.INFO));
+        }
+        for (int i = 0; i < 10; i++) {
+            appender.doAppend(event(Level.ERROR));
+        }
+
+        gate.countDown();
+        appender.stop();
+
+        int errors = 0;
+        for (ILoggingEvent event : delegate.events) {
+            if (event.getLevel() == Level.ERROR) {
+                errors++;
+            }
+        }
+
+        // INFO events are accepted until the queue is more than half full (6 of 10), leaving the
+        // remaining 4 slots for ERROR events
+        assertThat(delegate.events)
+                .hasSize(11);
+
+        assertThat(errors)
+                .isEqualTo(4);
+
+        final Meter discarded = (Meter) registry.allMetrics()
+                                                .get(new MetricName(AsyncAppender.class, "discarded", "test"));
+        assertThat(discarded.count())
+                .isEqualTo(10);
+    }
+
+    @Test
+    public void writesEachBatchWithASingleWrite() throws Exception {
+        final CountingOutputStream output = new CountingOutputStream();
+
+        final LayoutBase<ILoggingEvent> layout = new LayoutBase<ILoggingEvent>() {
+            @Override
+            public String doLayout(ILoggingEvent event) {
+                return event.getMessage() + "\n";
+            }
+        };
+        layout.setContext(context);
+        layout.start();
+
+        final LayoutWrappingEncoder<ILoggingEvent> encoder = new LayoutWrappingEncoder<ILoggingEvent>();
+        encoder.setContext(context);
+        encoder.setLayout(layout);
+        encoder.start();
+
+        // like ConsoleAppender, (re)attach the stream whenever the appender is started
+        final OutputStreamAppender<ILoggingEvent> delegate = new OutputStreamAppender<ILoggingEvent>() {
+            @Override
+            public void start() {
+                setOutputStream(output);
+                super.start();
+            }
+        };
+        delegate.setContext(context);
+        delegate.setEncoder(encoder);
+        delegate.start();
+
+        final AsyncConfiguration config = new AsyncConfiguration();
+        config.setBatchWrites(true);
+        config.setMaxFlushLatency(Duration.seconds(10));
+        final Appender<ILoggingEvent> appender = AsyncAppender.wrap(delegate, config, "test", registry);
+
+        for (int i = 0; i < 100; i++) {
+            appender.doAppend(event(Level.INFO));
+        }
+        Thread.sleep(200);
+
+        // everything is still held in the batch
+        assertThat(output.size())
+                .isZero();
+
+        appender.stop();
+
+        assertThat(output.toString(Charsets.UTF_8.name()).split("\n"))
+                .hasSize(100);
+
+        assertThat(output.writes)
+                .isEqualTo(1);
+    }
+
+    private RecordingAppender newDelegate(CountDownLatch gate) {
+        final RecordingAppender delegate = new RecordingAppender(gate);
+        delegate.setContext(context);
+        delegate.start();
+        return delegate;
+    }
+
+    private ILoggingEvent event(Level level) {
+        final LoggingEvent event = new LoggingEvent();
+        event.setLevel(level);
+        event.setMessage("message");
+        event.setLoggerName("test");
+        event.setTimeStamp(System.currentTimeMillis());
+        return event;
+    }
+}
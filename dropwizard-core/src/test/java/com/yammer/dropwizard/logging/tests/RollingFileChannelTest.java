@@ -0,0 +1,77 @@
+package com.yammer.dropwizard.logging.tests;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.yammer.dropwizard.logging.RollingFileChannel;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RollingFileChannelTest {
+    private static final long NOW = TimeUnit.SECONDS.toMillis(1353042049);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rollsOverWhenAWriteBelongsToTheNextPeriod() throws Exception {
+        final RollingFileChannel channel = newChannel("requests-%d.log", 5);
+        channel.open(NOW);
+        channel.write(line("one"), NOW);
+        channel.write(line("two"), NOW + DAY);
+        channel.close();
+
+        assertThat(Files.readLines(new File(folder.getRoot(), "requests-2012-11-16.log"), Charsets.UTF_8))
+                .containsExactly("one");
+
+        assertThat(Files.readLines(currentFile(), Charsets.UTF_8))
+                .containsExactly("two");
+    }
+
+    @Test
+    public void deletesOldArchivesInDateDirectories() throws Exception {
+        final File first = new File(folder.getRoot(), "2012/11/16/requests.log");
+        final File second = new File(folder.getRoot(), "2012/11/17/requests.log");
+        final RollingFileChannel channel = newChannel("%d{yyyy/MM/dd}/requests.log", 1);
+        channel.open(NOW);
+        channel.write(line("one"), NOW);
+        channel.write(line("two"), NOW + DAY);
+
+        // rolled over synchronously, so it exists now; make sure it's the older archive
+        assertThat(first.setLastModified(NOW))
+                .isTrue();
+
+        channel.write(line("three"), NOW + 2 * DAY);
+        channel.close();
+
+        assertThat(first.exists())
+                .isFalse();
+        assertThat(first.getParentFile().exists())
+                .isFalse();
+        assertThat(Files.readLines(second, Charsets.UTF_8))
+                .containsExactly("two");
+    }
+
+    private RollingFileChannel newChannel(String archivePattern, int archivedFileCount) {
+        return new RollingFileChannel(currentFile().getPath(),
+                                      new File(folder.getRoot(), archivePattern).getPath(),
+                                      archivedFileCount,
+                                      TimeZone.getTimeZone("UTC"));
+    }
+
+    private File currentFile() {
+        return new File(folder.getRoot(), "requests.log");
+    }
+
+    private static ByteBuffer line(String line) {
+        return ByteBuffer.wrap((line + "\n").getBytes(Charsets.UTF_8));
+    }
+}